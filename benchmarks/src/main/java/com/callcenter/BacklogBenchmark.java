@@ -0,0 +1,80 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.callcenter.employees.Employee;
+
+/**
+ * Cost per call of draining a backlog of queued calls once the employees get
+ * free ({@link CallDispatcher#getNextCall}).
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 20)
+public class BacklogBenchmark {
+
+    private static final int BACKLOG = 100000;
+
+    @Param({ "10", "1000" })
+    int agents;
+
+    @Param({ "0", "0.5" })
+    double escalationProbability;
+
+    CallDispatcher dispatcher;
+    ArrayList<Employee> claimed;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        dispatcher = Floors.create(agents, Floors.instantaneous(escalationProbability).setQueueCapacity(BACKLOG));
+        claimed = Floors.claimAll(dispatcher);
+        for (int i = 0; i < BACKLOG; i++)
+            dispatcher.dispatchCall(new Call(ThreadLocalRandom.current().nextInt(CallDispatcher.RANKS)));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BACKLOG)
+    public CallDispatcher drainBacklog() {
+        for (Employee emp : claimed)
+            dispatcher.getNextCall(emp);
+        return dispatcher;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost per call of dispatching a burst of calls one by one
+ * ({@link CallDispatcher#dispatchCall}) and at once
+ * ({@link CallDispatcher#dispatchCalls}), when employees are free and when
+ * they are all busy (the calls get queued).
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BurstBenchmark {
+
+    private static final int BURST = 256;
+    private static final int BURSTS_PER_ITERATION = 100;
+
+    @Param({ "1000", "100000" })
+    int agents;
+
+    CallDispatcher allFree;
+    CallDispatcher allBusy;
+
+    @Setup(Level.Trial)
+    public void setupAllFree() {
+        allFree = Floors.create(agents, Floors.instantaneous(0));
+    }
+
+    @Setup(Level.Iteration)
+    public void setupAllBusy() {
+        // Recreated at every iteration not to accumulate queued calls
+        allBusy = Floors.create(agents, Floors.instantaneous(0));
+        Floors.claimAll(allBusy);
+    }
+
+    private static ArrayList<Call> burst() {
+        ArrayList<Call> calls = new ArrayList<Call>(BURST);
+        for (int i = 0; i < BURST; i++)
+            calls.add(new Call(ThreadLocalRandom.current().nextInt(CallDispatcher.RANKS)));
+        return calls;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OperationsPerInvocation(BURST)
+    public ArrayList<Call> loopAllFree() {
+        ArrayList<Call> calls = burst();
+        for (Call call : calls)
+            allFree.dispatchCall(call);
+        return calls;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OperationsPerInvocation(BURST)
+    public DispatchOutcome[] batchAllFree() {
+        return allFree.dispatchCalls(burst());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10, batchSize = BURSTS_PER_ITERATION)
+    @Measurement(iterations = 20, batchSize = BURSTS_PER_ITERATION)
+    @OperationsPerInvocation(BURST)
+    public ArrayList<Call> loopAllBusy() {
+        ArrayList<Call> calls = burst();
+        for (Call call : calls)
+            allBusy.dispatchCall(call);
+        return calls;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10, batchSize = BURSTS_PER_ITERATION)
+    @Measurement(iterations = 20, batchSize = BURSTS_PER_ITERATION)
+    @OperationsPerInvocation(BURST)
+    public DispatchOutcome[] batchAllBusy() {
+        return allBusy.dispatchCalls(burst());
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of dispatching a call when employees are free, and when they are all
+ * busy (the call gets queued), for various sizes of the call center, with and
+ * without striping (see {@link DispatcherConfig#setStripes}). The score
+ * of {@link #dispatchAllBusy()} is the time taken by a batch of 10000 calls.
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+    private static final int BATCH = 10000;
+
+    @Param({ "10", "1000", "100000" })
+    int agents;
+
+    @Param({ "1", "16" })
+    int stripes;
+
+    CallDispatcher allFree;
+    CallDispatcher allBusy;
+
+    @Setup(Level.Trial)
+    public void setupAllFree() {
+        allFree = Floors.create(agents, Floors.instantaneous(0).setStripes(stripes));
+    }
+
+    @Setup(Level.Iteration)
+    public void setupAllBusy() {
+        // Recreated at every iteration not to accumulate queued calls
+        allBusy = Floors.create(agents, Floors.instantaneous(0).setStripes(stripes));
+        Floors.claimAll(allBusy);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Call dispatchAllFree() {
+        Call call = new Call();
+        allFree.dispatchCall(call);
+        return call;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10, batchSize = BATCH)
+    @Measurement(iterations = 20, batchSize = BATCH)
+    public Call dispatchAllBusy() {
+        Call call = new Call();
+        allBusy.dispatchCall(call);
+        return call;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Throughput of the execution modes: calls dispatched and completed per second.
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class EngineBenchmark {
+
+    private static final int CALLS = 1000;
+
+    @Param({ "SYNCHRONOUS", "ASYNCHRONOUS", "ACTOR" })
+    ExecutionMode mode;
+
+    @Param({ "10", "100" })
+    int agents;
+
+    CallDispatcher dispatcher;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dispatcher = Floors.create(agents, Floors.instantaneous(0.5).setMode(mode));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public Object dispatchAndComplete() {
+        CompletableFuture<?>[] completions = new CompletableFuture<?>[CALLS];
+        for (int i = 0; i < CALLS; i++) {
+            Call call = new Call(ThreadLocalRandom.current().nextInt(CallDispatcher.RANKS));
+            dispatcher.dispatchCall(call);
+            completions[i] = call.getCompletion();
+        }
+        return CompletableFuture.allOf(completions).join();
+    }
+}
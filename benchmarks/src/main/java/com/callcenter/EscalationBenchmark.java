@@ -0,0 +1,73 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.callcenter.routing.EscalationRouter;
+
+/**
+ * Cost of handling calls that get escalated through the ranks, with and without
+ * an {@link EscalationRouter} sending the calls likely to be escalated straight
+ * to the directors.
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EscalationBenchmark {
+
+    @Param({ "10", "1000" })
+    int agents;
+
+    @Param({ "0", "0.5", "0.9" })
+    double escalationProbability;
+
+    @Param({ "false", "true" })
+    boolean routed;
+
+    CallDispatcher dispatcher;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DispatcherConfig config = Floors.instantaneous(escalationProbability);
+        if (routed)
+            config.setCallRouter(new EscalationRouter());
+        dispatcher = Floors.create(agents, config);
+    }
+
+    @Benchmark
+    public Call escalationMix() {
+        Call call = new Call();
+        dispatcher.dispatchCall(call);
+        return call;
+    }
+}
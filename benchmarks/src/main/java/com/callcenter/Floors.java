@@ -0,0 +1,79 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.conversation.UniformConversationModel;
+import com.callcenter.employees.Employee;
+
+/**
+ * Helpers to set up the call centers used by the benchmarks.
+ * 
+ * @author pviotti
+ */
+final class Floors {
+
+    private Floors() {
+    }
+
+    /**
+     * Creates a call center with the given number of respondents, one manager every
+     * ten respondents and one director every hundred respondents.
+     * 
+     * @param agents
+     *            number of respondents
+     * @param config
+     *            the configuration of the dispatcher
+     * @return the dispatcher of the call center
+     */
+    static CallDispatcher create(int agents, DispatcherConfig config) {
+        return new CallDispatcher(agents, Math.max(1, agents / 10), Math.max(1, agents / 100), config);
+    }
+
+    /**
+     * Configuration with instantaneous calls and no message to the customers, to
+     * measure the dispatcher itself.
+     * 
+     * @param escalationProbability
+     *            the probability that a call gets escalated
+     * @return a synchronous configuration
+     */
+    static DispatcherConfig instantaneous(double escalationProbability) {
+        return new DispatcherConfig()
+                .setConversationModel(new UniformConversationModel(0, TimeUnit.NANOSECONDS, escalationProbability))
+                .setMessageSink((call, message, argument) -> {
+                });
+    }
+
+    /**
+     * Claim all the employees of a call center, so that new calls get queued.
+     * 
+     * @param dispatcher
+     *            the dispatcher of the call center
+     * @return the claimed employees
+     */
+    static ArrayList<Employee> claimAll(CallDispatcher dispatcher) {
+        ArrayList<Employee> claimed = new ArrayList<Employee>();
+        Employee emp;
+        while ((emp = dispatcher.getHandler(0)) != null)
+            claimed.add(emp);
+        return claimed;
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.callcenter.ingress.IngressServer;
+
+/**
+ * Cost per call of a round trip through the ingress server over the loopback
+ * interface: a batch of call frames is sent, and the events of their
+ * (instantaneous) calls are read back.
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class IngressBenchmark {
+
+    private static final int BATCH = 1000;
+
+    CallDispatcher dispatcher;
+    IngressServer server;
+    SocketChannel channel;
+    ByteBuffer calls = ByteBuffer.allocateDirect(BATCH * IngressServer.CALL_FRAME);
+    ByteBuffer events = ByteBuffer.allocateDirect(BATCH * IngressServer.EVENT_FRAME);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dispatcher = Floors.create(100, Floors.instantaneous(0).setMode(ExecutionMode.ASYNCHRONOUS));
+        server = new IngressServer(dispatcher, new InetSocketAddress("127.0.0.1", 0), 1 << 14);
+        channel = SocketChannel.open(server.getAddress());
+        for (int i = 0; i < BATCH; i++)
+            calls.putLong(i).putLong(0).putLong(0).putInt(i % 3);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        channel.close();
+        server.close();
+        dispatcher.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public ByteBuffer roundTrip() throws IOException {
+        calls.clear();
+        while (calls.hasRemaining())
+            channel.write(calls);
+        events.clear();
+        while (events.hasRemaining())
+            channel.read(events);
+        return events;
+    }
+}
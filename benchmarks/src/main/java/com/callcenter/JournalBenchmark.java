@@ -0,0 +1,95 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.callcenter.journal.JournalEvent;
+import com.callcenter.journal.MappedCallJournal;
+
+/**
+ * Cost of recording an event in the memory-mapped journal, and of dispatching
+ * a call with and without journaling.
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class JournalBenchmark {
+
+    Path directory;
+    MappedCallJournal journal;
+    CallDispatcher plain;
+    CallDispatcher journaled;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        journal = new MappedCallJournal(directory);
+        plain = Floors.create(1000, Floors.instantaneous(0));
+        journaled = Floors.create(1000, Floors.instantaneous(0).setJournal(journal));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        journal.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator)
+                Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Call recordEvent() {
+        Call call = new Call();
+        journal.record(JournalEvent.DISPATCHED, call);
+        return call;
+    }
+
+    @Benchmark
+    public Call dispatchPlain() {
+        Call call = new Call();
+        plain.dispatchCall(call);
+        return call;
+    }
+
+    @Benchmark
+    public Call dispatchJournaled() {
+        Call call = new Call();
+        journaled.dispatchCall(call);
+        return call;
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.callcenter.selection.AgentSelectionPolicy;
+
+/**
+ * Cost of picking a free employee with each agent selection policy (see
+ * {@link DispatcherConfig#setAgentSelectionPolicy}), when employees are free,
+ * and of finding out that none is when they are all busy. The score of
+ * {@link #dispatchAllBusy()} is the time taken by a batch of 10000 calls.
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SelectionBenchmark {
+
+    private static final int BATCH = 10000;
+
+    @Param({ "LAST_FREED", "LEAST_RECENTLY_BUSY", "ROUND_ROBIN", "POWER_OF_TWO_CHOICES" })
+    String policy;
+
+    @Param({ "10", "1000" })
+    int agents;
+
+    CallDispatcher allFree;
+    CallDispatcher allBusy;
+
+    private DispatcherConfig config() throws ReflectiveOperationException {
+        return Floors.instantaneous(0).setAgentSelectionPolicy(
+                (AgentSelectionPolicy) AgentSelectionPolicy.class.getField(policy).get(null));
+    }
+
+    @Setup(Level.Trial)
+    public void setupAllFree() throws ReflectiveOperationException {
+        allFree = Floors.create(agents, config());
+    }
+
+    @Setup(Level.Iteration)
+    public void setupAllBusy() throws ReflectiveOperationException {
+        // Recreated at every iteration not to accumulate queued calls
+        allBusy = Floors.create(agents, config());
+        Floors.claimAll(allBusy);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public Call dispatchAllFree() {
+        Call call = new Call();
+        allFree.dispatchCall(call);
+        return call;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 10, batchSize = BATCH)
+    @Measurement(iterations = 20, batchSize = BATCH)
+    public Call dispatchAllBusy() {
+        Call call = new Call();
+        allBusy.dispatchCall(call);
+        return call;
+    }
+}
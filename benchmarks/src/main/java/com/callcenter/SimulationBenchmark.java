@@ -0,0 +1,71 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.callcenter.conversation.ExponentialConversationModel;
+import com.callcenter.simulation.Simulation;
+import com.callcenter.simulation.SimulationResult;
+
+/**
+ * Cost of simulating a call (arrival, routing, queuing, escalation and
+ * conversation on the virtual clock) in a discrete-event simulation, at
+ * increasing loads of the respondents.
+ * 
+ * @author pviotti
+ */
+@Fork(1)
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class SimulationBenchmark {
+
+    static final int CALLS = 100_000;
+
+    /* Calls arriving per minute, for 100 respondents talking 3 minutes per call on average. */
+    @Param({ "20", "32" })
+    public int arrivalRate;
+
+    Simulation simulation;
+
+    @Setup
+    public void setup() {
+        DispatcherConfig config = new DispatcherConfig().setConversationModel(new ExponentialConversationModel(
+                new double[] { 3, 3, 3 }, TimeUnit.MINUTES, new double[] { 0.1, 0.1, 0 }));
+        simulation = new Simulation(100, 20, 5, config).setArrivalRate(arrivalRate, TimeUnit.MINUTES)
+                .setPriorityMix(0.9, 0.08, 0.02);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLS)
+    public SimulationResult simulateCall() {
+        return simulation.run(CALLS);
+    }
+}
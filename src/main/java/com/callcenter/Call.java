@@ -17,7 +17,10 @@
  */
 package com.callcenter;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -33,24 +36,73 @@ public class Call {
 
     private static final Logger log = LogManager.getLogger();
 
+    /* Timestamps (System.nanoTime()) not set yet. */
+    private static final long UNSET = Long.MIN_VALUE;
+
+    /* Identifier of the call in the journal (0 until the call is journaled). */
+    private long id;
+
     /* Corresponds to the minimal Rank of an employee that can handle this call. */
-    private AtomicInteger priority;
+    private volatile int priority;
+
+    /* The priority the call was first dispatched with (-1 until then). */
+    private volatile int initialPriority;
 
     /* Whether this call has been serviced. */
-    private boolean isActive;
+    private volatile boolean isActive;
+
+    /* Whether this call has been turned down because the queues were full. */
+    private volatile boolean isRejected;
+
+    /* Completed when the call is disconnected (lazily created). */
+    private volatile CompletableFuture<Call> completion;
+
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<Call, CompletableFuture> COMPLETION = AtomicReferenceFieldUpdater
+            .newUpdater(Call.class, CompletableFuture.class, "completion");
+
+    /* The skills (bitmask: bit i stands for skill i) an employee needs to handle this call. */
+    private long requiredSkills;
 
     /* The rank of the employee that serviced this call. */
-    private Rank handlerRank;
+    private volatile Rank handlerRank;
 
-    private long startTime = 0;
-    private long endTime = 0;
+    /* Monotonic timestamps (System.nanoTime()): set by the employees, which hand
+     * the call over to each other through the dispatcher's concurrent queues. */
+    private long queuedTime;
+    private long startTime;
+    private long endTime;
 
     public Call() {
         this(0);
     }
 
     public Call(int _priority) {
-        this.priority = new AtomicInteger(_priority);
+        reset(_priority);
+    }
+
+    public Call(int _priority, long _requiredSkills) {
+        reset(_priority);
+        this.requiredSkills = _requiredSkills;
+    }
+
+    /**
+     * Make this call a new active call (see {@link CallPool}).
+     * 
+     * @param _priority
+     *            the priority of the call
+     */
+    void reset(int _priority) {
+        this.queuedTime = UNSET;
+        this.startTime = UNSET;
+        this.endTime = UNSET;
+        this.handlerRank = null;
+        this.completion = null;
+        this.isRejected = false;
+        this.requiredSkills = 0;
+        this.id = 0;
+        this.initialPriority = -1;
+        this.priority = _priority;
         this.isActive = true;
     }
 
@@ -72,17 +124,116 @@ public class Call {
      *            the rank of the Employee who closed the call.
      */
     public void disconnect(Rank _rank) {
+        disconnect(_rank, System.nanoTime());
+    }
+
+    /**
+     * Mark this call as solved by a certain employee of rank _rank and hang up, at
+     * a given time (e.g. the virtual time of a simulation).
+     * 
+     * @param _rank
+     *            the rank of the Employee who closed the call.
+     * @param nanoTime
+     *            the time of the disconnection, in nanoseconds
+     */
+    public void disconnect(Rank _rank, long nanoTime) {
         this.handlerRank = _rank;
+        this.endTime = nanoTime;
         this.isActive = false;
-        this.endTime = System.currentTimeMillis();
+
+        CompletableFuture<Call> future = this.completion;
+        if (future != null)
+            future.complete(this);
+        ended();
+    }
+
+    /**
+     * Turn down this call because the call center is overloaded.
+     */
+    void reject() {
+        this.isRejected = true;
+        this.isActive = false;
+
+        CompletableFuture<Call> future = this.completion;
+        if (future != null)
+            future.completeExceptionally(new RejectedExecutionException("All lines are busy"));
+        ended();
+    }
+
+    /**
+     * Called on the thread ending the call, once it has been disconnected or
+     * rejected (e.g. to notify a remote caller without creating a future). Does
+     * nothing by default.
+     */
+    protected void ended() {
+    }
+
+    /**
+     * Get a future which is completed when the call gets disconnected, or completed
+     * exceptionally with a {@link RejectedExecutionException} if the call gets
+     * rejected.
+     * 
+     * @return the future of this call.
+     */
+    public CompletableFuture<Call> getCompletion() {
+        CompletableFuture<Call> future = this.completion;
+        if (future == null) {
+            future = new CompletableFuture<Call>();
+            if (!COMPLETION.compareAndSet(this, null, future))
+                future = this.completion;
+        }
+        // The call may have ended before the future was published
+        if (this.isRejected)
+            future.completeExceptionally(new RejectedExecutionException("All lines are busy"));
+        else if (!this.isActive)
+            future.complete(this);
+        return future;
     }
 
     /**
      * Set the call start time.
      */
     public void setStartTime() {
-        if (this.startTime == 0)
-            this.startTime = System.currentTimeMillis();
+        setStartTime(System.nanoTime());
+    }
+
+    /**
+     * Set the call start time, unless the call has already been answered.
+     * 
+     * @param nanoTime
+     *            the time the call is answered, in nanoseconds
+     */
+    public void setStartTime(long nanoTime) {
+        if (this.startTime == UNSET)
+            this.startTime = nanoTime;
+    }
+
+    /**
+     * Get when the first employee answered the call.
+     * 
+     * @return the time the call was answered, in nanoseconds.
+     */
+    public long getStartTime() {
+        return this.startTime;
+    }
+
+    /**
+     * Set when the call is put in a queue.
+     * 
+     * @param nanoTime
+     *            the value of System.nanoTime() when the call is queued
+     */
+    void setQueuedTime(long nanoTime) {
+        this.queuedTime = nanoTime;
+    }
+
+    /**
+     * Get when the call was last put in a queue.
+     * 
+     * @return the value of System.nanoTime() when the call was queued.
+     */
+    long getQueuedTime() {
+        return this.queuedTime;
     }
 
     /**
@@ -91,7 +242,37 @@ public class Call {
      * @return the call duration in milliseconds.
      */
     public long getDuration() {
-        return this.endTime - this.startTime;
+        return TimeUnit.NANOSECONDS.toMillis(getDurationNanos());
+    }
+
+    /**
+     * Get the call duration, from the moment the first employee answered to the
+     * moment the call was disconnected.
+     * 
+     * @return the call duration in nanoseconds, or 0 if the call hasn't ended.
+     */
+    public long getDurationNanos() {
+        long start = this.startTime, end = this.endTime;
+        return start == UNSET || end == UNSET ? 0 : end - start;
+    }
+
+    /**
+     * Get the identifier of the call in the journal.
+     * 
+     * @return the identifier, or 0 if the call hasn't been journaled.
+     */
+    public long getId() {
+        return this.id;
+    }
+
+    /**
+     * Set the identifier of the call in the journal (done by the journal).
+     * 
+     * @param _id
+     *            the identifier
+     */
+    public void setId(long _id) {
+        this.id = _id;
     }
 
     /**
@@ -100,7 +281,7 @@ public class Call {
      * @return the call priority as int.
      */
     public int getPriority() {
-        return this.priority.get();
+        return this.priority;
     }
 
     /**
@@ -110,7 +291,42 @@ public class Call {
      *            the new priority for the call.
      */
     public void setPriority(int newValue) {
-        this.priority.set(newValue);
+        this.priority = newValue;
+    }
+
+    /**
+     * Get the priority the call was first dispatched with (after routing, see
+     * {@link com.callcenter.routing.CallRouter}), before any escalation.
+     * 
+     * @return the initial priority, or -1 if the call hasn't been dispatched.
+     */
+    public int getInitialPriority() {
+        return this.initialPriority;
+    }
+
+    void setInitialPriority(int _initialPriority) {
+        this.initialPriority = _initialPriority;
+    }
+
+    /**
+     * Get the skills an employee needs to handle this call (on top of having at
+     * least the call's rank).
+     * 
+     * @return the required skills, as a bitmask (bit i stands for skill i).
+     */
+    public long getRequiredSkills() {
+        return this.requiredSkills;
+    }
+
+    /**
+     * Set the skills an employee needs to handle this call, e.g. a language or a
+     * product line.
+     * 
+     * @param _requiredSkills
+     *            the required skills, as a bitmask (bit i stands for skill i)
+     */
+    public void setRequiredSkills(long _requiredSkills) {
+        this.requiredSkills = _requiredSkills;
     }
 
     /**
@@ -122,6 +338,16 @@ public class Call {
         return this.isActive;
     }
 
+    /**
+     * Returns whether the call has been rejected because the call center was
+     * overloaded.
+     * 
+     * @return boolean on whether the call has been rejected.
+     */
+    public boolean isRejected() {
+        return this.isRejected;
+    }
+
     /**
      * Get the rank of the employee who ended the call.
      * 
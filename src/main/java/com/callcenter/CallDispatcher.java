@@ -17,14 +17,37 @@
  */
 package com.callcenter;
 
-import java.util.ArrayList;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
 
 import com.callcenter.employees.Director;
 import com.callcenter.employees.Employee;
 import com.callcenter.employees.Manager;
 import com.callcenter.employees.Rank;
 import com.callcenter.employees.Respondent;
+import com.callcenter.journal.CallJournal;
+import com.callcenter.journal.JournalEvent;
+import com.callcenter.messaging.CallMessage;
+import com.callcenter.metrics.CallCenterMetrics;
+import com.callcenter.metrics.UtilizationSnapshot;
+import com.callcenter.routing.CallRouter;
+import com.callcenter.selection.AgentPool;
+import com.callcenter.simulation.Simulator;
 
 /**
  * The main class modeling the call center.
@@ -35,14 +58,41 @@ public class CallDispatcher {
 
     static final int RANKS = 3;
 
-    private final int numRespondents;
-    private final int numManagers;
-    private final int numDirectors;
+    private final ExecutionMode mode;
+    private final DispatcherConfig config;
 
-    private final ArrayList<Employee>[] employeeLevels = new ArrayList[RANKS];
-    private final ConcurrentLinkedQueue<Call>[] callQueues = new ConcurrentLinkedQueue[RANKS];
+    /* The roster of each rank: changed at runtime (see addEmployee and removeEmployee). */
+    @SuppressWarnings({ "unchecked", "rawtypes" }) // no arrays of a generic type
+    private final CopyOnWriteArrayList<Employee>[] employeeLevels = new CopyOnWriteArrayList[RANKS];
 
-    static final String MSG_WAIT = "All employees are busy. Please hang on: you'll be served as soon as possible.";
+    /* Number of employees ever hired for each rank, giving the skills and the stripe of the next one. */
+    private final AtomicInteger[] hires = new AtomicInteger[RANKS];
+
+    /* The employees leaving once done with their current call. */
+    private final Map<Employee, CompletableFuture<Employee>> departures = new ConcurrentHashMap<Employee, CompletableFuture<Employee>>();
+
+    /* The idle employees and the queued calls, partitioned into stripes. */
+    private final Stripe[] stripes;
+
+    /* Single-threaded executors of the employees (asynchronous modes only). */
+    private final Map<Employee, ExecutorService> agentExecutors = new ConcurrentHashMap<Employee, ExecutorService>();
+    private final ThreadFactory agentThreads;
+
+    private final CallCenterMetrics metrics = new CallCenterMetrics();
+    private final CallJournal journal;
+    private final CallRouter router;
+
+    /* What plays the conversations and gives the time (simulated mode only). */
+    private final Simulator simulator;
+
+    /* The calls recovered from the journal when the dispatcher was created. */
+    private final List<Call> recoveredCalls;
+
+    /* The employees as actors (replaced on roster changes), and the round-robin cursors over
+     * them (actor mode only). */
+    private final AtomicReferenceArray<EmployeeActor[]> actors = new AtomicReferenceArray<EmployeeActor[]>(RANKS);
+    private final AtomicInteger[] actorCursors = new AtomicInteger[RANKS];
+    private final Set<Thread> actorThreads = ConcurrentHashMap.newKeySet();
 
     /**
      * Creates a call dispatched with the given numbers of respondents, managers and
@@ -56,100 +106,1025 @@ public class CallDispatcher {
      *            number of directors
      */
     public CallDispatcher(int _numRespondents, int _numManagers, int _numDirectors) {
-        this.numRespondents = _numRespondents;
-        this.numManagers = _numManagers;
-        this.numDirectors = _numDirectors;
+        this(_numRespondents, _numManagers, _numDirectors, ExecutionMode.SYNCHRONOUS);
+    }
+
+    /**
+     * Creates a call dispatched with the given numbers of respondents, managers and
+     * directors, executing calls according to the given mode.
+     * 
+     * @param _numRespondents
+     *            number of respondents
+     * @param _numManagers
+     *            number of managers
+     * @param _numDirectors
+     *            number of directors
+     * @param _mode
+     *            the execution mode of the calls
+     * @throws UnsupportedOperationException
+     *             if virtual threads are requested but not supported by the JVM
+     */
+    public CallDispatcher(int _numRespondents, int _numManagers, int _numDirectors, ExecutionMode _mode) {
+        this(_numRespondents, _numManagers, _numDirectors, new DispatcherConfig().setMode(_mode));
+    }
+
+    /**
+     * Creates a call dispatched with the given numbers of respondents, managers and
+     * directors, and the given configuration.
+     * 
+     * @param _numRespondents
+     *            number of respondents
+     * @param _numManagers
+     *            number of managers
+     * @param _numDirectors
+     *            number of directors
+     * @param _config
+     *            the configuration of the dispatcher
+     * @throws UnsupportedOperationException
+     *             if virtual threads are requested but not supported by the JVM
+     * @throws IllegalArgumentException
+     *             if the simulated mode is requested without a simulator
+     */
+    public CallDispatcher(int _numRespondents, int _numManagers, int _numDirectors, DispatcherConfig _config) {
+        this.config = _config;
+        this.mode = _config.getMode();
+        this.journal = _config.getJournal();
+        this.router = _config.getCallRouter();
+        this.simulator = mode == ExecutionMode.SIMULATED ? _config.getSimulator() : null;
+        if (mode == ExecutionMode.SIMULATED && simulator == null)
+            throw new IllegalArgumentException("The simulated mode requires a simulator");
+
+        // Initialise call queues and pools of free employees (a simulation draws
+        // from its own generator, to be reproducible)
+        Supplier<Random> random = simulator != null ? simulator::random : ThreadLocalRandom::current;
+        stripes = new Stripe[config.getStripes()];
+        for (int s = 0; s < stripes.length; s++)
+            stripes[s] = new Stripe(RANKS, (config.getQueueCapacity() + stripes.length - 1) / stripes.length,
+                    config.getAgentSelectionPolicy(), random);
+        if (mode == ExecutionMode.VIRTUAL_THREADS)
+            agentThreads = VirtualThreads.newThreadFactory("agent-");
+        else if (mode == ExecutionMode.ASYNCHRONOUS || mode == ExecutionMode.ACTOR)
+            agentThreads = new AgentThreadFactory();
+        else
+            agentThreads = null;
+
+        // Create respondents, managers and directors, spreading the employees of each
+        // rank over the stripes
+        int[] staffing = { _numRespondents, _numManagers, _numDirectors };
+        for (int i = 0; i < RANKS; i++) {
+            Rank rank = Rank.values()[i];
+            Employee[] employees = new Employee[staffing[i]];
+            EmployeeActor[] rankActors = new EmployeeActor[mode == ExecutionMode.ACTOR ? staffing[i] : 0];
+            for (int j = 0; j < employees.length; j++) {
+                employees[j] = hire(rank, config.getSkills(rank, j), j);
+                if (mode == ExecutionMode.ACTOR)
+                    rankActors[j] = new EmployeeActor(employees[j], this, config.getMailboxCapacity());
+            }
+            employeeLevels[i] = new CopyOnWriteArrayList<Employee>(employees);
+            hires[i] = new AtomicInteger(employees.length);
+            actors.set(i, rankActors);
+            actorCursors[i] = new AtomicInteger();
+            // Turn every employee into an actor (actor mode only)
+            for (EmployeeActor actor : rankActors)
+                start(actor);
+        }
+
+        // Rebuild the queues from the journal
+        this.recoveredCalls = journal.recover();
+        for (Call call : recoveredCalls) {
+            // Routed in the previous run
+            call.setInitialPriority(call.getPriority());
+            metrics.onDispatched(call.getPriority());
+            if (mode == ExecutionMode.ACTOR)
+                sendToActor(call);
+            else
+                enqueue(0, call);
+        }
+        // (in synchronous and simulated modes, they are served along with the next dispatched call)
+        if (!recoveredCalls.isEmpty() && !agentExecutors.isEmpty())
+            rebalance(0);
+    }
+
+    /**
+     * Create a new employee, free to take calls.
+     * 
+     * @param rank
+     *            the rank of the employee
+     * @param skills
+     *            the skills of the employee
+     * @param index
+     *            the number of employees of the rank hired before
+     * @return the employee
+     */
+    private Employee hire(Rank rank, long skills, int index) {
+        Employee emp;
+        switch (rank) {
+        case RESPONDENT:
+            emp = new Respondent(this);
+            break;
+        case MANAGER:
+            emp = new Manager(this);
+            break;
+        default:
+            emp = new Director(this);
+        }
+        emp.setSkills(skills);
+        emp.setStripe(index % stripes.length);
+        if (mode == ExecutionMode.ASYNCHRONOUS || mode == ExecutionMode.VIRTUAL_THREADS)
+            agentExecutors.put(emp, Executors.newSingleThreadExecutor(agentThreads));
+        if (mode != ExecutionMode.ACTOR)
+            stripes[emp.getStripe()].freeEmployees[rank.getValue()].get(skills).add(emp);
+        return emp;
+    }
+
+    /**
+     * Start the thread of an actor.
+     * 
+     * @param actor
+     *            the actor
+     */
+    private void start(EmployeeActor actor) {
+        Thread t = agentThreads.newThread(actor);
+        actorThreads.add(t);
+        t.start();
+    }
+
+    /**
+     * Add an employee to the call center while calls are being dispatched. The
+     * employee gets the skills and the stripe it would have got if it had been
+     * created with the dispatcher (see {@link DispatcherConfig#setSkills}), and
+     * starts with the queued calls.
+     * 
+     * @param rank
+     *            the rank of the employee
+     * @return the new employee
+     */
+    public Employee addEmployee(Rank rank) {
+        int index = hires[rank.getValue()].getAndIncrement();
+        return addEmployee(rank, config.getSkills(rank, index), index);
+    }
+
+    /**
+     * Add an employee having the given skills to the call center while calls are
+     * being dispatched. The employee starts with the queued calls.
+     * 
+     * @param rank
+     *            the rank of the employee
+     * @param skills
+     *            the skills of the employee, as a bitmask (bit i stands for skill
+     *            i)
+     * @return the new employee
+     */
+    public Employee addEmployee(Rank rank, long skills) {
+        return addEmployee(rank, skills, hires[rank.getValue()].getAndIncrement());
+    }
+
+    private Employee addEmployee(Rank rank, long skills, int index) {
+        Employee emp = hire(rank, skills, index);
+        employeeLevels[rank.getValue()].add(emp);
+        if (mode == ExecutionMode.ACTOR) {
+            EmployeeActor actor = new EmployeeActor(emp, this, config.getMailboxCapacity());
+            synchronized (actors) {
+                EmployeeActor[] rankActors = actors.get(rank.getValue());
+                rankActors = Arrays.copyOf(rankActors, rankActors.length + 1);
+                rankActors[rankActors.length - 1] = actor;
+                actors.set(rank.getValue(), rankActors);
+            }
+            start(actor);
+        } else {
+            rebalance(emp.getStripe());
+        }
+        return emp;
+    }
+
+    /**
+     * Remove an employee from the call center while calls are being dispatched.
+     * The employee gets no new call, but finishes its current call (in actor mode,
+     * the calls in its mailbox) before leaving.
+     * 
+     * @param emp
+     *            the employee
+     * @return a future completed when the employee has left
+     * @throws IllegalArgumentException
+     *             if the employee doesn't work for this call center
+     */
+    public CompletableFuture<Employee> removeEmployee(Employee emp) {
+        if (!employeeLevels[emp.getRank().getValue()].contains(emp))
+            throw new IllegalArgumentException("The employee doesn't work for this call center");
+        CompletableFuture<Employee> departure = new CompletableFuture<Employee>();
+        CompletableFuture<Employee> previous = departures.putIfAbsent(emp, departure);
+        if (previous != null)
+            return previous;
+
+        emp.retire();
+        if (mode == ExecutionMode.ACTOR) {
+            EmployeeActor leaving = null;
+            synchronized (actors) {
+                EmployeeActor[] rankActors = actors.get(emp.getRank().getValue());
+                EmployeeActor[] remaining = new EmployeeActor[rankActors.length - 1];
+                int j = 0;
+                for (EmployeeActor actor : rankActors)
+                    if (actor.getEmployee() == emp)
+                        leaving = actor;
+                    else
+                        remaining[j++] = actor;
+                actors.set(emp.getRank().getValue(), remaining);
+            }
+            leaving.retire();
+        } else if (emp.tryClaim()) {
+            // The employee was free: it may linger in its pool, where it can't be claimed anymore
+            retire(emp);
+        }
+        // else it leaves when released
+        return departure;
+    }
 
-        // Create respondents
-        ArrayList<Employee> respondents = new ArrayList<Employee>(numRespondents);
-        for (int i = 0; i < numRespondents; i++)
-            respondents.add(new Respondent(this));
-        employeeLevels[Rank.RESPONDENT.getValue()] = respondents;
+    /**
+     * Let a retiring employee leave, once done with its calls.
+     * 
+     * @param emp
+     *            the retiring employee (claimed for good)
+     */
+    void retire(Employee emp) {
+        employeeLevels[emp.getRank().getValue()].remove(emp);
+        if (mode != ExecutionMode.ACTOR) // actors own their employees without claiming them
+            metrics.onReleased(emp.getRank());
+        stripes[emp.getStripe()].freeEmployees[emp.getRank().getValue()].get(emp.getSkills()).remove(emp);
+        ExecutorService executor = agentExecutors.remove(emp);
+        if (executor != null)
+            executor.shutdown();
+        actorThreads.remove(Thread.currentThread());
+        departures.remove(emp).complete(emp);
+    }
 
-        // Create managers
-        ArrayList<Employee> managers = new ArrayList<Employee>(numManagers);
-        for (int i = 0; i < numManagers; i++)
-            managers.add(new Manager(this));
-        employeeLevels[Rank.MANAGER.getValue()] = managers;
+    /**
+     * Get the number of free employees of a rank, in constant time (a snapshot
+     * under concurrency).
+     * 
+     * @param rank
+     *            the rank
+     * @return the number of employees of the rank not handling calls.
+     */
+    public int getFreeEmployees(Rank rank) {
+        return Math.max(0, employeeLevels[rank.getValue()].size() - metrics.getBusyEmployees(rank));
+    }
 
-        // Create directors
-        ArrayList<Employee> directors = new ArrayList<Employee>(numDirectors);
-        for (int i = 0; i < numDirectors; i++)
-            directors.add(new Director(this));
-        employeeLevels[Rank.DIRECTOR.getValue()] = directors;
+    /**
+     * Get the employees of a rank.
+     * 
+     * @param rank
+     *            the rank
+     * @return a snapshot of the employees of the rank (including those leaving).
+     */
+    public List<Employee> getEmployees(Rank rank) {
+        return Collections.unmodifiableList(Arrays.asList(employeeLevels[rank.getValue()].toArray(new Employee[0])));
+    }
 
-        // Initialise call queues
-        for (int i = 0; i < RANKS; i++)
-            callQueues[i] = new ConcurrentLinkedQueue<Call>();
+    /**
+     * Get how busy the employees of a rank have been, to check how evenly the
+     * calls are spread among them (see
+     * {@link DispatcherConfig#setAgentSelectionPolicy}).
+     * 
+     * @param rank
+     *            the rank
+     * @return the utilization of the current employees of the rank.
+     */
+    public UtilizationSnapshot getUtilization(Rank rank) {
+        return new UtilizationSnapshot(employeeLevels[rank.getValue()], nanoTime());
     }
 
     /**
      * Routes the call to the first available employee having the minimal rank
-     * corresponding to the call's rank, or saves it in a queue if no employee
-     * available.
+     * corresponding to the call's rank (and the skills required by the call), or
+     * saves it in a queue if no employee available. The disconnection of the call
+     * can be waited for through {@link Call#getCompletion()}.
      * 
      * @param call
      *            the call being dispatched
+     * @return the outcome of the dispatch (e.g. whether the call has been rejected
+     *         because the queues are full)
      */
-    public void dispatchCall(Call call) {
+    public DispatchOutcome dispatchCall(Call call) {
         if (call == null || call.getPriority() >= RANKS || call.getPriority() < 0)
+            return DispatchOutcome.INVALID;
+
+        admit(call);
+        metrics.onDispatched(call.getPriority());
+        journal.record(JournalEvent.DISPATCHED, call);
+        if (mode == ExecutionMode.ACTOR)
+            return sendToActor(call);
+        return route(currentStripe(), call);
+    }
+
+    /**
+     * Let the router pick the priority a new call starts at (escalated calls keep
+     * theirs).
+     * 
+     * @param call
+     *            the valid call being dispatched
+     */
+    private void admit(Call call) {
+        if (call.getInitialPriority() >= 0)
             return;
-        
-        Employee emp = getHandler(call);
+        int priority = router.route(call);
+        if (priority > call.getPriority() && priority < RANKS)
+            call.setPriority(priority);
+        call.setInitialPriority(call.getPriority());
+    }
+
+    /**
+     * Routes the call to a free employee as {@link #dispatchCall(Call)} does, but
+     * never queues it: the caller keeps the call if no employee is available (e.g.
+     * to hand it over to another call center).
+     * 
+     * @param call
+     *            the call being dispatched
+     * @return true if the call has been assigned to an employee
+     */
+    public boolean assignCall(Call call) {
+        if (call == null || call.getPriority() >= RANKS || call.getPriority() < 0 || mode == ExecutionMode.ACTOR)
+            return false;
+        admit(call);
+        Employee emp = getHandler(currentStripe(), call.getPriority(), call.getRequiredSkills());
+        if (emp == null)
+            return false;
+        metrics.onDispatched(call.getPriority());
+        journal.record(JournalEvent.DISPATCHED, call);
+        metrics.onServedImmediately(call.getPriority());
+        assign(emp, call);
+        return true;
+    }
+
+    /**
+     * Routes a valid call to a free employee, or saves it in a queue.
+     * 
+     * @param stripe
+     *            the stripe of the calling thread
+     * @param call
+     *            the call being dispatched
+     * @return the outcome of the dispatch
+     */
+    private DispatchOutcome route(int stripe, Call call) {
+        Employee emp = getHandler(stripe, call.getPriority(), call.getRequiredSkills());
         if (emp != null) {
-            emp.handleCall(call);
-        } else {
-            // No employee is available: place the call into queue according to its priority
-            call.say(MSG_WAIT);
-            callQueues[call.getPriority()].add(call);
+            metrics.onServedImmediately(call.getPriority());
+            assign(emp, call);
+            return DispatchOutcome.ASSIGNED;
+        }
+
+        // No employee is available: place the call into queue according to its priority
+        DispatchOutcome outcome = enqueue(stripe, call);
+        if (outcome != DispatchOutcome.REJECTED) {
+            config.getMessageSink().say(call, CallMessage.WAIT, 0);
+
+            // An employee may have got free after getHandler: make sure the call isn't left behind
+            rebalance(stripe);
+        }
+        return outcome;
+    }
+
+    /**
+     * Routes a batch of calls at once: the calls are matched with the free
+     * employees in a single pass over the pool of each rank (the employees of the
+     * lowest compatible rank first, as in {@link #dispatchCall(Call)}), and the
+     * remaining calls are put in the queue of each priority at once. The calls
+     * requiring some skills are routed one by one.
+     * 
+     * @param batch
+     *            the calls being dispatched
+     * @return the outcome of the dispatch of each call, in the iteration order of
+     *         the batch
+     */
+    public DispatchOutcome[] dispatchCalls(Collection<Call> batch) {
+        Call[] calls = batch.toArray(new Call[batch.size()]);
+        DispatchOutcome[] outcomes = new DispatchOutcome[calls.length];
+
+        // Count the valid calls of each priority
+        int stripe = currentStripe();
+        int[] starts = new int[RANKS + 1];
+        for (int i = 0; i < calls.length; i++) {
+            Call call = calls[i];
+            if (call == null || call.getPriority() >= RANKS || call.getPriority() < 0) {
+                outcomes[i] = DispatchOutcome.INVALID;
+                continue;
+            }
+            admit(call);
+            metrics.onDispatched(call.getPriority());
+            journal.record(JournalEvent.DISPATCHED, call);
+            if (mode == ExecutionMode.ACTOR)
+                outcomes[i] = sendToActor(call);
+            else if (call.getRequiredSkills() != 0)
+                outcomes[i] = route(stripe, call);
+            else
+                starts[call.getPriority() + 1]++;
+        }
+
+        // Sort them by priority
+        for (int priority = 0; priority < RANKS; priority++)
+            starts[priority + 1] += starts[priority];
+        if (starts[RANKS] == 0)
+            return outcomes;
+        int[] next = Arrays.copyOf(starts, RANKS);
+        Call[] sorted = new Call[starts[RANKS]];
+        int[] indexes = new int[starts[RANKS]];
+        for (int i = 0; i < calls.length; i++)
+            if (outcomes[i] == null) {
+                int position = next[calls[i].getPriority()]++;
+                sorted[position] = calls[i];
+                indexes[position] = i;
+            }
+        System.arraycopy(starts, 0, next, 0, RANKS);
+
+        // Match them with the free employees (of any skill set), the most urgent calls first
+        Employee[] handlers = new Employee[sorted.length];
+        for (int level = 0; level < RANKS; level++) {
+            int priority = level;
+            for (int i = 0; i < stripes.length && priority >= 0; i++)
+                for (SkillIndex.Entry<AgentPool> pool : stripes[(stripe + i)
+                        % stripes.length].freeEmployees[level].entries()) {
+                    while (priority >= 0) {
+                        if (next[priority] == starts[priority + 1]) {
+                            priority--;
+                            continue;
+                        }
+                        Employee emp = pool.value.poll();
+                        if (emp == null)
+                            break;
+                        if (emp.tryClaim())
+                            handlers[next[priority]++] = emp;
+                        // else somebody else claimed it: move on to the next candidate
+                    }
+                    if (priority < 0)
+                        break;
+                }
+        }
+
+        // Queue the others
+        boolean queued = false;
+        long now = nanoTime();
+        for (int priority = 0; priority < RANKS; priority++) {
+            int from = next[priority], to = starts[priority + 1];
+            if (from == to)
+                continue;
+            for (int i = from; i < to; i++)
+                sorted[i].setQueuedTime(now);
+            int added = stripes[stripe].offerAll(priority, sorted, from, to);
+            metrics.onQueued(priority, added);
+            for (int i = from; i < to; i++) {
+                DispatchOutcome outcome;
+                if (i < from + added) {
+                    journal.record(JournalEvent.QUEUED, sorted[i]);
+                    outcome = DispatchOutcome.QUEUED;
+                } else {
+                    outcome = enqueue(stripe, sorted[i]);
+                }
+                if (outcome != DispatchOutcome.REJECTED) {
+                    config.getMessageSink().say(sorted[i], CallMessage.WAIT, 0);
+                    queued = true;
+                }
+                outcomes[indexes[i]] = outcome;
+            }
         }
+
+        for (int i = 0; i < sorted.length; i++)
+            if (handlers[i] != null) {
+                metrics.onServedImmediately(sorted[i].getPriority());
+                outcomes[indexes[i]] = DispatchOutcome.ASSIGNED;
+                assign(handlers[i], sorted[i]);
+            }
+
+        // Employees may have got free while matching: make sure the queued calls aren't left behind
+        if (queued)
+            rebalance(stripe);
+        return outcomes;
     }
 
     /**
-     * Get the first available employee having the minimal rank corresponding to the
-     * call's rank.
+     * Send the call to the mailbox of an employee having at least the call's rank
+     * and the skills it requires, trying the employees of each rank in round-robin
+     * order. If all their mailboxes are full, queue the call (applying the overflow
+     * policy) for the first of them whose mailbox gets empty. Never blocks.
      * 
      * @param call
-     * @return an available employee compatible with the call's rank or null if no
-     *         employee is available
+     *            the call to be handled
+     * @return the outcome of the dispatch
      */
-    private Employee getHandler(Call call) {
+    private DispatchOutcome sendToActor(Call call) {
         for (int level = call.getPriority(); level < RANKS; level++) {
-            // starts checking for free employees at the rank level of the call
-            ArrayList<Employee> employeeLevel = employeeLevels[level];
-            for (Employee emp : employeeLevel)
-                if (emp.isFree())
-                    return emp;
+            EmployeeActor[] rankActors = actors.get(level);
+            if (rankActors.length == 0)
+                continue;
+            int start = actorCursors[level].getAndIncrement() & Integer.MAX_VALUE;
+            for (int i = 0; i < rankActors.length; i++) {
+                EmployeeActor actor = rankActors[(start + i) % rankActors.length];
+                if (!SkillIndex.covers(actor.getEmployee().getSkills(), call.getRequiredSkills())
+                        || actor.getEmployee().isRetiring())
+                    continue;
+                if (actor.offer(call))
+                    return DispatchOutcome.ASSIGNED;
+            }
         }
-        return null;
+
+        DispatchOutcome outcome = enqueue(currentStripe(), call);
+        if (outcome == DispatchOutcome.REJECTED)
+            return outcome;
+        config.getMessageSink().say(call, CallMessage.WAIT, 0);
+        // An actor may have emptied its mailbox meanwhile, and be about to park
+        for (int level = call.getPriority(); level < RANKS; level++)
+            for (EmployeeActor actor : actors.get(level))
+                if (SkillIndex.covers(actor.getEmployee().getSkills(), call.getRequiredSkills()))
+                    actor.wake();
+        return outcome;
+    }
+
+    /**
+     * Send again a call left in the mailbox of a retired actor.
+     * 
+     * @param call
+     *            the call
+     */
+    void redispatch(Call call) {
+        sendToActor(call);
+    }
+
+    /**
+     * Send on a call escalated by an actor (on the actor's thread, never blocking).
+     * 
+     * @param call
+     *            the escalated call
+     */
+    void escalate(Call call) {
+        metrics.onDispatched(call.getPriority());
+        journal.record(JournalEvent.DISPATCHED, call);
+        sendToActor(call);
     }
 
     /**
-     * Called by an employee when he/she gets free to handle queued calls.
+     * Put a call in the queue corresponding to its priority, in the given stripe or
+     * else in any stripe having room, applying the overflow policy if all those
+     * queues are full.
+     * 
+     * @param stripe
+     *            the stripe of the calling thread
+     * @param call
+     *            the call to be queued
+     * @return the outcome of the dispatch: QUEUED, SPILLED or REJECTED
+     */
+    private DispatchOutcome enqueue(int stripe, Call call) {
+        int priority = call.getPriority();
+        call.setQueuedTime(nanoTime());
+        if (offer(stripe, priority, call))
+            return DispatchOutcome.QUEUED;
+
+        switch (config.getOverflowPolicy()) {
+        case DROP_OLDEST:
+            do {
+                Call oldest = stripes[stripe].pollOldest(priority);
+                if (oldest == null) {
+                    // The room is held by calls being queued by other threads
+                    reject(call);
+                    return DispatchOutcome.REJECTED;
+                }
+                metrics.onDropped(priority);
+                turnDown(oldest);
+            } while (!offer(stripe, priority, call));
+            return DispatchOutcome.QUEUED;
+        case SPILL:
+            for (int queue = priority + 1; queue < RANKS; queue++)
+                if (!employeeLevels[queue].isEmpty() && offer(stripe, queue, call))
+                    return DispatchOutcome.SPILLED;
+            // all the queues are full
+            reject(call);
+            return DispatchOutcome.REJECTED;
+        default:
+            reject(call);
+            return DispatchOutcome.REJECTED;
+        }
+    }
+
+    /**
+     * Put a call in a queue (of the calls requiring the same skills), of the given
+     * stripe first, if they aren't all full.
+     * 
+     * @param stripe
+     *            the stripe of the calling thread
+     * @param queue
+     *            the rank of the queue
+     * @param call
+     *            the call
+     * @return true if the call has been queued
+     */
+    private boolean offer(int stripe, int queue, Call call) {
+        for (int i = 0; i < stripes.length; i++)
+            if (stripes[(stripe + i) % stripes.length].offer(queue, call)) {
+                metrics.onQueued(queue);
+                journal.record(JournalEvent.QUEUED, call);
+                return true;
+            }
+        return false;
+    }
+
+    /**
+     * Turn down a call with a busy signal.
+     * 
+     * @param call
+     *            the call
+     */
+    private void reject(Call call) {
+        metrics.onRejected(call.getPriority());
+        turnDown(call);
+    }
+
+    /**
+     * Give a busy signal to a call that won't be served, either rejected or
+     * dropped from its queue.
+     * 
+     * @param call
+     *            the call
+     */
+    private void turnDown(Call call) {
+        journal.record(JournalEvent.REJECTED, call);
+        config.getMessageSink().say(call, CallMessage.BUSY, 0);
+        call.reject();
+    }
+
+    /**
+     * Let a claimed employee handle a call, either on the current thread or on the
+     * employee's own executor (or hand it to the simulator), according to the
+     * execution mode.
      * 
      * @param emp
-     *            the employee that wants to handle a new call
+     *            the claimed employee
+     * @param call
+     *            the call to be handled
      */
-    public void getNextCall(Employee emp) {
-        for (int rank = emp.getRank().getValue(); rank >= 0; rank--) {
-            ConcurrentLinkedQueue<Call> queque = callQueues[rank];
-            Call call = queque.poll();
+    private void assign(final Employee emp, final Call call) {
+        if (mode == ExecutionMode.SYNCHRONOUS)
+            serve(emp, call);
+        else if (mode == ExecutionMode.SIMULATED)
+            simulator.simulate(emp, call);
+        else
+            agentExecutors.get(emp).execute(() -> serve(emp, call));
+    }
+
+    /**
+     * Let a claimed employee handle a call, then drain the compatible queued calls
+     * in batches. Between batches (or after an escalation) the employee is
+     * released, and the escalated call, then the most urgent queued call, go to
+     * the most suitable free employee (which, in synchronous mode, keeps being
+     * served by this loop rather than by recursion).
+     * 
+     * @param emp
+     *            the claimed employee
+     * @param call
+     *            the first call to be handled
+     */
+    private void serve(Employee emp, Call call) {
+        final int batchSize = config.getDrainBatchSize();
+        while (true) {
+            int handled = 0;
+            boolean escalated;
+            do {
+                escalated = emp.handleCall(call);
+            } while (!escalated && ++handled < batchSize && !emp.isRetiring() && (call = pollQueuedCall(emp)) != null);
+            int stripe = emp.getStripe();
+            release(emp);
+
+            if (escalated) {
+                metrics.onDispatched(call.getPriority());
+                journal.record(JournalEvent.DISPATCHED, call);
+                if (mode != ExecutionMode.SYNCHRONOUS) {
+                    route(stripe, call);
+                } else if ((emp = getHandler(stripe, call.getPriority(), call.getRequiredSkills())) != null) {
+                    metrics.onServedImmediately(call.getPriority());
+                    continue;
+                } else if (enqueue(stripe, call) != DispatchOutcome.REJECTED) {
+                    config.getMessageSink().say(call, CallMessage.WAIT, 0);
+                }
+            }
+
+            // Rebalance
+            do {
+                emp = getHandlerForQueuedCalls(stripe);
+                if (emp == null)
+                    return;
+                call = pollQueuedCall(emp);
+                if (call == null)
+                    release(emp);
+            } while (call == null);
+
+            if (mode != ExecutionMode.SYNCHRONOUS) {
+                assign(emp, call);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Hand the most urgent queued call to the most suitable free employee, if any.
+     * 
+     * @param stripe
+     *            the stripe of the calling thread
+     */
+    private void rebalance(int stripe) {
+        Employee emp;
+        while ((emp = getHandlerForQueuedCalls(stripe)) != null) {
+            Call call = pollQueuedCall(emp);
             if (call != null) {
-                emp.handleCall(call);
+                assign(emp, call);
                 return;
             }
+            // somebody else took the queued call in the meantime
+            release(emp);
+        }
+    }
+
+    /**
+     * Release a claimed employee and return it to the pool of free employees, or
+     * let it leave if it is retiring.
+     * 
+     * @param emp
+     *            the claimed employee
+     */
+    private void release(Employee emp) {
+        if (emp.isRetiring()) {
+            retire(emp);
+            return;
+        }
+        emp.release();
+        stripes[emp.getStripe()].freeEmployees[emp.getRank().getValue()].get(emp.getSkills()).add(emp);
+        // The employee may have been removed meanwhile: whoever claims it first lets it leave
+        if (emp.isRetiring() && emp.tryClaim())
+            retire(emp);
+    }
+
+    /**
+     * Take an available employee having the minimal rank corresponding to the call's
+     * rank out of the pool of free employees and claim it.
+     * 
+     * @param priority
+     *            the priority of the call to be handled
+     * @return a claimed employee compatible with the call's rank or null if no
+     *         employee is available
+     */
+    Employee getHandler(int priority) {
+        return getHandler(currentStripe(), priority, 0);
+    }
+
+    /**
+     * Take an available employee having the minimal rank corresponding to the call's
+     * rank and the skills required by the call out of the pools of free employees,
+     * of the given stripe first, and claim it. Among the employees of a rank, those
+     * having the fewest skills are preferred.
+     * 
+     * @param stripe
+     *            the stripe of the calling thread
+     * @param priority
+     *            the priority of the call to be handled
+     * @param skills
+     *            the skills required by the call
+     * @return a claimed employee compatible with the call or null if no employee is
+     *         available
+     */
+    private Employee getHandler(int stripe, int priority, long skills) {
+        for (int level = priority; level < RANKS; level++) {
+            // starts checking for free employees at the rank level of the call
+            for (int i = 0; i < stripes.length; i++)
+                for (SkillIndex.Entry<AgentPool> pool : stripes[(stripe + i)
+                        % stripes.length].freeEmployees[level].entries()) {
+                    if (!SkillIndex.covers(pool.skills, skills))
+                        continue;
+                    Employee emp;
+                    while ((emp = pool.value.poll()) != null)
+                        if (emp.tryClaim())
+                            return emp;
+                        // else somebody else claimed it: move on to the next candidate
+                }
+        }
+        return null;
+    }
+
+    /**
+     * Called by an employee when he/she gets free to handle queued calls. The
+     * employee is released if there is no compatible queued call.
+     * 
+     * @param emp
+     *            the (claimed) employee that wants to handle a new call
+     */
+    public void getNextCall(Employee emp) {
+        Call call = emp.isRetiring() ? null : pollQueuedCall(emp);
+        if (call != null) {
+            assign(emp, call);
+        } else {
+            release(emp);
+            // A call may have been queued after the check above: make sure it isn't left behind
+            rebalance(emp.getStripe());
         }
     }
 
     /**
-     * Get the length of the call queues.
+     * Take the most urgent queued call that can be handled by an employee: the one
+     * with the earliest deadline (see {@link DispatcherConfig#setServiceLevels})
+     * among the calls at the head of the compatible queues (by priority and required
+     * skills), from the employee's stripe first (or stolen from another stripe). As
+     * the queues are FIFO, the heads have the earliest deadlines of their queues.
+     * In actor mode, the actors take the queued calls once their mailbox is empty.
+     * 
+     * @param emp
+     *            the employee
+     * @return the queued call, or null if there is no compatible queued call
+     */
+    Call pollQueuedCall(Employee emp) {
+        int stripe = emp.getStripe();
+        long skills = emp.getSkills();
+        RingQueue<Call> mostUrgent = null;
+        int mostUrgentQueue = -1, mostUrgentStripe = -1;
+        long earliest = 0;
+        for (int queue = emp.getRank().getValue(); queue >= 0; queue--) {
+            if (!hasQueuedCalls(queue))
+                continue;
+            for (int i = 0; i < stripes.length; i++)
+                for (SkillIndex.Entry<RingQueue<Call>> candidate : stripes[(stripe + i)
+                        % stripes.length].callQueues[queue].entries()) {
+                    if (!SkillIndex.covers(skills, candidate.skills))
+                        continue;
+                    Call head = candidate.value.peek();
+                    if (head == null)
+                        continue;
+                    long deadline = deadlineOf(head);
+                    if (mostUrgent == null || deadline - earliest < 0) {
+                        mostUrgent = candidate.value;
+                        mostUrgentQueue = queue;
+                        mostUrgentStripe = (stripe + i) % stripes.length;
+                        earliest = deadline;
+                    }
+                }
+        }
+
+        Call call = mostUrgent == null ? null : mostUrgent.poll();
+        if (call == null) {
+            // Somebody else took it (or a call has just been queued): take any call, by priority
+            for (int queue = emp.getRank().getValue(); queue >= 0 && call == null; queue--)
+                for (int i = 0; i < stripes.length && call == null; i++)
+                    for (SkillIndex.Entry<RingQueue<Call>> candidate : stripes[(stripe + i)
+                            % stripes.length].callQueues[queue].entries())
+                        if (SkillIndex.covers(skills, candidate.skills) && (call = candidate.value.poll()) != null) {
+                            mostUrgentQueue = queue;
+                            mostUrgentStripe = (stripe + i) % stripes.length;
+                            break;
+                        }
+            if (call == null)
+                return null;
+        }
+        stripes[mostUrgentStripe].free(mostUrgentQueue, 1);
+
+        long now = nanoTime();
+        metrics.onDequeued(mostUrgentQueue, call.getPriority(), now - call.getQueuedTime());
+        if (now - deadlineOf(call) > 0)
+            metrics.onDeadlineMissed(call.getPriority());
+        return call;
+    }
+
+    /**
+     * Get the deadline of a queued call.
+     * 
+     * @param call
+     *            the queued call
+     * @return the deadline, as a value of {@link #nanoTime()}.
+     */
+    private long deadlineOf(Call call) {
+        return call.getQueuedTime() + config.getServiceLevel(call.getPriority());
+    }
+
+    /**
+     * Claim a free employee able to handle the queued call with the highest
+     * priority.
+     * 
+     * @param stripe
+     *            the stripe of the calling thread
+     * @return a claimed employee, or null if no queued call can be handled by a
+     *         free employee
+     */
+    private Employee getHandlerForQueuedCalls(int stripe) {
+        for (int priority = RANKS - 1; priority >= 0; priority--) {
+            if (!hasQueuedCalls(priority))
+                continue;
+            for (int i = 0; i < stripes.length; i++)
+                for (SkillIndex.Entry<RingQueue<Call>> queue : stripes[(stripe + i)
+                        % stripes.length].callQueues[priority].entries()) {
+                    if (queue.value.isEmpty())
+                        continue;
+                    Employee emp = getHandler(stripe, priority, queue.skills);
+                    if (emp != null)
+                        return emp;
+                }
+        }
+        return null;
+    }
+
+    /**
+     * Check whether calls of a given priority are waiting in any stripe, without
+     * looking at the queues of every stripe: the depth gauge is raised once a call
+     * is in a queue (before the call is rebalanced), and lowered after it is taken
+     * out, so it may only be wrong the safe way.
+     * 
+     * @param priority
+     *            the priority of the calls
+     * @return true if some calls may be queued
+     */
+    private boolean hasQueuedCalls(int priority) {
+        return metrics.getQueueDepth(priority) > 0;
+    }
+
+    /**
+     * Get the stripe of the current thread: a thread always looks at the same
+     * stripe first.
+     * 
+     * @return the index of the stripe.
+     */
+    int currentStripe() {
+        return stripes.length == 1 ? 0 : (int) (Thread.currentThread().getId() % stripes.length);
+    }
+
+    /**
+     * Get the current time of the call center, as used to timestamp the calls.
+     * 
+     * @return System.nanoTime(), or the virtual time of the simulator in simulated
+     *         mode.
+     */
+    public long nanoTime() {
+        return simulator == null ? System.nanoTime() : simulator.now();
+    }
+
+    /**
+     * Get the calls which were not over when the journal was last closed, which
+     * have been queued again when this dispatcher was created (see
+     * {@link DispatcherConfig#setJournal}).
+     * 
+     * @return the recovered calls.
+     */
+    public List<Call> getRecoveredCalls() {
+        return recoveredCalls;
+    }
+
+    /**
+     * Get the length of the call queues (in actor mode, including the calls waiting
+     * in the mailboxes of the employees of each rank).
      * 
      * @return an array with the length of the queues for each rank.
      */
     public int[] getQueuesSize() {
         int[] res = new int[RANKS];
-        for (int i = 0; i < RANKS; i++)
-            res[i] = callQueues[i].size();
+        for (int i = 0; i < RANKS; i++) {
+            res[i] = metrics.getQueueDepth(i);
+            if (mode == ExecutionMode.ACTOR)
+                for (EmployeeActor actor : actors.get(i))
+                    res[i] += actor.backlog();
+        }
         return res;
     }
+
+    /**
+     * Get the metrics of the call center.
+     * 
+     * @return the metrics.
+     */
+    public CallCenterMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Get the configuration of the dispatcher.
+     * 
+     * @return the configuration.
+     */
+    public DispatcherConfig getConfig() {
+        return this.config;
+    }
+
+    /**
+     * Stop the executors of the employees (asynchronous modes only), or the actors'
+     * threads (actor mode). Calls already handed off to an employee executor are
+     * completed, while calls waiting in the actors' mailboxes are dropped.
+     */
+    public void shutdown() {
+        for (ExecutorService executor : agentExecutors.values())
+            executor.shutdown();
+        for (Thread t : actorThreads)
+            t.interrupt();
+    }
+
+    /**
+     * Creates the daemon threads running the employees' executors.
+     */
+    private static class AgentThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "agent-" + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
 }
@@ -0,0 +1,94 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of recyclable {@link Call} objects, to keep the allocation rate
+ * close to zero in long-running tests. Calls must only be released once they
+ * have been disconnected and nobody refers to them anymore.
+ * 
+ * @author pviotti
+ */
+public class CallPool {
+
+    private final RingQueue<Call> calls;
+
+    /* Creates the calls when the pool is empty. */
+    private final Supplier<? extends Call> factory;
+
+    /**
+     * @param capacity
+     *            the maximum number of idle calls kept by the pool
+     */
+    public CallPool(int capacity) {
+        this(capacity, Call::new);
+    }
+
+    /**
+     * @param capacity
+     *            the maximum number of idle calls kept by the pool
+     * @param _factory
+     *            creates the calls (e.g. of a subclass of {@link Call}) when the
+     *            pool is empty
+     */
+    public CallPool(int capacity, Supplier<? extends Call> _factory) {
+        this.calls = new RingQueue<Call>(capacity);
+        this.factory = _factory;
+    }
+
+    /**
+     * Get a new active call, recycling an idle one if possible.
+     * 
+     * @param priority
+     *            the priority of the call
+     * @return the call
+     */
+    public Call acquire(int priority) {
+        Call call = calls.poll();
+        if (call == null)
+            call = factory.get();
+        call.reset(priority);
+        return call;
+    }
+
+    /**
+     * Give back a disconnected call to the pool. The call is simply dropped if the
+     * pool is full.
+     * 
+     * @param call
+     *            the call
+     * @throws IllegalStateException
+     *             if the call is still active
+     */
+    public void release(Call call) {
+        if (call.isActive())
+            throw new IllegalStateException("Cannot recycle an active call");
+        calls.offer(call);
+    }
+
+    /**
+     * Get the number of idle calls in the pool.
+     * 
+     * @return the number of idle calls.
+     */
+    public int size() {
+        return calls.size();
+    }
+}
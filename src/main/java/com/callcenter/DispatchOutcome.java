@@ -0,0 +1,36 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+/**
+ * The outcome of dispatching a call.
+ * 
+ * @author pviotti
+ */
+public enum DispatchOutcome {
+    /** The call has been handed to an employee. */
+    ASSIGNED,
+    /** The call waits in the queue corresponding to its priority. */
+    QUEUED,
+    /** The call waits in the queue of a higher rank (see {@link OverflowPolicy#SPILL}). */
+    SPILLED,
+    /** The call has been rejected with a busy signal, as the queues are full. */
+    REJECTED,
+    /** The call is null or its priority doesn't correspond to any rank. */
+    INVALID
+}
@@ -0,0 +1,403 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.conversation.ConversationModel;
+import com.callcenter.conversation.UniformConversationModel;
+import com.callcenter.employees.Rank;
+import com.callcenter.journal.CallJournal;
+import com.callcenter.messaging.LoggingMessageSink;
+import com.callcenter.messaging.MessageSink;
+import com.callcenter.routing.CallRouter;
+import com.callcenter.selection.AgentSelectionPolicy;
+import com.callcenter.simulation.Simulator;
+
+/**
+ * Tunable parameters of a {@link CallDispatcher}.
+ * 
+ * @author pviotti
+ */
+public class DispatcherConfig {
+
+    private ExecutionMode mode = ExecutionMode.SYNCHRONOUS;
+
+    /* Maximum number of calls an employee handles in a row before the dispatcher rebalances. */
+    private int drainBatchSize = 64;
+
+    /* Duration and outcome of the emulated conversations. */
+    private ConversationModel conversationModel = new UniformConversationModel(100, TimeUnit.MILLISECONDS, 0.5);
+
+    /* Skill sets of the employees of each rank, given in turn. */
+    private long[][] skills = { { 0 }, { 0 }, { 0 } };
+
+    /* Number of partitions of the employees and of the queues. */
+    private int stripes = 1;
+
+    /* Capacity of each call queue and what to do when it is full. */
+    private int queueCapacity = 1 << 16;
+    private OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+
+    /* Maximum waiting time of the calls of each priority (nanoseconds). */
+    private long[] serviceLevels = { TimeUnit.SECONDS.toNanos(60), TimeUnit.SECONDS.toNanos(20),
+            TimeUnit.SECONDS.toNanos(5) };
+
+    /* Where the lifecycle events of the calls are recorded. */
+    private CallJournal journal = CallJournal.NONE;
+
+    /* Where the messages to the customers go. */
+    private MessageSink messageSink = new LoggingMessageSink();
+
+    /* Capacity of the mailbox of each employee (actor mode only). */
+    private int mailboxCapacity = 1024;
+
+    /* What plays the conversations (simulated mode only). */
+    private Simulator simulator;
+
+    /* Which free employee takes a call. */
+    private AgentSelectionPolicy agentSelectionPolicy = AgentSelectionPolicy.LAST_FREED;
+
+    /* Which rank a new call starts at. */
+    private CallRouter callRouter = CallRouter.NONE;
+
+    public DispatcherConfig() {
+    }
+
+    /**
+     * Creates a copy of a configuration.
+     * 
+     * @param _config
+     *            the configuration to be copied
+     */
+    public DispatcherConfig(DispatcherConfig _config) {
+        this.mode = _config.mode;
+        this.drainBatchSize = _config.drainBatchSize;
+        this.conversationModel = _config.conversationModel;
+        this.skills = new long[_config.skills.length][];
+        for (int i = 0; i < skills.length; i++)
+            this.skills[i] = _config.skills[i].clone();
+        this.stripes = _config.stripes;
+        this.queueCapacity = _config.queueCapacity;
+        this.overflowPolicy = _config.overflowPolicy;
+        this.serviceLevels = _config.serviceLevels.clone();
+        this.journal = _config.journal;
+        this.messageSink = _config.messageSink;
+        this.mailboxCapacity = _config.mailboxCapacity;
+        this.simulator = _config.simulator;
+        this.agentSelectionPolicy = _config.agentSelectionPolicy;
+        this.callRouter = _config.callRouter;
+    }
+
+    /**
+     * Set the execution mode of the calls.
+     * 
+     * @param _mode
+     *            the execution mode
+     * @return this configuration
+     */
+    public DispatcherConfig setMode(ExecutionMode _mode) {
+        this.mode = _mode;
+        return this;
+    }
+
+    /**
+     * Set the maximum number of queued calls an employee handles in a row before
+     * being released, so that the dispatcher can rebalance the queued calls among
+     * the free employees.
+     * 
+     * @param _drainBatchSize
+     *            the batch size (at least 1)
+     * @return this configuration
+     */
+    public DispatcherConfig setDrainBatchSize(int _drainBatchSize) {
+        if (_drainBatchSize < 1)
+            throw new IllegalArgumentException("The drain batch size must be positive");
+        this.drainBatchSize = _drainBatchSize;
+        return this;
+    }
+
+    /**
+     * Set the model of the emulated conversations.
+     * 
+     * @param _conversationModel
+     *            the conversation model
+     * @return this configuration
+     */
+    public DispatcherConfig setConversationModel(ConversationModel _conversationModel) {
+        if (_conversationModel == null)
+            throw new IllegalArgumentException("The conversation model cannot be null");
+        this.conversationModel = _conversationModel;
+        return this;
+    }
+
+    /**
+     * Set the skills of the employees of a rank (e.g. languages, product lines),
+     * on top of the rank itself: employee i of the rank gets the skill set
+     * {@code skillSets[i % skillSets.length]}. A call is only routed to an employee
+     * having at least its rank and all its required skills (see
+     * {@link Call#setRequiredSkills}).
+     * 
+     * @param rank
+     *            the rank of the employees
+     * @param skillSets
+     *            the skill sets, as bitmasks (bit i stands for skill i)
+     * @return this configuration
+     */
+    public DispatcherConfig setSkills(Rank rank, long... skillSets) {
+        if (skillSets.length == 0)
+            throw new IllegalArgumentException("At least one skill set is needed");
+        this.skills[rank.getValue()] = skillSets.clone();
+        return this;
+    }
+
+    /**
+     * Set the number of stripes the employees and the call queues are partitioned
+     * into (e.g. one per core). The threads dispatching calls and the employees look
+     * at their own stripe first, and steal from the others when it has no free
+     * employee or no queued call.
+     * 
+     * @param _stripes
+     *            the number of stripes
+     * @return this configuration
+     */
+    public DispatcherConfig setStripes(int _stripes) {
+        if (_stripes < 1)
+            throw new IllegalArgumentException("There must be at least one stripe");
+        this.stripes = _stripes;
+        return this;
+    }
+
+    /**
+     * Set the capacity of the queue of each rank (shared among the stripes, and
+     * among the calls requiring different skills).
+     * 
+     * @param _queueCapacity
+     *            the maximum number of calls waiting in a queue (rounded up to a
+     *            power of two per stripe, at least 2)
+     * @return this configuration
+     */
+    public DispatcherConfig setQueueCapacity(int _queueCapacity) {
+        if (_queueCapacity < 1 || _queueCapacity > 1 << 30)
+            throw new IllegalArgumentException("The queue capacity must be between 1 and 2^30");
+        this.queueCapacity = _queueCapacity;
+        return this;
+    }
+
+    /**
+     * Set what happens to a call when its queue is full.
+     * 
+     * @param _overflowPolicy
+     *            the overflow policy
+     * @return this configuration
+     */
+    public DispatcherConfig setOverflowPolicy(OverflowPolicy _overflowPolicy) {
+        if (_overflowPolicy == null)
+            throw new IllegalArgumentException("The overflow policy cannot be null");
+        this.overflowPolicy = _overflowPolicy;
+        return this;
+    }
+
+    /**
+     * Set the target maximum waiting time of the calls of each priority. The
+     * employees take the queued call with the earliest deadline (the time it was
+     * queued plus the target of its priority): calls of higher priority are served
+     * first, unless calls of lower priority have been waiting for long enough.
+     * 
+     * @param unit
+     *            the time unit of the targets
+     * @param respondent
+     *            the target for the calls of priority RESPONDENT
+     * @param manager
+     *            the target for the calls of priority MANAGER
+     * @param director
+     *            the target for the calls of priority DIRECTOR
+     * @return this configuration
+     */
+    public DispatcherConfig setServiceLevels(TimeUnit unit, long respondent, long manager, long director) {
+        if (respondent < 0 || manager < 0 || director < 0)
+            throw new IllegalArgumentException("The service levels cannot be negative");
+        this.serviceLevels = new long[] { unit.toNanos(respondent), unit.toNanos(manager), unit.toNanos(director) };
+        return this;
+    }
+
+    /**
+     * Set the journal recording the lifecycle events of the calls. The calls which
+     * were not over when the journal was last closed (or when the JVM crashed) are
+     * queued again when the dispatcher is created (see
+     * {@link CallDispatcher#getRecoveredCalls()}).
+     * 
+     * @param _journal
+     *            the journal (by default, nothing is recorded)
+     * @return this configuration
+     */
+    public DispatcherConfig setJournal(CallJournal _journal) {
+        if (_journal == null)
+            throw new IllegalArgumentException("The journal cannot be null");
+        this.journal = _journal;
+        return this;
+    }
+
+    /**
+     * Set the sink of the messages said to the customers (e.g. a
+     * {@link com.callcenter.messaging.RingBufferMessageSink} for high-volume runs).
+     * 
+     * @param _messageSink
+     *            the message sink
+     * @return this configuration
+     */
+    public DispatcherConfig setMessageSink(MessageSink _messageSink) {
+        if (_messageSink == null)
+            throw new IllegalArgumentException("The message sink cannot be null");
+        this.messageSink = _messageSink;
+        return this;
+    }
+
+    /**
+     * Set the capacity of the mailbox of each employee in
+     * {@link ExecutionMode#ACTOR} mode.
+     * 
+     * @param _mailboxCapacity
+     *            the maximum number of calls waiting for an employee (at least
+     *            1, rounded up to a power of two)
+     * @return this configuration
+     */
+    public DispatcherConfig setMailboxCapacity(int _mailboxCapacity) {
+        if (_mailboxCapacity < 1)
+            throw new IllegalArgumentException("The mailbox capacity must be positive");
+        this.mailboxCapacity = _mailboxCapacity;
+        return this;
+    }
+
+    /**
+     * Set the simulator playing the conversations in
+     * {@link ExecutionMode#SIMULATED} mode, and giving the time of the dispatcher.
+     * 
+     * @param _simulator
+     *            the simulator
+     * @return this configuration
+     */
+    public DispatcherConfig setSimulator(Simulator _simulator) {
+        this.simulator = _simulator;
+        return this;
+    }
+
+    /**
+     * Set how a free employee is picked among those able to handle a call (not
+     * used in {@link ExecutionMode#ACTOR} mode).
+     * 
+     * @param _agentSelectionPolicy
+     *            the policy (by default {@link AgentSelectionPolicy#LAST_FREED})
+     * @return this configuration
+     */
+    public DispatcherConfig setAgentSelectionPolicy(AgentSelectionPolicy _agentSelectionPolicy) {
+        if (_agentSelectionPolicy == null)
+            throw new IllegalArgumentException("The agent selection policy cannot be null");
+        this.agentSelectionPolicy = _agentSelectionPolicy;
+        return this;
+    }
+
+    /**
+     * Set the router deciding which rank a new call starts at (e.g. a
+     * {@link com.callcenter.routing.EscalationRouter} sending the calls likely to
+     * be escalated straight to a higher rank).
+     * 
+     * @param _callRouter
+     *            the router (by default, the calls start at their priority)
+     * @return this configuration
+     */
+    public DispatcherConfig setCallRouter(CallRouter _callRouter) {
+        if (_callRouter == null)
+            throw new IllegalArgumentException("The call router cannot be null");
+        this.callRouter = _callRouter;
+        return this;
+    }
+
+    public ExecutionMode getMode() {
+        return this.mode;
+    }
+
+    public int getDrainBatchSize() {
+        return this.drainBatchSize;
+    }
+
+    public ConversationModel getConversationModel() {
+        return this.conversationModel;
+    }
+
+    /**
+     * Get the skills of an employee.
+     * 
+     * @param rank
+     *            the rank of the employee
+     * @param index
+     *            the index of the employee among the employees of its rank
+     * @return the skills, as a bitmask (bit i stands for skill i).
+     */
+    public long getSkills(Rank rank, int index) {
+        long[] skillSets = this.skills[rank.getValue()];
+        return skillSets[index % skillSets.length];
+    }
+
+    public int getStripes() {
+        return this.stripes;
+    }
+
+    public int getQueueCapacity() {
+        return this.queueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    /**
+     * Get the target maximum waiting time of the calls of a priority.
+     * 
+     * @param priority
+     *            the priority of the calls
+     * @return the target in nanoseconds.
+     */
+    public long getServiceLevel(int priority) {
+        return this.serviceLevels[priority];
+    }
+
+    public CallJournal getJournal() {
+        return this.journal;
+    }
+
+    public MessageSink getMessageSink() {
+        return this.messageSink;
+    }
+
+    public int getMailboxCapacity() {
+        return this.mailboxCapacity;
+    }
+
+    public Simulator getSimulator() {
+        return this.simulator;
+    }
+
+    public AgentSelectionPolicy getAgentSelectionPolicy() {
+        return this.agentSelectionPolicy;
+    }
+
+    public CallRouter getCallRouter() {
+        return this.callRouter;
+    }
+}
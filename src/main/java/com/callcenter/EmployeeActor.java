@@ -0,0 +1,183 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.locks.LockSupport;
+
+import com.callcenter.employees.Employee;
+
+/**
+ * An employee modeled as an actor: a bounded lock-free mailbox of calls consumed
+ * by a single thread (see {@link ExecutionMode#ACTOR}). Once its mailbox is
+ * empty, the actor takes the calls the dispatcher queued when all the mailboxes
+ * were full; with nothing to do, it parks until a call is sent to it.
+ * 
+ * @author pviotti
+ */
+final class EmployeeActor implements Runnable {
+
+    private final Employee employee;
+    private final CallDispatcher dispatcher;
+
+    /* Many dispatching threads offer, only the actor's thread polls (but when retired). */
+    private final RingQueue<Call> mailbox;
+
+    /* The thread of the actor, once started. */
+    private volatile Thread thread;
+
+    /* Set before the actor looks for calls a last time and parks: senders then wake it up. */
+    private volatile boolean idle;
+
+    /* Set once the actor has stopped taking calls from its mailbox. */
+    private volatile boolean closed;
+
+    /**
+     * @param _employee
+     *            the employee, owned by the actor's thread (never claimed)
+     * @param _dispatcher
+     *            the dispatcher
+     * @param _capacity
+     *            the capacity of the mailbox (rounded up to a power of two)
+     */
+    EmployeeActor(Employee _employee, CallDispatcher _dispatcher, int _capacity) {
+        this.employee = _employee;
+        this.dispatcher = _dispatcher;
+        this.mailbox = new RingQueue<Call>(_capacity);
+    }
+
+    /**
+     * Send a call to this actor if its mailbox is not full. Never blocks.
+     * 
+     * @param call
+     *            the call to be handled
+     * @return true if the call was accepted
+     */
+    boolean offer(Call call) {
+        if (!mailbox.offer(call))
+            return false;
+        if (closed)
+            return !withdrawn(call);
+        wake();
+        return true;
+    }
+
+    /**
+     * Wake up the actor if it is parked, waiting for calls.
+     * 
+     * @return true if the actor was idle.
+     */
+    boolean wake() {
+        if (!idle)
+            return false;
+        LockSupport.unpark(thread);
+        return true;
+    }
+
+    /**
+     * Send on the calls put in the mailbox after the actor has retired (the actor
+     * may be doing the same when closing its mailbox).
+     * 
+     * @param call
+     *            the call just put in the mailbox
+     * @return true if that call has been taken back, to be sent to somebody else
+     */
+    private boolean withdrawn(Call call) {
+        boolean found = false;
+        Call c;
+        while ((c = mailbox.poll()) != null)
+            if (c == call)
+                found = true;
+            else
+                dispatcher.redispatch(c);
+        return found;
+    }
+
+    /**
+     * Let the actor retire once done with the calls in its mailbox. The employee
+     * must already be marked as retiring, so that no call is sent to it anymore.
+     */
+    void retire() {
+        Thread t = thread;
+        if (t != null)
+            LockSupport.unpark(t);
+    }
+
+    /**
+     * Get the employee behind this actor.
+     * 
+     * @return the employee.
+     */
+    Employee getEmployee() {
+        return employee;
+    }
+
+    /**
+     * Get the number of calls waiting in the mailbox.
+     * 
+     * @return the number of waiting calls.
+     */
+    int backlog() {
+        return mailbox.size();
+    }
+
+    @Override
+    public void run() {
+        Thread self = Thread.currentThread();
+        thread = self;
+        while (true) {
+            if (self.isInterrupted())
+                return; // the dispatcher is shut down
+            Call call = next();
+            if (call == null) {
+                if (employee.isRetiring())
+                    break;
+                // Look a last time once senders know they have to wake us up
+                idle = true;
+                call = next();
+                if (call == null && !employee.isRetiring())
+                    LockSupport.park(this);
+                idle = false;
+                if (call == null)
+                    continue;
+            }
+            // The escalated calls are handed back to the dispatcher, which never blocks
+            if (employee.handleOwnedCall(call))
+                dispatcher.escalate(call);
+        }
+
+        // Calls sent while the actor was retiring go to other employees
+        closed = true;
+        Call call;
+        while ((call = mailbox.poll()) != null)
+            dispatcher.redispatch(call);
+        dispatcher.retire(employee);
+    }
+
+    /**
+     * Get the next call: from the mailbox, or else from the dispatcher's queues
+     * (unless retiring).
+     * 
+     * @return the call, or null if there is none.
+     */
+    private Call next() {
+        Call call = mailbox.poll();
+        if (call == null && !employee.isRetiring())
+            call = dispatcher.pollQueuedCall(employee);
+        return call;
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+/**
+ * The way calls are executed by the dispatcher.
+ * 
+ * @author pviotti
+ */
+public enum ExecutionMode {
+    /** Calls are handled on the thread that dispatches them. */
+    SYNCHRONOUS,
+    /** Calls are handed off to a dedicated executor of each employee. */
+    ASYNCHRONOUS,
+    /**
+     * As {@link #ASYNCHRONOUS}, but the executors of the employees run on virtual
+     * threads (requires Java 21 or later).
+     */
+    VIRTUAL_THREADS,
+    /**
+     * Each employee is an actor with a bounded lock-free mailbox consumed by its own
+     * thread: calls and escalations are messages sent to the mailboxes of the
+     * employees of the required rank, or queued when they are all full.
+     */
+    ACTOR,
+    /**
+     * Calls are not executed: the conversations are handed to a
+     * {@link com.callcenter.simulation.Simulator} (see
+     * {@link DispatcherConfig#setSimulator}), which plays them on its virtual clock.
+     */
+    SIMULATED
+}
@@ -0,0 +1,36 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+/**
+ * What happens to a call when the queue corresponding to its priority is full.
+ * 
+ * @author pviotti
+ */
+public enum OverflowPolicy {
+    /** The call is rejected with a busy signal. */
+    REJECT,
+    /** The oldest call of the queue is rejected to make room for the new one. */
+    DROP_OLDEST,
+    /**
+     * The call spills into the queue of the next rank that has room: it then waits
+     * for a more senior (and less loaded) employee, and is rejected if all those
+     * queues are full.
+     */
+    SPILL
+}
@@ -0,0 +1,173 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free multi-producer multi-consumer queue backed by an array (D.
+ * Vyukov's algorithm): offering and polling never allocate.
+ * 
+ * @author pviotti
+ */
+final class RingQueue<E> {
+
+    private final int mask;
+
+    /* Slot i is free for the producer of position p when sequences[i] == p, and
+     * holds the element of position p for consumers when sequences[i] == p + 1. */
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity
+     *            the capacity of the queue (rounded up to a power of two, at
+     *            least 2 for the sequences to tell a full slot from an empty one)
+     */
+    RingQueue(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^30");
+        int size = Math.max(2, Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1);
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+        this.elements = new AtomicReferenceArray<E>(size);
+    }
+
+    /**
+     * Add an element at the tail of the queue, if it is not full.
+     * 
+     * @param e
+     *            the element
+     * @return false if the queue is full
+     */
+    boolean offer(E e) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(slot, e);
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+            } else if (sequence < position) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Add a run of elements at the tail of the queue, as many as there is room for,
+     * reserving their slots at once.
+     * 
+     * @param es
+     *            the elements
+     * @param from
+     *            the index of the first element to be added (inclusive)
+     * @param to
+     *            the index of the last element to be added (exclusive)
+     * @return the number of elements added, from the first one of the run
+     */
+    int offerAll(E[] es, int from, int to) {
+        long position;
+        int n;
+        do {
+            position = tail.get();
+            // head only grows: the room seen here can only be an underestimate
+            n = (int) Math.min(to - from, mask + 1 - (position - head.get()));
+            if (n <= 0)
+                return 0;
+        } while (!tail.compareAndSet(position, position + n));
+
+        for (int i = 0; i < n; i++) {
+            long p = position + i;
+            int slot = (int) p & mask;
+            // The consumer of the previous lap may not have released the slot yet
+            while (sequences.get(slot) != p)
+                Thread.yield();
+            elements.lazySet(slot, es[from + i]);
+            sequences.set(slot, p + 1);
+        }
+        return n;
+    }
+
+    /**
+     * Remove the element at the head of the queue.
+     * 
+     * @return the element, or null if the queue is empty
+     */
+    E poll() {
+        while (true) {
+            long position = head.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position + 1) {
+                if (head.compareAndSet(position, position + 1)) {
+                    E e = elements.get(slot);
+                    elements.lazySet(slot, null);
+                    sequences.set(slot, position + mask + 1);
+                    return e;
+                }
+            } else if (sequence < position + 1) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Get the element at the head of the queue without removing it (a hint under
+     * concurrency: it may have been removed by the time it is returned).
+     * 
+     * @return the element, or null if the queue is empty
+     */
+    E peek() {
+        long position = head.get();
+        int slot = (int) position & mask;
+        return sequences.get(slot) == position + 1 ? elements.get(slot) : null;
+    }
+
+    /**
+     * Get the number of elements in the queue (a snapshot under concurrency).
+     * 
+     * @return the number of elements.
+     */
+    int size() {
+        while (true) {
+            long h = head.get();
+            long t = tail.get();
+            if (h == head.get())
+                return (int) Math.max(0, Math.min(t - h, mask + 1));
+        }
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+}
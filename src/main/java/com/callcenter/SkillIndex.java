@@ -0,0 +1,110 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * A small lock-free map from skill sets (bitmasks: bit i stands for skill i) to
+ * values, e.g. the pools of the idle employees having the same skills. Lookups
+ * read an immutable array of entries, sorted by number of skills, so that the
+ * entries covering some required skills are found by testing each distinct
+ * skill set once, whatever the number of employees or calls; new skill sets
+ * (rare) are added by copying the array.
+ * 
+ * @author pviotti
+ */
+final class SkillIndex<V> {
+
+    /**
+     * A skill set and its value.
+     */
+    static final class Entry<V> {
+        final long skills;
+        final V value;
+
+        Entry(long _skills, V _value) {
+            this.skills = _skills;
+            this.value = _value;
+        }
+    }
+
+    private final Supplier<V> factory;
+
+    private volatile Entry<V>[] entries;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" }) // no arrays of a generic type
+    SkillIndex(Supplier<V> _factory) {
+        this.factory = _factory;
+        this.entries = new Entry[0];
+    }
+
+    /**
+     * Check whether a skill set includes the required skills.
+     * 
+     * @param skills
+     *            the skill set
+     * @param required
+     *            the required skills
+     * @return true if all the required skills are in the skill set
+     */
+    static boolean covers(long skills, long required) {
+        return (skills & required) == required;
+    }
+
+    /**
+     * Get the entries, sorted by increasing number of skills.
+     * 
+     * @return the entries (must not be modified).
+     */
+    Entry<V>[] entries() {
+        return entries;
+    }
+
+    /**
+     * Get the value of a skill set, creating it if needed.
+     * 
+     * @param skills
+     *            the skill set
+     * @return the value.
+     */
+    V get(long skills) {
+        for (Entry<V> e : entries)
+            if (e.skills == skills)
+                return e.value;
+        return add(skills);
+    }
+
+    private synchronized V add(long skills) {
+        Entry<V>[] current = entries;
+        for (Entry<V> e : current)
+            if (e.skills == skills)
+                return e.value;
+
+        Entry<V>[] updated = Arrays.copyOf(current, current.length + 1);
+        int i = current.length;
+        while (i > 0 && Long.bitCount(updated[i - 1].skills) > Long.bitCount(skills)) {
+            updated[i] = updated[i - 1];
+            i--;
+        }
+        updated[i] = new Entry<V>(skills, factory.get());
+        entries = updated;
+        return updated[i].value;
+    }
+}
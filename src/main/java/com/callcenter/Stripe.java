@@ -0,0 +1,164 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.callcenter.selection.AgentPool;
+import com.callcenter.selection.AgentSelectionPolicy;
+
+/**
+ * A partition of the call center: the idle employees and the waiting calls of
+ * each rank that the threads of this stripe look at first, indexed by skill set
+ * (see {@link SkillIndex}). The queues of the skill sets of a rank share the
+ * capacity of the stripe: a call takes room before being offered, and gives it
+ * back once polled.
+ * 
+ * @author pviotti
+ */
+class Stripe {
+
+    /* Calls waiting, per priority and required skills. */
+    final SkillIndex<RingQueue<Call>>[] callQueues;
+
+    /* Lock-free pools of the idle employees, per rank and skill set. */
+    final SkillIndex<AgentPool>[] freeEmployees;
+
+    /* Room left in the queues of each priority, whatever the skills. */
+    private final AtomicInteger[] room;
+
+    @SuppressWarnings({ "unchecked", "rawtypes" }) // no arrays of a generic type
+    Stripe(int ranks, int queueCapacity, AgentSelectionPolicy policy, Supplier<? extends Random> random) {
+        this.callQueues = new SkillIndex[ranks];
+        this.freeEmployees = new SkillIndex[ranks];
+        this.room = new AtomicInteger[ranks];
+        // Any skill set may take the whole room
+        int capacity = new RingQueue<Call>(queueCapacity).capacity();
+        for (int i = 0; i < ranks; i++) {
+            callQueues[i] = new SkillIndex<RingQueue<Call>>(() -> new RingQueue<Call>(capacity));
+            freeEmployees[i] = new SkillIndex<AgentPool>(() -> policy.newPool(random));
+            room[i] = new AtomicInteger(capacity);
+        }
+    }
+
+    /**
+     * Take room for some calls in the queues of a priority.
+     * 
+     * @param queue
+     *            the rank of the queues
+     * @param calls
+     *            the number of calls
+     * @return the number of calls there is room for, at most the number asked
+     */
+    int reserve(int queue, int calls) {
+        AtomicInteger left = room[queue];
+        while (true) {
+            int r = left.get();
+            int n = Math.min(r, calls);
+            if (n == 0 || left.compareAndSet(r, r - n))
+                return n;
+        }
+    }
+
+    /**
+     * Give back the room of some calls taken out of the queues of a priority (or
+     * which couldn't be offered after all).
+     * 
+     * @param queue
+     *            the rank of the queues
+     * @param calls
+     *            the number of calls
+     */
+    void free(int queue, int calls) {
+        room[queue].addAndGet(calls);
+    }
+
+    /**
+     * Put a call in the queue of its skills, if there is room left in the queues
+     * of the priority.
+     * 
+     * @param queue
+     *            the rank of the queue
+     * @param call
+     *            the call
+     * @return true if the call has been queued
+     */
+    boolean offer(int queue, Call call) {
+        if (reserve(queue, 1) == 0)
+            return false;
+        if (callQueues[queue].get(call.getRequiredSkills()).offer(call))
+            return true;
+        free(queue, 1);
+        return false;
+    }
+
+    /**
+     * Put a run of calls not requiring any skill in a queue, as many as there is
+     * room for.
+     * 
+     * @param queue
+     *            the rank of the queue
+     * @param calls
+     *            the calls
+     * @param from
+     *            the index of the first call to be added (inclusive)
+     * @param to
+     *            the index of the last call to be added (exclusive)
+     * @return the number of calls added, from the first one of the run
+     */
+    int offerAll(int queue, Call[] calls, int from, int to) {
+        int n = reserve(queue, to - from);
+        if (n == 0)
+            return 0;
+        int added = callQueues[queue].get(0).offerAll(calls, from, from + n);
+        if (added < n)
+            free(queue, n - added);
+        return added;
+    }
+
+    /**
+     * Take out the oldest call of the queues of a priority, whatever its skills.
+     * 
+     * @param queue
+     *            the rank of the queues
+     * @return the call, or null if the queues are empty
+     */
+    Call pollOldest(int queue) {
+        while (true) {
+            RingQueue<Call> oldest = null;
+            long earliest = 0;
+            for (SkillIndex.Entry<RingQueue<Call>> candidate : callQueues[queue].entries()) {
+                Call head = candidate.value.peek();
+                if (head != null && (oldest == null || head.getQueuedTime() - earliest < 0)) {
+                    oldest = candidate.value;
+                    earliest = head.getQueuedTime();
+                }
+            }
+            if (oldest == null)
+                return null;
+            Call call = oldest.poll();
+            if (call != null) {
+                free(queue, 1);
+                return call;
+            }
+            // somebody else took it: look again
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.conversation;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Rank;
+
+/**
+ * Base class of the conversation models escalating calls with a fixed
+ * probability per rank.
+ * 
+ * @author pviotti
+ */
+public abstract class AbstractConversationModel implements ConversationModel {
+
+    private final double[] escalationProbabilities;
+
+    /**
+     * @param _escalationProbabilities
+     *            the probability of escalating a call for each rank
+     */
+    protected AbstractConversationModel(double[] _escalationProbabilities) {
+        checkPerRank(_escalationProbabilities);
+        for (double p : _escalationProbabilities)
+            if (p < 0 || p > 1)
+                throw new IllegalArgumentException("Escalation probabilities must be between 0 and 1");
+        this.escalationProbabilities = _escalationProbabilities.clone();
+    }
+
+    @Override
+    public boolean escalates(Call call, Rank rank, Random rnd) {
+        return rnd.nextDouble() < escalationProbabilities[rank.getValue()];
+    }
+
+    /**
+     * Get the probability of escalating a call for the given rank.
+     * 
+     * @param rank
+     *            the rank of the employee
+     * @return the escalation probability.
+     */
+    public double getEscalationProbability(Rank rank) {
+        return escalationProbabilities[rank.getValue()];
+    }
+
+    /**
+     * Check that an array has one value for each rank.
+     * 
+     * @param perRank
+     *            the array to be checked
+     */
+    static void checkPerRank(double[] perRank) {
+        if (perRank.length != Rank.values().length)
+            throw new IllegalArgumentException("Expected one value per rank, got " + perRank.length);
+    }
+
+    /**
+     * Get an array with the same value for each rank.
+     * 
+     * @param value
+     *            the value
+     * @return the array
+     */
+    static double[] perRank(double value) {
+        double[] res = new double[Rank.values().length];
+        Arrays.fill(res, value);
+        return res;
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.conversation;
+
+import java.util.Random;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Rank;
+
+/**
+ * Model of the conversations between employees and customers. Implementations
+ * must be thread-safe: all the randomness comes from the given generator (e.g.
+ * {@link java.util.concurrent.ThreadLocalRandom}), so that employees don't
+ * contend on a shared one.
+ * 
+ * @author pviotti
+ */
+public interface ConversationModel {
+
+    /**
+     * Get the time spent by an employee on a call.
+     * 
+     * @param call
+     *            the call being handled
+     * @param rank
+     *            the rank of the employee handling the call
+     * @param rnd
+     *            the random generator to be used
+     * @return the handling time in nanoseconds.
+     */
+    long handlingTime(Call call, Rank rank, Random rnd);
+
+    /**
+     * Decide whether an employee escalates a call to the next rank. Directors never
+     * escalate calls, whatever this method returns.
+     * 
+     * @param call
+     *            the call being handled
+     * @param rank
+     *            the rank of the employee handling the call
+     * @param rnd
+     *            the random generator to be used
+     * @return true if the call must be escalated.
+     */
+    boolean escalates(Call call, Rank rank, Random rnd);
+}
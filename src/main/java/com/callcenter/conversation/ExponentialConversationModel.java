@@ -0,0 +1,71 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.conversation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Rank;
+
+/**
+ * Exponentially distributed handling times, with a mean for each rank.
+ * 
+ * @author pviotti
+ */
+public class ExponentialConversationModel extends AbstractConversationModel {
+
+    private final double[] meanNanos;
+
+    /**
+     * @param _meanDurations
+     *            the mean handling time for each rank
+     * @param unit
+     *            the unit of the mean handling times
+     * @param _escalationProbabilities
+     *            the probability of escalating a call for each rank
+     */
+    public ExponentialConversationModel(double[] _meanDurations, TimeUnit unit, double[] _escalationProbabilities) {
+        super(_escalationProbabilities);
+        checkPerRank(_meanDurations);
+        this.meanNanos = new double[_meanDurations.length];
+        for (int i = 0; i < _meanDurations.length; i++) {
+            if (_meanDurations[i] < 0)
+                throw new IllegalArgumentException("The call duration cannot be negative");
+            this.meanNanos[i] = _meanDurations[i] * unit.toNanos(1);
+        }
+    }
+
+    /**
+     * @param _meanDuration
+     *            the mean handling time for all ranks
+     * @param unit
+     *            the unit of the mean handling time
+     * @param _escalationProbability
+     *            the probability of escalating a call (for respondents and managers)
+     */
+    public ExponentialConversationModel(double _meanDuration, TimeUnit unit, double _escalationProbability) {
+        this(perRank(_meanDuration), unit, perRank(_escalationProbability));
+    }
+
+    @Override
+    public long handlingTime(Call call, Rank rank, Random rnd) {
+        // Inverse transform sampling: 1 - nextDouble() is in (0, 1]
+        return (long) (-meanNanos[rank.getValue()] * Math.log(1 - rnd.nextDouble()));
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.conversation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Rank;
+
+/**
+ * Log-normally distributed handling times (the usual shape of call center
+ * handling times), given by their median and shape parameter for each rank.
+ * 
+ * @author pviotti
+ */
+public class LogNormalConversationModel extends AbstractConversationModel {
+
+    /* Location (mu) and scale (sigma) of the logarithm of the handling times in nanoseconds. */
+    private final double[] mu;
+    private final double[] sigma;
+
+    /**
+     * @param _medianDurations
+     *            the median handling time for each rank
+     * @param unit
+     *            the unit of the median handling times
+     * @param _sigmas
+     *            the standard deviation of the logarithm of the handling times for
+     *            each rank
+     * @param _escalationProbabilities
+     *            the probability of escalating a call for each rank
+     */
+    public LogNormalConversationModel(double[] _medianDurations, TimeUnit unit, double[] _sigmas,
+            double[] _escalationProbabilities) {
+        super(_escalationProbabilities);
+        checkPerRank(_medianDurations);
+        checkPerRank(_sigmas);
+        this.mu = new double[_medianDurations.length];
+        this.sigma = _sigmas.clone();
+        for (int i = 0; i < _medianDurations.length; i++) {
+            if (_medianDurations[i] <= 0 || _sigmas[i] < 0)
+                throw new IllegalArgumentException("Medians must be positive and sigmas not negative");
+            this.mu[i] = Math.log(_medianDurations[i] * unit.toNanos(1));
+        }
+    }
+
+    /**
+     * @param _medianDuration
+     *            the median handling time for all ranks
+     * @param unit
+     *            the unit of the median handling time
+     * @param _sigma
+     *            the standard deviation of the logarithm of the handling times
+     * @param _escalationProbability
+     *            the probability of escalating a call (for respondents and managers)
+     */
+    public LogNormalConversationModel(double _medianDuration, TimeUnit unit, double _sigma,
+            double _escalationProbability) {
+        this(perRank(_medianDuration), unit, perRank(_sigma), perRank(_escalationProbability));
+    }
+
+    @Override
+    public long handlingTime(Call call, Rank rank, Random rnd) {
+        int i = rank.getValue();
+        return (long) Math.exp(mu[i] + sigma[i] * rnd.nextGaussian());
+    }
+}
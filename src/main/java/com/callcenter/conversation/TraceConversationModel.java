@@ -0,0 +1,122 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.conversation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Rank;
+
+/**
+ * Handling times and escalations replayed from a trace of real calls: each
+ * conversation draws a recorded handling time of its rank at random, and calls
+ * are escalated with the frequency observed in the trace.
+ * 
+ * <p>
+ * A trace file has one line per recorded conversation, in the format
+ * {@code rank,handlingTimeMicros,escalated} (e.g. {@code MANAGER,183000,false}).
+ * Blank lines and lines starting with {@code #} are ignored.
+ * 
+ * @author pviotti
+ */
+public class TraceConversationModel extends AbstractConversationModel {
+
+    private final long[][] handlingTimes;
+
+    /**
+     * @param _handlingTimes
+     *            the recorded handling times in nanoseconds, for each rank
+     * @param _escalationProbabilities
+     *            the probability of escalating a call for each rank
+     */
+    public TraceConversationModel(long[][] _handlingTimes, double[] _escalationProbabilities) {
+        super(_escalationProbabilities);
+        if (_handlingTimes.length != Rank.values().length)
+            throw new IllegalArgumentException("Expected handling times for each rank");
+        this.handlingTimes = new long[_handlingTimes.length][];
+        for (int i = 0; i < _handlingTimes.length; i++)
+            this.handlingTimes[i] = _handlingTimes[i].clone();
+    }
+
+    /**
+     * Load a trace file.
+     * 
+     * @param trace
+     *            the path of the trace
+     * @return the model replaying the trace
+     * @throws IOException
+     *             if the trace cannot be read
+     * @throws IllegalArgumentException
+     *             if the trace is malformed
+     */
+    public static TraceConversationModel load(Path trace) throws IOException {
+        int ranks = Rank.values().length;
+        long[][] times = new long[ranks][16];
+        int[] counts = new int[ranks];
+        int[] escalated = new int[ranks];
+
+        try (BufferedReader reader = Files.newBufferedReader(trace, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#"))
+                    continue;
+                String[] fields = line.split(",");
+                if (fields.length != 3)
+                    throw new IllegalArgumentException("Malformed trace line " + lineNumber + ": " + line);
+                int rank;
+                long time;
+                try {
+                    rank = Rank.valueOf(fields[0].trim()).getValue();
+                    time = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(fields[1].trim()));
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("Malformed trace line " + lineNumber + ": " + line, e);
+                }
+                if (counts[rank] == times[rank].length)
+                    times[rank] = Arrays.copyOf(times[rank], counts[rank] * 2);
+                times[rank][counts[rank]++] = time;
+                if (Boolean.parseBoolean(fields[2].trim()))
+                    escalated[rank]++;
+            }
+        }
+
+        double[] escalationProbabilities = new double[ranks];
+        for (int i = 0; i < ranks; i++) {
+            if (counts[i] == 0)
+                throw new IllegalArgumentException("No recorded call for rank " + Rank.values()[i]);
+            times[i] = Arrays.copyOf(times[i], counts[i]);
+            escalationProbabilities[i] = (double) escalated[i] / counts[i];
+        }
+        return new TraceConversationModel(times, escalationProbabilities);
+    }
+
+    @Override
+    public long handlingTime(Call call, Rank rank, Random rnd) {
+        long[] times = handlingTimes[rank.getValue()];
+        return times[rnd.nextInt(times.length)];
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.conversation;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Rank;
+
+/**
+ * Handling times uniformly distributed between zero and a maximum duration.
+ * 
+ * @author pviotti
+ */
+public class UniformConversationModel extends AbstractConversationModel {
+
+    private final long maxDuration;
+
+    /**
+     * @param _maxDuration
+     *            the maximum handling time (0 for instantaneous calls)
+     * @param unit
+     *            the unit of the maximum handling time
+     * @param _escalationProbability
+     *            the probability of escalating a call (for respondents and managers)
+     */
+    public UniformConversationModel(long _maxDuration, TimeUnit unit, double _escalationProbability) {
+        super(perRank(_escalationProbability));
+        if (_maxDuration < 0)
+            throw new IllegalArgumentException("The call duration cannot be negative");
+        this.maxDuration = unit.toNanos(_maxDuration);
+    }
+
+    @Override
+    public long handlingTime(Call call, Rank rank, Random rnd) {
+        return (long) (rnd.nextDouble() * maxDuration);
+    }
+}
@@ -18,9 +18,16 @@
 package com.callcenter.employees;
 
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.callcenter.Call;
 import com.callcenter.CallDispatcher;
+import com.callcenter.conversation.ConversationModel;
+import com.callcenter.journal.JournalEvent;
+import com.callcenter.messaging.CallMessage;
 
 /**
  * An employee of the call center.
@@ -35,57 +42,247 @@ public class Employee {
     // private String name = ...
 
     private final Rank rank;
-    private boolean isFree;
 
-    private static final String MSG_START = "Hi! I'm a %s. How can I help you?";
-    private static final String MSG_ESCALATE = "This looks like a challenging issue! I'm going to call my boss.";
-    private static final String MSG_END = "Issue solved! Thank you for calling, have a nice day!";
+    /* The skills of the employee (bitmask: bit i stands for skill i). */
+    private long skills;
+
+    /* The stripe of the call center this employee belongs to (see DispatcherConfig#setStripes). */
+    private int stripe;
+
+    /* Whether the employee is leaving the call center once done with the current call. */
+    private volatile boolean retiring;
+
+    /* Whether the employee is FREE or BUSY: only changed through compare-and-set. */
+    private volatile int state;
+
+    private static final int FREE = 0;
+    private static final int BUSY = 1;
+    private static final AtomicIntegerFieldUpdater<Employee> STATE = AtomicIntegerFieldUpdater
+            .newUpdater(Employee.class, "state");
+
+    /* Held while handling a call (a lock rather than a monitor, not to pin virtual threads). */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /* When the employee was hired, the time spent on calls since then and the number of
+     * calls handled (only written by the thread holding the claim). */
+    private final long hireTime;
+    private volatile long busyTime;
+    private volatile long handledCalls;
 
-    private static final int MAX_CALL_DURATION = 100;
-    private static final Random rnd = new Random();
 
     public Employee(Rank _rank, CallDispatcher _dispatcher) {
         this.rank = _rank;
         this.callDispatcher = _dispatcher;
-        this.isFree = true;
+        this.state = FREE;
+        this.hireTime = _dispatcher.nanoTime();
+    }
+
+    /**
+     * Get the skills of this employee (besides the rank, which is the skill level
+     * of the escalation chain).
+     * 
+     * @return the skills, as a bitmask (bit i stands for skill i).
+     */
+    public long getSkills() {
+        return this.skills;
+    }
+
+    /**
+     * Set the skills of this employee (done by the dispatcher when it is created,
+     * see DispatcherConfig#setSkills).
+     * 
+     * @param _skills
+     *            the skills, as a bitmask (bit i stands for skill i)
+     */
+    public void setSkills(long _skills) {
+        this.skills = _skills;
+    }
+
+    /**
+     * Get the stripe of the call center this employee belongs to.
+     * 
+     * @return the index of the stripe.
+     */
+    public int getStripe() {
+        return this.stripe;
+    }
+
+    /**
+     * Set the stripe of the call center this employee belongs to (done by the
+     * dispatcher when it is created).
+     * 
+     * @param _stripe
+     *            the index of the stripe
+     */
+    public void setStripe(int _stripe) {
+        this.stripe = _stripe;
+    }
+
+    /**
+     * Mark this employee as leaving the call center: it finishes its current call
+     * but takes no new one (done by the dispatcher, see
+     * {@link CallDispatcher#removeEmployee}).
+     */
+    public void retire() {
+        this.retiring = true;
+    }
+
+    /**
+     * Returns whether the employee is leaving the call center.
+     * 
+     * @return boolean on whether the employee is leaving.
+     */
+    public boolean isRetiring() {
+        return this.retiring;
     }
 
     /**
-     * Starts handling a call. (Synchronized as a single employee cannot handle more
-     * than one call at a time).
+     * Atomically claim this employee for handling a call.
+     * 
+     * @return true if the employee was free and is now reserved to the caller, false
+     *         if somebody else claimed it first.
+     */
+    public boolean tryClaim() {
+        if (!STATE.compareAndSet(this, FREE, BUSY))
+            return false;
+        callDispatcher.getMetrics().onClaimed(rank);
+        return true;
+    }
+
+    /**
+     * Release this employee after a claim, making it free again.
+     */
+    public void release() {
+        callDispatcher.getMetrics().onReleased(rank);
+        this.state = FREE;
+    }
+
+    /**
+     * Starts handling a call. The employee must have been claimed beforehand (see
+     * {@link #tryClaim()}). (Locked as a single employee cannot handle more than
+     * one call at a time).
      * 
      * @param call
      *            the call to be handled.
+     * @return true if the call has been escalated, in which case the caller
+     *         dispatches it again (once done with the employee).
      */
-    public synchronized void handleCall(Call call) {
-        this.isFree = false;
-        call.setStartTime();
-        call.say(String.format(MSG_START, rank.toString().toLowerCase()));
+    public boolean handleCall(Call call) {
+        if (this.state != BUSY)
+            throw new IllegalStateException("Employee must be claimed before handling a call");
+        lock.lock();
+        try {
+            return converse(call);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handles a call on the only thread ever using this employee (an actor, see
+     * {@link com.callcenter.ExecutionMode#ACTOR}): the employee is neither claimed
+     * nor locked.
+     * 
+     * @param call
+     *            the call to be handled.
+     * @return true if the call has been escalated, in which case the caller
+     *         dispatches it again.
+     */
+    public boolean handleOwnedCall(Call call) {
+        return converse(call);
+    }
+
+    /**
+     * Talk with the customer, then either escalate or end the call.
+     * 
+     * @param call
+     *            the call being handled.
+     * @return true if the call has been escalated.
+     */
+    private boolean converse(Call call) {
+        Random rnd = ThreadLocalRandom.current();
+        long duration = answer(call, rnd);
 
         // Emulate conversation time
-        try {
-            Thread.sleep(rnd.nextInt(MAX_CALL_DURATION));
-        } catch (InterruptedException e) {
+        long start = System.nanoTime();
+        if (duration > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(duration);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
+        return wrapUpCall(call, System.nanoTime() - start, rnd);
+    }
 
-        // Randomly escalate the call to a higher level (if it's not a director)
-        if (rank != Rank.DIRECTOR && rnd.nextBoolean())
+    /**
+     * Answer a call and draw how long the conversation lasts from the conversation
+     * model. The employee must have been claimed beforehand. Together with
+     * {@link #wrapUpCall}, this lets a {@link com.callcenter.simulation.Simulator}
+     * play the conversation on its own clock.
+     * 
+     * @param call
+     *            the call being handled
+     * @param rnd
+     *            the random generator to be used
+     * @return the duration of the conversation, in nanoseconds.
+     */
+    public long answerCall(Call call, Random rnd) {
+        if (this.state != BUSY)
+            throw new IllegalStateException("Employee must be claimed before handling a call");
+        return answer(call, rnd);
+    }
+
+    /**
+     * Answer a call, the employee being owned by the caller.
+     */
+    private long answer(Call call, Random rnd) {
+        call.setStartTime(callDispatcher.nanoTime());
+        callDispatcher.getConfig().getJournal().record(JournalEvent.STARTED, call);
+        callDispatcher.getConfig().getMessageSink().say(call, CallMessage.greeting(rank), 0);
+        return callDispatcher.getConfig().getConversationModel().handlingTime(call, rank, rnd);
+    }
+
+    /**
+     * Wrap up a call after the conversation: either escalate it (if the employee
+     * isn't a director) or end it, according to the conversation model. The
+     * employee stays claimed, and the escalated call is left to the caller to
+     * dispatch, so that it can free the employee first.
+     * 
+     * @param call
+     *            the call being handled
+     * @param handledNanos
+     *            the time spent on the call
+     * @param rnd
+     *            the random generator to be used
+     * @return true if the call has been escalated.
+     */
+    public boolean wrapUpCall(Call call, long handledNanos, Random rnd) {
+        ConversationModel model = callDispatcher.getConfig().getConversationModel();
+        callDispatcher.getMetrics().onHandled(rank, handledNanos);
+        this.busyTime += handledNanos;
+        this.handledCalls++;
+
+        // Escalate the call to a higher level (if it's not a director) according to the model
+        boolean escalates = rank != Rank.DIRECTOR && model.escalates(call, rank, rnd);
+        callDispatcher.getConfig().getCallRouter().onHandled(call, rank, handledNanos, escalates);
+        if (escalates)
             escalateCall(call);
         else
             endCall(call);
+        return escalates;
     }
 
     /**
-     * Escalates the call to a higher level employee.
+     * Escalates the call to a higher level employee, raising its priority.
      * 
      * @param call
      */
     private void escalateCall(Call call) {
-        call.say(MSG_ESCALATE);
+        callDispatcher.getConfig().getMessageSink().say(call, CallMessage.ESCALATE, 0);
+        callDispatcher.getMetrics().onEscalated(this.rank);
         call.setPriority(this.rank.getValue() + 1);
-        callDispatcher.dispatchCall(call);
-        this.isFree = true;
-        callDispatcher.getNextCall(this);
+        callDispatcher.getConfig().getJournal().record(JournalEvent.ESCALATED, call);
     }
 
     /**
@@ -94,10 +291,41 @@ public class Employee {
      * @param call
      */
     private void endCall(Call call) {
-        call.disconnect(this.rank);
-        call.say(MSG_END + "[" + call.getDuration() + "ms]");
-        this.isFree = true;
-        callDispatcher.getNextCall(this);
+        callDispatcher.getMetrics().onCompleted(this.rank);
+        // Journaled and announced before the disconnection, after which the call may be recycled
+        callDispatcher.getConfig().getJournal().record(JournalEvent.DISCONNECTED, call);
+        long now = callDispatcher.nanoTime();
+        callDispatcher.getConfig().getMessageSink().say(call, CallMessage.END,
+                TimeUnit.NANOSECONDS.toMillis(now - call.getStartTime()));
+        call.disconnect(this.rank, now);
+    }
+
+    /**
+     * Get when the employee was hired.
+     * 
+     * @return the time of the dispatcher (see {@link CallDispatcher#nanoTime()}) when
+     *         the employee was hired.
+     */
+    public long getHireTime() {
+        return this.hireTime;
+    }
+
+    /**
+     * Get the time the employee has spent on calls since hired.
+     * 
+     * @return the busy time in nanoseconds.
+     */
+    public long getBusyTime() {
+        return this.busyTime;
+    }
+
+    /**
+     * Get the number of calls the employee has handled (escalated ones included).
+     * 
+     * @return the number of calls handled.
+     */
+    public long getHandledCalls() {
+        return this.handledCalls;
     }
 
     /**
@@ -106,7 +334,7 @@ public class Employee {
      * @return boolean on whether the employee is free.
      */
     public boolean isFree() {
-        return this.isFree;
+        return this.state == FREE;
     }
 
     /**
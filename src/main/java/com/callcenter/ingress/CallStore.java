@@ -0,0 +1,174 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.ingress;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import com.callcenter.employees.Rank;
+
+/**
+ * A table of fixed-size call records in a direct buffer, outside of the heap,
+ * holding a FIFO queue of records per priority. Records are referred to by int
+ * handles and chained through their own {@code next} field, so that queuing a
+ * call allocates nothing whatever the depth of the queues. Not thread-safe.
+ * 
+ * @author pviotti
+ */
+final class CallStore {
+
+    private static final int RANKS = Rank.values().length;
+
+    /* Layout of a record. */
+    private static final int ID = 0;
+    private static final int TIMESTAMP = 8;
+    private static final int SKILLS = 16;
+    private static final int ARRIVAL = 24;
+    private static final int PRIORITY = 32;
+    private static final int CONNECTION = 36;
+    private static final int NEXT = 40;
+    static final int RECORD = 48;
+
+    private static final int NONE = -1;
+
+    private final ByteBuffer records;
+    private final int capacity;
+
+    /* Freed records, and the first record never used. */
+    private int free = NONE;
+    private int unused;
+
+    private final int[] heads = new int[RANKS];
+    private final int[] tails = new int[RANKS];
+    private int size;
+
+    /**
+     * @param _capacity
+     *            the maximum number of records (at most 2^31 / {@value #RECORD})
+     */
+    CallStore(int _capacity) {
+        if (_capacity < 1 || _capacity > Integer.MAX_VALUE / RECORD)
+            throw new IllegalArgumentException("The capacity must be between 1 and " + Integer.MAX_VALUE / RECORD);
+        this.capacity = _capacity;
+        this.records = ByteBuffer.allocateDirect(_capacity * RECORD);
+        Arrays.fill(heads, NONE);
+        Arrays.fill(tails, NONE);
+    }
+
+    /**
+     * Append a call to the queue of its priority.
+     * 
+     * @return the handle of the record, or -1 if the store is full.
+     */
+    int add(long id, long timestamp, long skills, long arrival, int priority, int connection) {
+        int handle;
+        if (free != NONE) {
+            handle = free;
+            free = records.getInt(handle * RECORD + NEXT);
+        } else if (unused < capacity) {
+            handle = unused++;
+        } else {
+            return NONE;
+        }
+
+        int offset = handle * RECORD;
+        records.putLong(offset + ID, id);
+        records.putLong(offset + TIMESTAMP, timestamp);
+        records.putLong(offset + SKILLS, skills);
+        records.putLong(offset + ARRIVAL, arrival);
+        records.putInt(offset + PRIORITY, priority);
+        records.putInt(offset + CONNECTION, connection);
+        records.putInt(offset + NEXT, NONE);
+        if (tails[priority] == NONE)
+            heads[priority] = handle;
+        else
+            records.putInt(tails[priority] * RECORD + NEXT, handle);
+        tails[priority] = handle;
+        size++;
+        return handle;
+    }
+
+    /**
+     * Get the oldest record of a priority.
+     * 
+     * @return the handle of the record, or -1 if there is none.
+     */
+    int peek(int priority) {
+        return heads[priority];
+    }
+
+    /**
+     * Remove the oldest record of a priority, whose fields can be read until it is
+     * {@link #free(int) freed}.
+     * 
+     * @return the handle of the record, or -1 if there is none.
+     */
+    int poll(int priority) {
+        int handle = heads[priority];
+        if (handle != NONE) {
+            heads[priority] = records.getInt(handle * RECORD + NEXT);
+            if (heads[priority] == NONE)
+                tails[priority] = NONE;
+            size--;
+        }
+        return handle;
+    }
+
+    /**
+     * Give back a record taken out of its queue.
+     */
+    void free(int handle) {
+        records.putInt(handle * RECORD + NEXT, free);
+        free = handle;
+    }
+
+    long getId(int handle) {
+        return records.getLong(handle * RECORD + ID);
+    }
+
+    long getTimestamp(int handle) {
+        return records.getLong(handle * RECORD + TIMESTAMP);
+    }
+
+    long getSkills(int handle) {
+        return records.getLong(handle * RECORD + SKILLS);
+    }
+
+    long getArrival(int handle) {
+        return records.getLong(handle * RECORD + ARRIVAL);
+    }
+
+    int getPriority(int handle) {
+        return records.getInt(handle * RECORD + PRIORITY);
+    }
+
+    int getConnection(int handle) {
+        return records.getInt(handle * RECORD + CONNECTION);
+    }
+
+    /**
+     * Get the number of records in the queues.
+     */
+    int size() {
+        return size;
+    }
+
+    boolean isFull() {
+        return size == capacity;
+    }
+}
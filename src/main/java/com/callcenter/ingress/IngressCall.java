@@ -0,0 +1,51 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.ingress;
+
+import com.callcenter.Call;
+
+/**
+ * A call received from a gateway, which tells the {@link IngressServer} when it
+ * ends. Recycled by the server once its end has been reported.
+ * 
+ * @author pviotti
+ */
+final class IngressCall extends Call {
+
+    private final IngressServer server;
+
+    /* The connection of the gateway, and the identifier and timestamp it gave. */
+    IngressServer.Connection connection;
+    long gatewayId;
+    long timestamp;
+
+    /* Whether the priority given by the gateway was out of range. */
+    boolean invalid;
+
+    /* Next call whose end waits to be reported on the same connection. */
+    IngressCall next;
+
+    IngressCall(IngressServer _server) {
+        this.server = _server;
+    }
+
+    @Override
+    protected void ended() {
+        server.ended(this);
+    }
+}
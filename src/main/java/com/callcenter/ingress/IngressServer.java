@@ -0,0 +1,574 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.ingress;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.callcenter.Call;
+import com.callcenter.CallDispatcher;
+import com.callcenter.CallPool;
+import com.callcenter.ExecutionMode;
+import com.callcenter.employees.Rank;
+
+/**
+ * A TCP server through which gateways feed calls to a {@link CallDispatcher}, on
+ * a single non-blocking thread. The frames have a fixed layout and are parsed
+ * straight out of direct buffers into pooled calls, which are dispatched in
+ * batches; the end of each call is then reported on its connection.
+ * 
+ * <p>
+ * A call frame ({@value #CALL_FRAME} bytes, big-endian) holds the identifier
+ * given by the gateway to the call (a long), a timestamp of the gateway (a long,
+ * sent back as is), the skills required by the call (a long bitmask) and its
+ * priority (an int). An event frame ({@value #EVENT_FRAME} bytes) holds the
+ * identifier and the timestamp of the call, how long it lasted in nanoseconds
+ * (a long), its status (a byte: {@link #COMPLETED}, {@link #REJECTED} or
+ * {@link #INVALID}) and the rank of the employee who ended it (a byte, -1 if
+ * none).
+ * 
+ * <p>
+ * At most a given number of calls are in flight. Beyond that, the calls received
+ * wait in an optional backlog of records stored outside of the heap (so that an
+ * outage piling up millions of calls doesn't weigh on the garbage collector),
+ * from which they are dispatched as calls end, the earliest deadline first (see
+ * {@link com.callcenter.DispatcherConfig#setServiceLevels}). When the backlog is
+ * full too, the server stops reading the connections.
+ * 
+ * @author pviotti
+ */
+public class IngressServer implements AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger();
+
+    public static final int CALL_FRAME = 28;
+    public static final int EVENT_FRAME = 26;
+
+    /** Status of a call disconnected by an employee. */
+    public static final byte COMPLETED = 0;
+    /** Status of a call turned down because the queues were full. */
+    public static final byte REJECTED = 1;
+    /** Status of a call with an invalid priority, which hasn't been dispatched. */
+    public static final byte INVALID = 2;
+
+    private static final int RANKS = Rank.values().length;
+
+    /* Size of the input and output buffers of each connection. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final CallDispatcher dispatcher;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /* Calls received and not reported yet (owned by the server thread). */
+    private final int maxInFlight;
+    private int inFlight;
+    private boolean stalled;
+
+    private final CallPool pool;
+
+    /* The calls waiting for room in flight (null without a backlog). */
+    private final CallStore backlog;
+    private volatile int backlogSize;
+
+    /* The open connections, by index, and the closed ones still having calls in the backlog. */
+    private final ArrayList<Connection> connections = new ArrayList<Connection>();
+
+    /* The calls which have ended, to be reported by the server thread. */
+    private final ArrayBlockingQueue<IngressCall> ended;
+    private final AtomicBoolean wakingUp = new AtomicBoolean();
+
+    /* Reused for the calls read at once, and the connections having events to write. */
+    private final ArrayList<Call> batch = new ArrayList<Call>();
+    private final ArrayList<Connection> flushes = new ArrayList<Connection>();
+
+    private final LongAdder received = new LongAdder();
+
+    /**
+     * Start receiving calls, without a backlog.
+     * 
+     * @param _dispatcher
+     *            the dispatcher, which must not handle calls on the dispatching
+     *            thread
+     * @param address
+     *            the address to listen on (port 0 for any free port)
+     * @param _maxInFlight
+     *            the maximum number of calls dispatched and not ended yet
+     * @throws IOException
+     *             if the address cannot be bound
+     * @throws IllegalArgumentException
+     *             if the dispatcher is synchronous or simulated
+     */
+    public IngressServer(CallDispatcher _dispatcher, InetSocketAddress address, int _maxInFlight)
+            throws IOException {
+        this(_dispatcher, address, _maxInFlight, 0);
+    }
+
+    /**
+     * Start receiving calls.
+     * 
+     * @param _dispatcher
+     *            the dispatcher, which must not handle calls on the dispatching
+     *            thread
+     * @param address
+     *            the address to listen on (port 0 for any free port)
+     * @param _maxInFlight
+     *            the maximum number of calls dispatched and not ended yet
+     * @param backlogCapacity
+     *            the maximum number of calls waiting off-heap for room in flight
+     *            (0 for none, each takes {@value CallStore#RECORD} bytes)
+     * @throws IOException
+     *             if the address cannot be bound
+     * @throws IllegalArgumentException
+     *             if the dispatcher is synchronous or simulated
+     */
+    public IngressServer(CallDispatcher _dispatcher, InetSocketAddress address, int _maxInFlight,
+            int backlogCapacity) throws IOException {
+        ExecutionMode mode = _dispatcher.getConfig().getMode();
+        if (mode == ExecutionMode.SYNCHRONOUS || mode == ExecutionMode.SIMULATED)
+            throw new IllegalArgumentException("The ingress needs an asynchronous dispatcher");
+        if (_maxInFlight < 1)
+            throw new IllegalArgumentException("The maximum number of calls in flight must be positive");
+        this.dispatcher = _dispatcher;
+        this.maxInFlight = _maxInFlight;
+        this.pool = new CallPool(_maxInFlight, () -> new IngressCall(this));
+        this.ended = new ArrayBlockingQueue<IngressCall>(_maxInFlight);
+        this.backlog = backlogCapacity > 0 ? new CallStore(backlogCapacity) : null;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = new Thread(this::run, "ingress");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the address the server listens on.
+     * 
+     * @return the address.
+     * @throws IOException
+     *             if the server is closed
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    /**
+     * Get the number of valid calls received so far.
+     * 
+     * @return the number of calls dispatched.
+     */
+    public long getReceived() {
+        return received.sum();
+    }
+
+    /**
+     * Get the number of calls waiting in the backlog.
+     * 
+     * @return the number of calls not dispatched yet.
+     */
+    public int getBacklog() {
+        return backlogSize;
+    }
+
+    /**
+     * Get the number of calls waiting in the pool to be reused.
+     * 
+     * @return the number of idle calls.
+     */
+    int getIdleCalls() {
+        return pool.size();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                // Calls may have ended since the connections were last read
+                if (inFlight < maxInFlight && (stalled || backlog != null && backlog.size() > 0))
+                    selector.selectNow();
+                else
+                    selector.select();
+                wakingUp.set(false);
+                reportEnded();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid())
+                        continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Connection connection = (Connection) key.attachment();
+                    try {
+                        if (key.isReadable())
+                            read(connection);
+                        if (!connection.closed && key.isWritable())
+                            schedule(connection);
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Closing ingress connection: " + e);
+                        close(connection);
+                    }
+                }
+
+                if (stalled && (inFlight < maxInFlight || backlog != null && !backlog.isFull()))
+                    resume();
+                if (backlog != null)
+                    dispatchBacklog();
+                flush();
+            } catch (IOException e) {
+                log.error("Ingress failure", e);
+                return;
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Connection connection = new Connection(channel);
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+        connection.index = connections.indexOf(null);
+        if (connection.index < 0) {
+            connection.index = connections.size();
+            connections.add(connection);
+        } else {
+            connections.set(connection.index, connection);
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        if (connection.channel.read(connection.in) < 0) {
+            close(connection);
+            return;
+        }
+        dispatchFrames(connection);
+    }
+
+    /**
+     * Dispatch the calls of the complete frames read on a connection, as long as
+     * not too many calls are in flight, and put the next ones in the backlog.
+     */
+    private void dispatchFrames(Connection connection) {
+        ByteBuffer in = connection.in;
+        in.flip();
+        long now = dispatcher.nanoTime();
+        while (in.remaining() >= CALL_FRAME) {
+            int priority = in.getInt(in.position() + 24);
+            boolean valid = priority >= 0 && priority < RANKS;
+            if (inFlight < maxInFlight && (!valid || backlog == null || backlog.size() == 0)) {
+                IngressCall call = newCall(connection, in.getLong(), in.getLong(), priority);
+                long skills = in.getLong();
+                in.getInt();
+                if (valid) {
+                    call.setRequiredSkills(skills);
+                    batch.add(call);
+                } else {
+                    // Ended right away, without being dispatched, to be reported and recycled like the others
+                    call.invalid = true;
+                    call.disconnect(null, now);
+                }
+            } else if (valid && backlog != null && !backlog.isFull()) {
+                // The calls received earlier go first
+                backlog.add(in.getLong(), in.getLong(), in.getLong(), now, in.getInt(), connection.index);
+                connection.parked++;
+            } else {
+                break;
+            }
+        }
+        if (backlog != null)
+            backlogSize = backlog.size();
+        connection.stalled = in.remaining() >= CALL_FRAME;
+        in.compact();
+        stalled |= connection.stalled;
+        updateInterest(connection);
+
+        if (!batch.isEmpty()) {
+            received.add(batch.size());
+            dispatcher.dispatchCalls(batch);
+            batch.clear();
+        }
+    }
+
+    private IngressCall newCall(Connection connection, long id, long timestamp, int priority) {
+        IngressCall call = (IngressCall) pool.acquire(priority);
+        call.connection = connection;
+        call.gatewayId = id;
+        call.timestamp = timestamp;
+        call.invalid = false;
+        inFlight++;
+        return call;
+    }
+
+    /**
+     * Dispatch the calls of the backlog while there is room in flight, the one
+     * with the earliest deadline first.
+     */
+    private void dispatchBacklog() {
+        while (inFlight < maxInFlight && backlog.size() > 0) {
+            int priority = -1;
+            long deadline = Long.MAX_VALUE;
+            for (int p = 0; p < RANKS; p++) {
+                int handle = backlog.peek(p);
+                if (handle >= 0) {
+                    long d = backlog.getArrival(handle) + dispatcher.getConfig().getServiceLevel(p);
+                    if (priority < 0 || d - deadline < 0) {
+                        priority = p;
+                        deadline = d;
+                    }
+                }
+            }
+
+            int handle = backlog.poll(priority);
+            Connection connection = connections.get(backlog.getConnection(handle));
+            connection.parked--;
+            if (connection.closed) {
+                if (connection.parked == 0)
+                    connections.set(connection.index, null);
+            } else {
+                IngressCall call = newCall(connection, backlog.getId(handle), backlog.getTimestamp(handle), priority);
+                call.setRequiredSkills(backlog.getSkills(handle));
+                batch.add(call);
+            }
+            backlog.free(handle);
+        }
+        backlogSize = backlog.size();
+
+        if (!batch.isEmpty()) {
+            received.add(batch.size());
+            dispatcher.dispatchCalls(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Dispatch the calls left in the buffers of the stalled connections, now that
+     * some calls have ended.
+     */
+    private void resume() {
+        stalled = false;
+        for (SelectionKey key : selector.keys()) {
+            Connection connection = (Connection) key.attachment();
+            if (connection != null && connection.stalled && !connection.closed)
+                dispatchFrames(connection);
+        }
+    }
+
+    /**
+     * Take note that a call has ended, on the thread ending it.
+     * 
+     * @param call
+     *            the call
+     */
+    void ended(IngressCall call) {
+        // Never full: there is room for all the calls in flight
+        ended.offer(call);
+        if (!wakingUp.get() && wakingUp.compareAndSet(false, true))
+            selector.wakeup();
+    }
+
+    /**
+     * Queue the events of the ended calls on their connections.
+     */
+    private void reportEnded() {
+        IngressCall call;
+        while ((call = ended.poll()) != null) {
+            Connection connection = call.connection;
+            if (connection.closed) {
+                recycle(call);
+            } else {
+                connection.append(call);
+                schedule(connection);
+            }
+        }
+    }
+
+    private void schedule(Connection connection) {
+        if (!connection.flushing) {
+            connection.flushing = true;
+            flushes.add(connection);
+        }
+    }
+
+    /**
+     * Write the pending events of the scheduled connections, as far as their
+     * sockets accept them.
+     */
+    private void flush() {
+        for (int i = 0; i < flushes.size(); i++) {
+            Connection connection = flushes.get(i);
+            connection.flushing = false;
+            if (connection.closed)
+                continue;
+            try {
+                write(connection);
+            } catch (IOException e) {
+                log.warn("Closing ingress connection: " + e);
+                close(connection);
+            }
+        }
+        flushes.clear();
+    }
+
+    private void write(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        while (true) {
+            IngressCall call;
+            while (out.remaining() >= EVENT_FRAME && (call = connection.poll()) != null) {
+                Rank rank = call.getHandlerRank();
+                out.putLong(call.gatewayId).putLong(call.timestamp).putLong(call.getDurationNanos())
+                        .put(call.isRejected() ? REJECTED : call.invalid ? INVALID : COMPLETED)
+                        .put((byte) (rank == null ? -1 : rank.getValue()));
+                recycle(call);
+            }
+            out.flip();
+            connection.channel.write(out);
+            out.compact();
+            if (out.position() > 0 || connection.head == null)
+                break;
+        }
+        updateInterest(connection);
+    }
+
+    private void updateInterest(Connection connection) {
+        if (!connection.key.isValid())
+            return;
+        int ops = connection.stalled ? 0 : SelectionKey.OP_READ;
+        if (connection.out.position() > 0 || connection.head != null)
+            ops |= SelectionKey.OP_WRITE;
+        connection.key.interestOps(ops);
+    }
+
+    /**
+     * Give back a call to the pool once it has ended and been reported (or its
+     * connection closed).
+     */
+    private void recycle(IngressCall call) {
+        call.connection = null;
+        call.next = null;
+        inFlight--;
+        pool.release(call);
+    }
+
+    private void close(Connection connection) {
+        connection.closed = true;
+        // The calls in the backlog are dropped when their turn comes
+        if (connection.parked == 0)
+            connections.set(connection.index, null);
+        connection.key.cancel();
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            log.warn("Cannot close ingress connection: " + e);
+        }
+        // The calls still in flight are recycled when they end
+        IngressCall call;
+        while ((call = connection.poll()) != null)
+            recycle(call);
+    }
+
+    /**
+     * Stop the server and close its connections (the calls in flight go on, but
+     * their end isn't reported). Waits for the thread of the server even if
+     * interrupted, in which case the interrupt status is restored.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        for (SelectionKey key : selector.keys())
+            key.channel().close();
+        selector.close();
+    }
+
+    /**
+     * A connection from a gateway, with its buffers and the calls whose end is
+     * waiting for room in its output buffer.
+     */
+    static final class Connection {
+        final SocketChannel channel;
+        SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        final ByteBuffer out = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        /* Intrusive list of the calls to be reported. */
+        IngressCall head, tail;
+
+        /* Position in the connections of the server, and number of calls in the backlog. */
+        int index;
+        int parked;
+
+        boolean stalled, flushing, closed;
+
+        Connection(SocketChannel _channel) {
+            this.channel = _channel;
+        }
+
+        void append(IngressCall call) {
+            call.next = null;
+            if (tail == null)
+                head = call;
+            else
+                tail.next = call;
+            tail = call;
+        }
+
+        IngressCall poll() {
+            IngressCall call = head;
+            if (call != null) {
+                head = call.next;
+                if (head == null)
+                    tail = null;
+                call.next = null;
+            }
+            return call;
+        }
+    }
+}
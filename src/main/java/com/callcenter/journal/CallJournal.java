@@ -0,0 +1,60 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.journal;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.callcenter.Call;
+
+/**
+ * Records the lifecycle events of the calls, so that the calls which were not
+ * over can be recovered when the call center is restarted. Implementations must
+ * be thread-safe and should be cheap, as events are recorded several times per
+ * call.
+ * 
+ * @author pviotti
+ */
+@FunctionalInterface
+public interface CallJournal {
+
+    /** A journal recording nothing. */
+    CallJournal NONE = (event, call) -> {
+    };
+
+    /**
+     * Record an event of a call.
+     * 
+     * @param event
+     *            the event
+     * @param call
+     *            the call
+     */
+    void record(JournalEvent event, Call call);
+
+    /**
+     * Get the calls which were not over when the call center stopped, as new
+     * calls having the same ids, priorities and required skills.
+     * 
+     * @return the calls to be dispatched again, in the order they first appeared
+     *         in the journal.
+     */
+    default List<Call> recover() {
+        return Collections.emptyList();
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.journal;
+
+/**
+ * The lifecycle events of a call recorded in a {@link CallJournal}.
+ * 
+ * @author pviotti
+ */
+public enum JournalEvent {
+    /** The call has been dispatched (or dispatched again after an escalation). */
+    DISPATCHED,
+    /** The call has been put in a queue. */
+    QUEUED,
+    /** An employee has started talking with the customer. */
+    STARTED,
+    /** An employee has escalated the call. */
+    ESCALATED,
+    /** The call has been solved and disconnected. */
+    DISCONNECTED,
+    /** The call has been turned down because the queues were full. */
+    REJECTED;
+
+    /**
+     * Returns whether the call is over after this event.
+     * 
+     * @return true for the events ending the call.
+     */
+    public boolean isFinal() {
+        return this == DISCONNECTED || this == REJECTED;
+    }
+}
@@ -0,0 +1,388 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.callcenter.Call;
+
+/**
+ * Append-only journal written to memory-mapped segment files. Recording an event
+ * reserves a fixed-size record with an atomic increment and writes it to the
+ * mapping (it survives a crash of the JVM as soon as it is written); a
+ * background thread flushes the new records to the disk every commit interval
+ * (group commit), so that they also survive a crash of the machine.
+ * <p>
+ * When opened, the journal replays the existing segments: the calls which were
+ * not over are written as queued to a new segment (so that queueing them again
+ * isn't recorded twice), and the old segments are deleted. If the records cannot
+ * be flushed, the next ones are refused.
+ * 
+ * @author pviotti
+ */
+public class MappedCallJournal implements CallJournal, AutoCloseable {
+
+    /* Record layout: type word, priority, call id, required skills, wall-clock
+     * time (ms). The type word (0 for a free record) holds the event ordinal + 1 in
+     * its low byte and a checksum of the rest of the record in its upper 24 bits:
+     * the stores to the mapping may reach the disk in any order, so a record torn
+     * by a crash is told by its checksum rather than by the type word written last. */
+    static final int RECORD_SIZE = 32;
+    private static final JournalEvent[] EVENTS = JournalEvent.values();
+
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long commitIntervalNanos;
+
+    private volatile Segment current;
+    private int nextSegment; // guarded by this
+    private final ConcurrentLinkedQueue<Segment> retired = new ConcurrentLinkedQueue<Segment>();
+
+    private final AtomicLong lastId = new AtomicLong();
+    private final List<Call> recovered;
+
+    /* The recovered calls which haven't been recorded since they were carried over. */
+    private final Set<Long> carried = ConcurrentHashMap.newKeySet();
+
+    private final Thread committer;
+    private volatile boolean running = true;
+
+    /* Why the records cannot be flushed anymore, if so. */
+    private volatile IOException failure;
+
+    /**
+     * A segment file and its mapping.
+     */
+    private static final class Segment {
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final AtomicInteger position = new AtomicInteger(); // reserved bytes
+        final AtomicInteger written = new AtomicInteger(); // bytes of the records completely written
+        int committed; // only accessed by the committing thread
+
+        Segment(Path path, int size) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+
+        /**
+         * Flush the records written since the last commit (those still being written
+         * are flushed by the next one).
+         * 
+         * @throws IOException
+         *             if the mapping cannot be flushed
+         */
+        void commit() throws IOException {
+            int end = written.get();
+            if (end > committed) {
+                try {
+                    buffer.force();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                committed = end;
+            }
+        }
+    }
+
+    /**
+     * Opens a journal with segments of 64 MiB and a commit interval of 1 ms.
+     * 
+     * @param _directory
+     *            the directory of the segment files
+     * @throws IOException
+     *             if the journal cannot be read or written
+     */
+    public MappedCallJournal(Path _directory) throws IOException {
+        this(_directory, 64 << 20, 1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param _directory
+     *            the directory of the segment files
+     * @param _segmentSize
+     *            the size of a segment file in bytes (rounded down to a multiple of
+     *            the record size)
+     * @param commitInterval
+     *            the interval between two flushes to the disk
+     * @param unit
+     *            the time unit of the interval
+     * @throws IOException
+     *             if the journal cannot be read or written
+     */
+    public MappedCallJournal(Path _directory, int _segmentSize, long commitInterval, TimeUnit unit)
+            throws IOException {
+        if (_segmentSize < RECORD_SIZE)
+            throw new IllegalArgumentException("A segment must hold at least one record");
+        this.directory = _directory;
+        this.segmentSize = _segmentSize - _segmentSize % RECORD_SIZE;
+        this.commitIntervalNanos = unit.toNanos(commitInterval);
+        Files.createDirectories(directory);
+
+        List<Path> old = segments();
+        if (!old.isEmpty()) {
+            String last = old.get(old.size() - 1).getFileName().toString();
+            nextSegment = Integer.parseInt(last.substring(PREFIX.length(), last.length() - SUFFIX.length())) + 1;
+        }
+        this.recovered = Collections.unmodifiableList(replay(old));
+        this.current = new Segment(segmentPath(nextSegment++), segmentSize);
+
+        // Carry the pending calls over to the new segment before forgetting the old ones
+        for (Call call : recovered) {
+            record(JournalEvent.QUEUED, call);
+            carried.add(call.getId());
+        }
+        commit();
+        for (Path path : old)
+            Files.delete(path);
+
+        this.committer = new Thread(this::commitLoop, "journal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     * 
+     * @throws UncheckedIOException
+     *             if the journal cannot be written, or the previous records could
+     *             not be flushed
+     */
+    @Override
+    public void record(JournalEvent event, Call call) {
+        if (failure != null)
+            throw new UncheckedIOException("The journal cannot be flushed", failure);
+        long id = call.getId();
+        if (id == 0) {
+            id = lastId.incrementAndGet();
+            call.setId(id);
+        } else if (!carried.isEmpty() && carried.remove(id) && event == JournalEvent.QUEUED) {
+            return; // already recorded as queued when carried over
+        }
+        while (true) {
+            Segment segment = current;
+            int position = segment.position.getAndAdd(RECORD_SIZE);
+            if (position <= segmentSize - RECORD_SIZE) {
+                MappedByteBuffer buffer = segment.buffer;
+                int priority = call.getPriority();
+                long skills = call.getRequiredSkills(), time = System.currentTimeMillis();
+                buffer.putInt(position + 4, priority);
+                buffer.putLong(position + 8, id);
+                buffer.putLong(position + 16, skills);
+                buffer.putLong(position + 24, time);
+                buffer.putInt(position, typeWord(event.ordinal() + 1, priority, id, skills, time));
+                segment.written.addAndGet(RECORD_SIZE);
+                return;
+            }
+            roll(segment);
+        }
+    }
+
+    @Override
+    public List<Call> recover() {
+        return recovered;
+    }
+
+    /**
+     * Flush the pending records to the disk and stop the background thread (if
+     * interrupted meanwhile, the interrupt status is set again once done).
+     * 
+     * @throws IOException
+     *             if the records could not be flushed, or the segment files cannot
+     *             be closed
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        boolean interrupted = false;
+        while (committer.isAlive()) {
+            try {
+                committer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        Segment segment;
+        while ((segment = retired.poll()) != null)
+            segment.channel.close();
+        current.channel.close();
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Replace a full segment with a new one.
+     * 
+     * @param full
+     *            the segment found full
+     */
+    private synchronized void roll(Segment full) {
+        if (current != full)
+            return; // somebody else rolled it
+        try {
+            current = new Segment(segmentPath(nextSegment++), segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        retired.add(full);
+    }
+
+    /**
+     * Body of the background thread: group commit, until the journal is closed
+     * and the full segments are done with (or a commit fails, which makes the next
+     * records fail too).
+     */
+    private void commitLoop() {
+        while (true) {
+            boolean wasRunning = running;
+            try {
+                commit();
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+            if (!wasRunning && retired.isEmpty())
+                return;
+            LockSupport.parkNanos(commitIntervalNanos);
+        }
+    }
+
+    /**
+     * Flush the records written since the last commit to the disk, closing the
+     * full segments whose records have all been written (the writers which
+     * reserved the last records of a segment may still be writing them after it
+     * was rolled).
+     * 
+     * @throws IOException
+     *             if the records cannot be flushed or a full segment cannot be
+     *             closed
+     */
+    private void commit() throws IOException {
+        for (Iterator<Segment> it = retired.iterator(); it.hasNext();) {
+            Segment segment = it.next();
+            if (segment.written.get() < segmentSize)
+                continue;
+            segment.commit();
+            segment.channel.close();
+            it.remove();
+        }
+        current.commit();
+    }
+
+    /**
+     * Read the segments, in order, and compute the calls which were not over.
+     * 
+     * @param segments
+     *            the segment files
+     * @return the pending calls.
+     * @throws IOException
+     *             if a segment cannot be read
+     */
+    private List<Call> replay(List<Path> segments) throws IOException {
+        Map<Long, Call> pending = new LinkedHashMap<Long, Call>();
+        for (Path path : segments) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                for (int position = 0; position <= buffer.capacity() - RECORD_SIZE; position += RECORD_SIZE) {
+                    int word = buffer.getInt(position), type = word & 0xFF;
+                    int priority = buffer.getInt(position + 4);
+                    long id = buffer.getLong(position + 8);
+                    long skills = buffer.getLong(position + 16);
+                    if (type == 0 || type > EVENTS.length
+                            || word != typeWord(type, priority, id, skills, buffer.getLong(position + 24)))
+                        continue; // free or torn record
+                    if (id > lastId.get())
+                        lastId.set(id);
+                    if (EVENTS[type - 1].isFinal()) {
+                        pending.remove(id);
+                        continue;
+                    }
+                    Call call = pending.get(id);
+                    if (call == null) {
+                        call = new Call();
+                        call.setId(id);
+                        pending.put(id, call);
+                    }
+                    call.setPriority(priority);
+                    call.setRequiredSkills(skills);
+                }
+            }
+        }
+        return new ArrayList<Call>(pending.values());
+    }
+
+    /**
+     * Compute the type word of a record: the type and a 24-bit checksum of the
+     * other fields.
+     */
+    static int typeWord(int type, int priority, long id, long skills, long time) {
+        long h = priority * 0x9E3779B97F4A7C15L ^ id;
+        h = (h ^ h >>> 33) * 0xFF51AFD7ED558CCDL ^ skills;
+        h = (h ^ h >>> 33) * 0xC4CEB9FE1A85EC53L ^ time;
+        h = (h ^ h >>> 33) * 0xFF51AFD7ED558CCDL;
+        return (int) (h >>> 40) << 8 | type;
+    }
+
+    /**
+     * List the segment files of the journal, in order.
+     * 
+     * @return the paths of the segment files.
+     * @throws IOException
+     *             if the directory cannot be read
+     */
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<Path>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream)
+                segments.add(path);
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private Path segmentPath(int index) {
+        return directory.resolve(String.format("%s%09d%s", PREFIX, index, SUFFIX));
+    }
+}
@@ -0,0 +1,144 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.load;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.employees.Rank;
+
+/**
+ * A trace of calls, read one record at a time so that traces of any size can be
+ * replayed.
+ * 
+ * <p>
+ * A trace file has one line per call, in the order of arrival, in the format
+ * {@code arrivalMicros,priority,handlingTimeMicros[,handlingTimeMicros...]}
+ * (e.g. {@code 1500,MANAGER,183000}), where the arrival time is relative to any
+ * origin. A call escalated in the trace has the handling time of each employee
+ * who handled it, in order (e.g. {@code 1500,RESPONDENT,60000,183000}). Blank
+ * lines and lines starting with {@code #} are ignored.
+ * 
+ * @author pviotti
+ */
+public class CallTrace implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final BufferedReader reader;
+    private int lineNumber;
+    private boolean started;
+
+    /* The current record. */
+    private long arrivalTime;
+    private int priority;
+    private long[] handlingTimes;
+
+    /**
+     * @param trace
+     *            the path of the trace
+     * @throws IOException
+     *             if the trace cannot be opened
+     */
+    public CallTrace(Path trace) throws IOException {
+        this.reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(trace), StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * Read the next record of the trace.
+     * 
+     * @return false if the end of the trace has been reached
+     * @throws IOException
+     *             if the trace cannot be read
+     * @throws IllegalArgumentException
+     *             if the record is malformed, or not in the order of arrival
+     */
+    public boolean next() throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            String[] fields = line.split(",");
+            if (fields.length < 3)
+                throw new IllegalArgumentException("Malformed trace line " + lineNumber + ": " + line);
+            long arrival;
+            try {
+                arrival = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(fields[0].trim()));
+                priority = Rank.valueOf(fields[1].trim()).getValue();
+                handlingTimes = new long[fields.length - 2];
+                for (int i = 0; i < handlingTimes.length; i++)
+                    handlingTimes[i] = TimeUnit.MICROSECONDS.toNanos(Long.parseLong(fields[2 + i].trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Malformed trace line " + lineNumber + ": " + line, e);
+            }
+            if (started && arrival < arrivalTime)
+                throw new IllegalArgumentException("Trace line " + lineNumber + " is out of order: " + line);
+            arrivalTime = arrival;
+            started = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the arrival time of the current call, in nanoseconds.
+     */
+    public long getArrivalTime() {
+        return arrivalTime;
+    }
+
+    /**
+     * @return the priority of the current call.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return the recorded handling time of the current call (by all the employees
+     *         who handled it), in nanoseconds.
+     */
+    public long getHandlingTime() {
+        long total = 0;
+        for (long handlingTime : handlingTimes)
+            total += handlingTime;
+        return total;
+    }
+
+    /**
+     * @return the recorded handling times of the current call by each employee who
+     *         handled it, in order, in nanoseconds (a new array for each record).
+     */
+    public long[] getHandlingTimes() {
+        return handlingTimes;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.load;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.callcenter.CallDispatcher;
+import com.callcenter.DispatchOutcome;
+import com.callcenter.DispatcherConfig;
+import com.callcenter.ExecutionMode;
+import com.callcenter.conversation.UniformConversationModel;
+import com.callcenter.employees.Rank;
+import com.callcenter.messaging.MessageSink;
+import com.callcenter.metrics.LatencyRecorder;
+import com.callcenter.metrics.LatencySnapshot;
+import com.callcenter.metrics.MetricsSnapshot;
+
+/**
+ * Open-loop load generator: replays a {@link CallTrace} against a call center,
+ * dispatching each call when it is due (at the recorded pace, or a multiple of
+ * it) whatever the state of the previous calls. The conversations last the
+ * recorded handling times, hop by hop when the calls were escalated.
+ * 
+ * <p>
+ * Response times are measured from the time each call was due, so that they
+ * include the time the calls would have waited for an overloaded dispatcher to
+ * get to them (rather than omitting it, as a closed-loop load generator waiting
+ * for the dispatcher would do).
+ * 
+ * @author pviotti
+ */
+public class LoadGenerator {
+
+    private static final int RANKS = Rank.values().length;
+
+    private final int[] staffing;
+    private final DispatcherConfig config;
+
+    /* Multiple of the recorded pace of the arrivals. */
+    private double speed = 1;
+
+    /* Maximum time to wait for the calls to be over once the trace is replayed. */
+    private long drainTimeout = TimeUnit.MINUTES.toNanos(1);
+
+    /**
+     * Creates a load generator for a call center with the given numbers of
+     * respondents, managers and directors, and the given configuration. The
+     * conversation model of the configuration only decides the escalations.
+     * 
+     * @param _numRespondents
+     *            number of respondents
+     * @param _numManagers
+     *            number of managers
+     * @param _numDirectors
+     *            number of directors
+     * @param _config
+     *            the configuration of the dispatcher, in an asynchronous mode
+     * @throws IllegalArgumentException
+     *             if the execution mode would handle the calls on the generator's
+     *             thread
+     */
+    public LoadGenerator(int _numRespondents, int _numManagers, int _numDirectors, DispatcherConfig _config) {
+        if (_config.getMode() == ExecutionMode.SYNCHRONOUS || _config.getMode() == ExecutionMode.SIMULATED)
+            throw new IllegalArgumentException("The load generator needs an asynchronous execution mode");
+        this.staffing = new int[] { _numRespondents, _numManagers, _numDirectors };
+        this.config = new DispatcherConfig(_config)
+                .setConversationModel(new ReplayConversationModel(_config.getConversationModel()));
+    }
+
+    /**
+     * Set the pace of the arrivals.
+     * 
+     * @param _speed
+     *            the multiple of the recorded pace (e.g. 2 to replay the calls
+     *            twice as fast)
+     * @return this load generator
+     */
+    public LoadGenerator setSpeed(double _speed) {
+        if (!(_speed > 0))
+            throw new IllegalArgumentException("The speed must be positive");
+        this.speed = _speed;
+        return this;
+    }
+
+    /**
+     * Set how long to wait for the calls to be over once the whole trace has been
+     * dispatched.
+     * 
+     * @param timeout
+     *            the maximum waiting time
+     * @param unit
+     *            the time unit of the timeout
+     * @return this load generator
+     */
+    public LoadGenerator setDrainTimeout(long timeout, TimeUnit unit) {
+        this.drainTimeout = unit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Replay a trace against a new call center.
+     * 
+     * @param trace
+     *            the path of the trace
+     * @return the report of the replay
+     * @throws IOException
+     *             if the trace cannot be read
+     * @throws IllegalArgumentException
+     *             if the trace is malformed
+     */
+    public LoadReport replay(Path trace) throws IOException {
+        CallDispatcher dispatcher = new CallDispatcher(staffing[0], staffing[1], staffing[2], config);
+        LatencyRecorder responseTimes = new LatencyRecorder();
+        LatencyRecorder[] responseTimesByPriority = new LatencyRecorder[RANKS];
+        for (int i = 0; i < RANKS; i++)
+            responseTimesByPriority[i] = new LatencyRecorder();
+        LatencyRecorder dispatchDelays = new LatencyRecorder();
+        LongAdder rejected = new LongAdder();
+        AtomicLong pending = new AtomicLong();
+
+        long offered = 0;
+        long start = System.nanoTime(), origin = 0;
+        try (CallTrace calls = new CallTrace(trace)) {
+            while (calls.next()) {
+                if (offered++ == 0)
+                    origin = calls.getArrivalTime();
+                long intended = start + (long) ((calls.getArrivalTime() - origin) / speed);
+
+                // Wait for the call to be due (never for the previous calls)
+                long delay;
+                while ((delay = intended - System.nanoTime()) > 0)
+                    LockSupport.parkNanos(delay);
+
+                final int priority = calls.getPriority();
+                ReplayedCall call = new ReplayedCall(priority, calls.getHandlingTimes());
+                pending.incrementAndGet();
+                call.getCompletion().whenComplete((c, failure) -> {
+                    if (failure == null) {
+                        long responseTime = System.nanoTime() - intended;
+                        responseTimes.record(responseTime);
+                        responseTimesByPriority[priority].record(responseTime);
+                    }
+                    pending.decrementAndGet();
+                });
+                dispatchDelays.record(System.nanoTime() - intended);
+                if (dispatcher.dispatchCall(call) == DispatchOutcome.REJECTED)
+                    rejected.increment();
+            }
+        }
+
+        // Wait for the calls in progress
+        long deadline = System.nanoTime() + drainTimeout;
+        while (pending.get() > 0 && deadline - System.nanoTime() > 0)
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        long elapsed = System.nanoTime() - start;
+        dispatcher.shutdown();
+
+        MetricsSnapshot metrics = dispatcher.getMetrics().snapshot();
+        long dropped = 0;
+        for (Rank rank : Rank.values())
+            dropped += metrics.getDropped(rank);
+
+        LatencySnapshot[] byPriority = new LatencySnapshot[RANKS];
+        for (int i = 0; i < RANKS; i++)
+            byPriority[i] = responseTimesByPriority[i].snapshot();
+        return new LoadReport(offered, rejected.sum(), dropped, pending.get(), elapsed, responseTimes.snapshot(), byPriority,
+                dispatchDelays.snapshot());
+    }
+
+    /**
+     * Replay a trace and print the report.
+     * 
+     * @param args
+     *            <code>trace.csv [speed [respondents managers directors]]</code>:
+     *            the path of the trace, optionally followed by the multiple of the
+     *            recorded pace (1 by default), itself optionally followed by the
+     *            numbers of respondents, managers and directors (10, 5 and 2 by
+     *            default)
+     * @throws IOException
+     *             if the trace cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1 && args.length != 2 && args.length != 5) {
+            System.err.println("Usage: LoadGenerator trace.csv [speed [respondents managers directors]]");
+            System.exit(1);
+        }
+        double speed = args.length > 1 ? Double.parseDouble(args[1]) : 1;
+        int[] employees = { 10, 5, 2 };
+        if (args.length == 5)
+            for (int i = 0; i < RANKS; i++)
+                employees[i] = Integer.parseInt(args[2 + i]);
+
+        DispatcherConfig config = new DispatcherConfig().setMode(ExecutionMode.ASYNCHRONOUS)
+                .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0))
+                .setMessageSink(MessageSink.SILENT);
+        LoadReport report = new LoadGenerator(employees[0], employees[1], employees[2], config).setSpeed(speed)
+                .replay(Paths.get(args[0]));
+        System.out.print(report);
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.load;
+
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.employees.Rank;
+import com.callcenter.metrics.LatencySnapshot;
+
+/**
+ * Outcome of the replay of a trace: the response times of the calls, measured
+ * from the time each call was due to arrive (not from the time it was actually
+ * dispatched, so that the delays of an overloaded dispatcher are accounted for),
+ * and how late the calls were dispatched.
+ * 
+ * @author pviotti
+ */
+public class LoadReport {
+
+    private final long offered;
+    private final long rejected;
+    private final long dropped;
+    private final long unfinished;
+    private final long elapsedNanos;
+    private final LatencySnapshot responseTimes;
+    private final LatencySnapshot[] responseTimesByPriority;
+    private final LatencySnapshot dispatchDelays;
+
+    LoadReport(long _offered, long _rejected, long _dropped, long _unfinished, long _elapsedNanos,
+            LatencySnapshot _responseTimes, LatencySnapshot[] _responseTimesByPriority,
+            LatencySnapshot _dispatchDelays) {
+        this.offered = _offered;
+        this.rejected = _rejected;
+        this.dropped = _dropped;
+        this.unfinished = _unfinished;
+        this.elapsedNanos = _elapsedNanos;
+        this.responseTimes = _responseTimes;
+        this.responseTimesByPriority = _responseTimesByPriority;
+        this.dispatchDelays = _dispatchDelays;
+    }
+
+    /**
+     * @return the number of calls of the trace.
+     */
+    public long getOffered() {
+        return offered;
+    }
+
+    /**
+     * @return the number of calls which were solved.
+     */
+    public long getCompleted() {
+        return responseTimes.getCount();
+    }
+
+    /**
+     * @return the number of calls rejected because the queues were full.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return the number of queued calls evicted to make room for newer ones.
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the number of calls still going on when the replay gave up waiting.
+     */
+    public long getUnfinished() {
+        return unfinished;
+    }
+
+    /**
+     * Get the time taken by the replay, until the last call was over.
+     * 
+     * @param unit
+     *            the time unit
+     * @return the elapsed time.
+     */
+    public long getElapsedTime(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the times from the intended arrival to the end of the solved calls.
+     */
+    public LatencySnapshot getResponseTimes() {
+        return responseTimes;
+    }
+
+    /**
+     * @param rank
+     *            the priority of the calls when they arrived
+     * @return the response times of the solved calls of this priority.
+     */
+    public LatencySnapshot getResponseTimes(Rank rank) {
+        return responseTimesByPriority[rank.getValue()];
+    }
+
+    /**
+     * @return the delays between the intended arrival and the dispatch of the
+     *         calls.
+     */
+    public LatencySnapshot getDispatchDelays() {
+        return dispatchDelays;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("offered=").append(offered).append(" completed=").append(getCompleted()).append(" rejected=")
+                .append(rejected).append(" dropped=").append(dropped).append(" unfinished=").append(unfinished).append(" elapsed=")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms\n");
+        sb.append("response: ").append(responseTimes).append("\n");
+        for (Rank rank : Rank.values())
+            sb.append("  ").append(rank).append(": ").append(responseTimesByPriority[rank.getValue()]).append("\n");
+        return sb.append("dispatch delay: ").append(dispatchDelays).append("\n").toString();
+    }
+}
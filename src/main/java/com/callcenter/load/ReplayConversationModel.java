@@ -0,0 +1,62 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.load;
+
+import java.util.Random;
+
+import com.callcenter.Call;
+import com.callcenter.conversation.ConversationModel;
+import com.callcenter.employees.Rank;
+
+/**
+ * Conversations lasting the handling time recorded for each hop of the replayed
+ * calls, which are escalated as recorded. The escalations of the calls recorded
+ * with a single hop (and the hops beyond the trace, and the calls not coming
+ * from a trace) are left to another model.
+ * 
+ * @author pviotti
+ */
+final class ReplayConversationModel implements ConversationModel {
+
+    private final ConversationModel model;
+
+    /**
+     * @param _model
+     *            the model deciding the escalations
+     */
+    ReplayConversationModel(ConversationModel _model) {
+        this.model = _model;
+    }
+
+    @Override
+    public long handlingTime(Call call, Rank rank, Random rnd) {
+        if (call instanceof ReplayedCall) {
+            long handlingTime = ((ReplayedCall) call).nextHandlingTime();
+            if (handlingTime >= 0)
+                return handlingTime;
+        }
+        return model.handlingTime(call, rank, rnd);
+    }
+
+    @Override
+    public boolean escalates(Call call, Rank rank, Random rnd) {
+        if (call instanceof ReplayedCall && ((ReplayedCall) call).hasRecordedEscalations())
+            return ((ReplayedCall) call).hasNextHop();
+        return model.escalates(call, rank, rnd);
+    }
+}
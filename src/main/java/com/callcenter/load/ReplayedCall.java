@@ -0,0 +1,70 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.load;
+
+import com.callcenter.Call;
+
+/**
+ * A call replayed from a trace, carrying the recorded handling time of each hop
+ * (each employee who handled it).
+ * 
+ * @author pviotti
+ */
+final class ReplayedCall extends Call {
+
+    private final long[] handlingTimes;
+
+    /* The hops started so far (by the employees handling the call, one at a time). */
+    private int hops;
+
+    /**
+     * @param _priority
+     *            the priority of the call
+     * @param _handlingTimes
+     *            the recorded handling times of the hops, in nanoseconds
+     */
+    ReplayedCall(int _priority, long[] _handlingTimes) {
+        super(_priority);
+        this.handlingTimes = _handlingTimes;
+    }
+
+    /**
+     * Start the next hop of the call.
+     * 
+     * @return the recorded handling time of the hop, in nanoseconds, or -1 if the
+     *         trace has no more hops for this call.
+     */
+    long nextHandlingTime() {
+        return hops < handlingTimes.length ? handlingTimes[hops++] : -1;
+    }
+
+    /**
+     * @return whether the trace recorded the escalations of this call (more than
+     *         one hop).
+     */
+    boolean hasRecordedEscalations() {
+        return handlingTimes.length > 1;
+    }
+
+    /**
+     * @return whether the trace has more hops for this call.
+     */
+    boolean hasNextHop() {
+        return hops < handlingTimes.length;
+    }
+}
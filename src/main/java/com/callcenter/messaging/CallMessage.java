@@ -0,0 +1,88 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.messaging;
+
+import com.callcenter.employees.Rank;
+
+/**
+ * The pre-built messages said to the customers. A message may have a numeric
+ * argument, which is substituted to the <code>{}</code> placeholder of its
+ * template.
+ * 
+ * @author pviotti
+ */
+public enum CallMessage {
+    WAIT("All employees are busy. Please hang on: you'll be served as soon as possible."),
+    BUSY("All our lines are busy. Please call again later."),
+    GREETING_RESPONDENT("Hi! I'm a respondent. How can I help you?"),
+    GREETING_MANAGER("Hi! I'm a manager. How can I help you?"),
+    GREETING_DIRECTOR("Hi! I'm a director. How can I help you?"),
+    ESCALATE("This looks like a challenging issue! I'm going to call my boss."),
+    /* The argument is the duration of the call in milliseconds. */
+    END("Issue solved! Thank you for calling, have a nice day![{}ms]");
+
+    private static final CallMessage[] GREETINGS = { GREETING_RESPONDENT, GREETING_MANAGER, GREETING_DIRECTOR };
+
+    private final String template;
+
+    CallMessage(String _template) {
+        template = _template;
+    }
+
+    /**
+     * Get the template of the message.
+     * 
+     * @return the template, with a <code>{}</code> placeholder if the message has
+     *         an argument.
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns whether the message has a numeric argument.
+     * 
+     * @return true if the template has a placeholder.
+     */
+    public boolean hasArgument() {
+        return this == END;
+    }
+
+    /**
+     * Format the message with its argument (for sinks which are not on the hot
+     * path).
+     * 
+     * @param argument
+     *            the argument of the message, ignored if it has none
+     * @return the text of the message.
+     */
+    public String format(long argument) {
+        return hasArgument() ? template.replace("{}", Long.toString(argument)) : template;
+    }
+
+    /**
+     * Get the greeting of an employee of the given rank.
+     * 
+     * @param rank
+     *            the rank of the employee
+     * @return the greeting message.
+     */
+    public static CallMessage greeting(Rank rank) {
+        return GREETINGS[rank.getValue()];
+    }
+}
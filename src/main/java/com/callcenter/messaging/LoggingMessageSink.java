@@ -0,0 +1,44 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.messaging;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import com.callcenter.Call;
+
+/**
+ * Logs the messages said to the customers, using parameterized logging (no
+ * string is built when the level is disabled, and numeric arguments are not
+ * boxed). Whether logging is asynchronous depends on the log4j2 configuration.
+ * 
+ * @author pviotti
+ */
+public class LoggingMessageSink implements MessageSink {
+
+    private static final Logger log = LogManager.getLogger(Call.class);
+
+    @Override
+    public void say(Call call, CallMessage message, long argument) {
+        if (message.hasArgument())
+            log.info(message.getTemplate(), Unbox.box(argument));
+        else
+            log.info(message.getTemplate());
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.messaging;
+
+import com.callcenter.Call;
+
+/**
+ * Delivers the messages said to the customers. Implementations must be
+ * thread-safe and should not allocate, as messages are said on every call.
+ * 
+ * @author pviotti
+ */
+@FunctionalInterface
+public interface MessageSink {
+
+    /** A sink dropping every message. */
+    MessageSink SILENT = (call, message, argument) -> {
+    };
+
+    /**
+     * Say something to the customer.
+     * 
+     * @param call
+     *            the call of the customer
+     * @param message
+     *            the message
+     * @param argument
+     *            the argument of the message (ignored if the message has none)
+     */
+    void say(Call call, CallMessage message, long argument);
+}
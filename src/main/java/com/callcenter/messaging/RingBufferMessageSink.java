@@ -0,0 +1,171 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.messaging;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.callcenter.Call;
+
+/**
+ * Asynchronous and garbage-free sink: messages are stored in a pre-allocated
+ * ring buffer and delivered to another sink by a background thread. When the
+ * ring buffer is full, messages are dropped (and counted) rather than slowing
+ * down the calls. Calls are not retained: the delegate receives null calls.
+ * 
+ * @author pviotti
+ */
+public class RingBufferMessageSink implements MessageSink, AutoCloseable {
+
+    private static final CallMessage[] MESSAGES = CallMessage.values();
+    private static final long IDLE_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final MessageSink delegate;
+    private final int mask;
+
+    /* Slot i is free for the producer of position p when sequences[i] == p, and
+     * ready for the consumer of position p when sequences[i] == p + 1. */
+    private final AtomicLongArray sequences;
+    private final int[] messages;
+    private final long[] arguments;
+
+    private final AtomicLong tail = new AtomicLong();
+    private long head = 0; // only accessed by the consumer thread
+    private final LongAdder dropped = new LongAdder();
+
+    private final Thread consumer;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a sink delivering messages to a {@link LoggingMessageSink}.
+     * 
+     * @param capacity
+     *            the capacity of the ring buffer (rounded up to a power of two)
+     */
+    public RingBufferMessageSink(int capacity) {
+        this(capacity, new LoggingMessageSink());
+    }
+
+    /**
+     * @param capacity
+     *            the capacity of the ring buffer (rounded up to a power of two)
+     * @param _delegate
+     *            the sink receiving the messages on the background thread
+     */
+    public RingBufferMessageSink(int capacity, MessageSink _delegate) {
+        if (capacity < 1 || capacity > 1 << 30)
+            throw new IllegalArgumentException("The capacity must be between 1 and 2^30");
+        int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.delegate = _delegate;
+        this.mask = size - 1;
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+            sequences.set(i, i);
+        this.messages = new int[size];
+        this.arguments = new long[size];
+
+        this.consumer = new Thread(this::drain, "message-sink");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    @Override
+    public void say(Call call, CallMessage message, long argument) {
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+            if (sequence == position) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    messages[slot] = message.ordinal();
+                    arguments[slot] = argument;
+                    sequences.lazySet(slot, position + 1);
+                    return;
+                }
+            } else if (sequence < position) {
+                // The consumer is lagging behind: drop the message
+                dropped.increment();
+                return;
+            }
+            // else another producer took the slot: retry
+        }
+    }
+
+    /**
+     * Get the number of messages dropped because the ring buffer was full.
+     * 
+     * @return the number of dropped messages.
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Stop the background thread after delivering the pending messages (waiting
+     * for it even if interrupted, in which case the interrupt status is restored).
+     */
+    @Override
+    public void close() {
+        running = false;
+        boolean interrupted = false;
+        while (consumer.isAlive()) {
+            try {
+                consumer.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    /**
+     * Body of the background thread.
+     */
+    private void drain() {
+        while (true) {
+            boolean wasRunning = running;
+            if (!deliverPending() && !wasRunning)
+                return;
+            LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+    }
+
+    /**
+     * Deliver the messages published so far.
+     * 
+     * @return true if some messages have been delivered.
+     */
+    private boolean deliverPending() {
+        boolean delivered = false;
+        while (true) {
+            int slot = (int) head & mask;
+            if (sequences.get(slot) != head + 1)
+                return delivered;
+            CallMessage message = MESSAGES[messages[slot]];
+            long argument = arguments[slot];
+            sequences.lazySet(slot, head + mask + 1);
+            head++;
+            delegate.say(null, message, argument);
+            delivered = true;
+        }
+    }
+}
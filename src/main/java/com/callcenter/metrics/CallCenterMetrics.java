@@ -0,0 +1,253 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import com.callcenter.employees.Rank;
+
+/**
+ * Metrics of a call center, per rank: counters of the dispatched, queued,
+ * rejected, dropped, escalated and completed calls and of the calls answered past their
+ * deadline, depth of the call queues, and histograms of the waiting and
+ * handling times. Updates never allocate, so they can be done
+ * on every call; {@link #snapshot()} can be polled from a monitoring thread.
+ * 
+ * @author pviotti
+ */
+public class CallCenterMetrics {
+
+    private static final int RANKS = Rank.values().length;
+
+    private final LongAdder[] dispatched = newAdders();
+    private final LongAdder[] queued = newAdders();
+    private final LongAdder[] rejected = newAdders();
+    private final LongAdder[] dropped = newAdders();
+    private final LongAdder[] escalated = newAdders();
+    private final LongAdder[] completed = newAdders();
+    private final LongAdder[] queueDepth = newAdders();
+    private final LongAdder[] deadlineMisses = newAdders();
+    private final LongAdder[] busyEmployees = newAdders();
+    private final LatencyRecorder[] waitTimes = new LatencyRecorder[RANKS];
+    private final LatencyRecorder[] handleTimes = new LatencyRecorder[RANKS];
+
+    public CallCenterMetrics() {
+        for (int i = 0; i < RANKS; i++) {
+            waitTimes[i] = new LatencyRecorder();
+            handleTimes[i] = new LatencyRecorder();
+        }
+    }
+
+    /**
+     * A call (or an escalated call) has been dispatched.
+     * 
+     * @param priority
+     *            the priority of the call
+     */
+    public void onDispatched(int priority) {
+        dispatched[priority].increment();
+    }
+
+    /**
+     * A call has been put into a queue.
+     * 
+     * @param queue
+     *            the rank of the queue
+     */
+    public void onQueued(int queue) {
+        queued[queue].increment();
+        queueDepth[queue].increment();
+    }
+
+    /**
+     * Some calls have been put into a queue at once.
+     * 
+     * @param queue
+     *            the rank of the queue
+     * @param calls
+     *            the number of calls
+     */
+    public void onQueued(int queue, int calls) {
+        queued[queue].add(calls);
+        queueDepth[queue].add(calls);
+    }
+
+    /**
+     * A call has been taken out of a queue.
+     * 
+     * @param queue
+     *            the rank of the queue
+     * @param priority
+     *            the priority of the call
+     * @param waitNanos
+     *            the time spent by the call in the queue
+     */
+    public void onDequeued(int queue, int priority, long waitNanos) {
+        queueDepth[queue].decrement();
+        waitTimes[priority].record(waitNanos);
+    }
+
+    /**
+     * A call has been taken out of a queue after its deadline.
+     * 
+     * @param priority
+     *            the priority of the call
+     */
+    public void onDeadlineMissed(int priority) {
+        deadlineMisses[priority].increment();
+    }
+
+    /**
+     * A call has been evicted from a queue without being served, to make room for
+     * a newer one.
+     * 
+     * @param queue
+     *            the rank of the queue
+     */
+    public void onDropped(int queue) {
+        dropped[queue].increment();
+        queueDepth[queue].decrement();
+    }
+
+    /**
+     * A call has been rejected because the queues were full.
+     * 
+     * @param priority
+     *            the priority of the call
+     */
+    public void onRejected(int priority) {
+        rejected[priority].increment();
+    }
+
+    /**
+     * A call has been taken by an employee directly, without waiting in a queue.
+     * 
+     * @param priority
+     *            the priority of the call
+     */
+    public void onServedImmediately(int priority) {
+        waitTimes[priority].record(0);
+    }
+
+    /**
+     * An employee has spent some time on a call.
+     * 
+     * @param rank
+     *            the rank of the employee
+     * @param nanos
+     *            the time spent on the call
+     */
+    public void onHandled(Rank rank, long nanos) {
+        handleTimes[rank.getValue()].record(nanos);
+    }
+
+    /**
+     * An employee has escalated a call.
+     * 
+     * @param rank
+     *            the rank of the employee
+     */
+    public void onEscalated(Rank rank) {
+        escalated[rank.getValue()].increment();
+    }
+
+    /**
+     * An employee has solved a call.
+     * 
+     * @param rank
+     *            the rank of the employee
+     */
+    public void onCompleted(Rank rank) {
+        completed[rank.getValue()].increment();
+    }
+
+    /**
+     * An employee has been claimed to handle calls.
+     * 
+     * @param rank
+     *            the rank of the employee
+     */
+    public void onClaimed(Rank rank) {
+        busyEmployees[rank.getValue()].increment();
+    }
+
+    /**
+     * A claimed employee has been released, or has left.
+     * 
+     * @param rank
+     *            the rank of the employee
+     */
+    public void onReleased(Rank rank) {
+        busyEmployees[rank.getValue()].decrement();
+    }
+
+    /**
+     * Get the number of claimed employees of a rank, in constant time.
+     * 
+     * @param rank
+     *            the rank of the employees
+     * @return the number of employees handling calls (or claimed for good, in
+     *         actor mode).
+     */
+    public int getBusyEmployees(Rank rank) {
+        return (int) busyEmployees[rank.getValue()].sum();
+    }
+
+    /**
+     * Get the number of calls in a queue, in constant time.
+     * 
+     * @param queue
+     *            the rank of the queue
+     * @return the depth of the queue.
+     */
+    public int getQueueDepth(int queue) {
+        return (int) queueDepth[queue].sum();
+    }
+
+    /**
+     * Take a snapshot of the metrics.
+     * 
+     * @return the snapshot.
+     */
+    public MetricsSnapshot snapshot() {
+        long[][] counters = new long[8][RANKS];
+        LatencySnapshot[] waits = new LatencySnapshot[RANKS];
+        LatencySnapshot[] handles = new LatencySnapshot[RANKS];
+        for (int i = 0; i < RANKS; i++) {
+            counters[0][i] = dispatched[i].sum();
+            counters[1][i] = queued[i].sum();
+            counters[2][i] = escalated[i].sum();
+            counters[3][i] = completed[i].sum();
+            counters[4][i] = queueDepth[i].sum();
+            counters[5][i] = rejected[i].sum();
+            counters[6][i] = deadlineMisses[i].sum();
+            counters[7][i] = dropped[i].sum();
+            waits[i] = waitTimes[i].snapshot();
+            handles[i] = handleTimes[i].snapshot();
+        }
+        return new MetricsSnapshot(counters[0], counters[1], counters[5], counters[7], counters[2], counters[3],
+                counters[4], counters[6], waits, handles);
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[RANKS];
+        for (int i = 0; i < RANKS; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent histogram of latencies in nanoseconds, in the style of
+ * HdrHistogram: values are counted in log-linear buckets (64 sub-buckets per
+ * power of two, i.e. a relative error below 1.6%), so that recording a value is
+ * a single atomic increment and never allocates.
+ * 
+ * @author pviotti
+ */
+public class LatencyRecorder {
+
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /* Values below 2 * SUB_BUCKETS are counted exactly, then each power of two gets SUB_BUCKETS buckets. */
+    static final int BUCKETS = SUB_BUCKETS * (64 - SUB_BUCKET_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record a latency.
+     * 
+     * @param nanos
+     *            the latency in nanoseconds (negative values are counted as 0)
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucketOf(nanos));
+        sum.add(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos))
+            ;
+    }
+
+    /**
+     * Take a snapshot of the recorded latencies (concurrent recordings may be
+     * partially included).
+     * 
+     * @return the snapshot.
+     */
+    public LatencySnapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new LatencySnapshot(copy, count, sum.sum(), max.get());
+    }
+
+    /**
+     * Get the bucket of a value.
+     * 
+     * @param value
+     *            a non-negative value
+     * @return the index of its bucket
+     */
+    static int bucketOf(long value) {
+        if (value < 2 * SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return SUB_BUCKETS * (shift + 1) + (int) ((value >>> shift) - SUB_BUCKETS);
+    }
+
+    /**
+     * Get the smallest value counted in a bucket.
+     * 
+     * @param bucket
+     *            the index of the bucket
+     * @return the lowest value of the bucket
+     */
+    static long lowestValueOf(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS)
+            return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Get the largest value counted in a bucket.
+     * 
+     * @param bucket
+     *            the index of the bucket
+     * @return the highest value of the bucket
+     */
+    static long highestValueOf(int bucket) {
+        return bucket + 1 < BUCKETS ? lowestValueOf(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+}
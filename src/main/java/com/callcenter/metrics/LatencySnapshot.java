@@ -0,0 +1,101 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable view of the latencies recorded by a {@link LatencyRecorder}.
+ * 
+ * @author pviotti
+ */
+public class LatencySnapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    LatencySnapshot(long[] _counts, long _count, long _sum, long _max) {
+        this.counts = _counts;
+        this.count = _count;
+        this.sum = _sum;
+        this.max = _max;
+    }
+
+    /**
+     * Get the number of recorded latencies.
+     * 
+     * @return the number of recorded latencies.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Get the mean latency.
+     * 
+     * @return the mean latency in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Get the maximum latency.
+     * 
+     * @return the maximum latency in nanoseconds.
+     */
+    public long getMax() {
+        return this.max;
+    }
+
+    /**
+     * Get a percentile of the latencies (with the precision of the histogram).
+     * 
+     * @param percentile
+     *            the percentile, between 0 and 100
+     * @return the latency in nanoseconds below which the given percentage of
+     *         latencies fall, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("The percentile must be between 0 and 100");
+        if (count == 0)
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(LatencyRecorder.highestValueOf(i), max);
+        }
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.3fms p50=%.3fms p90=%.3fms p99=%.3fms p99.9=%.3fms max=%.3fms", count,
+                getMean() / TimeUnit.MILLISECONDS.toNanos(1), toMillis(getPercentile(50)), toMillis(getPercentile(90)),
+                toMillis(getPercentile(99)), toMillis(getPercentile(99.9)), toMillis(max));
+    }
+
+    private static double toMillis(long nanos) {
+        return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
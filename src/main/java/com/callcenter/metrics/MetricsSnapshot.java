@@ -0,0 +1,162 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.metrics;
+
+import com.callcenter.employees.Rank;
+
+/**
+ * Immutable view of the {@link CallCenterMetrics} of a call center.
+ * 
+ * @author pviotti
+ */
+public class MetricsSnapshot {
+
+    private final long[] dispatched;
+    private final long[] queued;
+    private final long[] rejected;
+    private final long[] dropped;
+    private final long[] escalated;
+    private final long[] completed;
+    private final long[] queueDepth;
+    private final long[] deadlineMisses;
+    private final LatencySnapshot[] waitTimes;
+    private final LatencySnapshot[] handleTimes;
+
+    MetricsSnapshot(long[] _dispatched, long[] _queued, long[] _rejected, long[] _dropped, long[] _escalated,
+            long[] _completed, long[] _queueDepth, long[] _deadlineMisses, LatencySnapshot[] _waitTimes, LatencySnapshot[] _handleTimes) {
+        this.dispatched = _dispatched;
+        this.queued = _queued;
+        this.rejected = _rejected;
+        this.dropped = _dropped;
+        this.escalated = _escalated;
+        this.completed = _completed;
+        this.queueDepth = _queueDepth;
+        this.deadlineMisses = _deadlineMisses;
+        this.waitTimes = _waitTimes;
+        this.handleTimes = _handleTimes;
+    }
+
+    /**
+     * @param rank
+     *            the priority of the calls
+     * @return the number of calls dispatched with this priority (escalations
+     *         included).
+     */
+    public long getDispatched(Rank rank) {
+        return dispatched[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the rank of the queue
+     * @return the number of calls that have been put in this queue.
+     */
+    public long getQueued(Rank rank) {
+        return queued[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the priority of the calls
+     * @return the number of calls with this priority rejected because the queues
+     *         were full.
+     */
+    public long getRejected(Rank rank) {
+        return rejected[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the rank of the queue
+     * @return the number of calls evicted from this queue to make room for newer
+     *         ones (see OverflowPolicy#DROP_OLDEST).
+     */
+    public long getDropped(Rank rank) {
+        return dropped[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the rank of the employees
+     * @return the number of calls escalated by the employees of this rank.
+     */
+    public long getEscalated(Rank rank) {
+        return escalated[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the rank of the employees
+     * @return the number of calls solved by the employees of this rank.
+     */
+    public long getCompleted(Rank rank) {
+        return completed[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the rank of the queue
+     * @return the number of calls waiting in this queue.
+     */
+    public long getQueueDepth(Rank rank) {
+        return queueDepth[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the priority of the calls
+     * @return the number of calls with this priority that waited longer than the
+     *         service level (see DispatcherConfig#setServiceLevels).
+     */
+    public long getDeadlineMisses(Rank rank) {
+        return deadlineMisses[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the priority of the calls
+     * @return the times spent by the calls waiting with this priority.
+     */
+    public LatencySnapshot getWaitTimes(Rank rank) {
+        return waitTimes[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the rank of the employees
+     * @return the times spent on calls by the employees of this rank.
+     */
+    public LatencySnapshot getHandleTimes(Rank rank) {
+        return handleTimes[rank.getValue()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Rank rank : Rank.values()) {
+            int i = rank.getValue();
+            sb.append(rank).append(": dispatched=").append(dispatched[i]).append(" queued=").append(queued[i])
+                    .append(" rejected=").append(rejected[i]).append(" dropped=").append(dropped[i])
+                    .append(" escalated=").append(escalated[i]).append(" completed=").append(completed[i])
+                    .append(" queueDepth=").append(queueDepth[i]).append(" deadlineMisses=").append(deadlineMisses[i])
+                    .append("\n  wait: ").append(waitTimes[i])
+                    .append("\n  handle: ").append(handleTimes[i]).append("\n");
+        }
+        return sb.toString();
+    }
+}
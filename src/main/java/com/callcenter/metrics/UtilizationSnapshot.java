@@ -0,0 +1,121 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.metrics;
+
+import java.util.Collection;
+
+import com.callcenter.employees.Employee;
+
+/**
+ * Utilization of each employee of a group (the fraction of the time since it was
+ * hired spent on calls) and how evenly the load is spread among them.
+ * 
+ * @author pviotti
+ */
+public class UtilizationSnapshot {
+
+    private final double[] utilizations;
+    private final long[] handledCalls;
+
+    /**
+     * Take a snapshot of the utilization of some employees.
+     * 
+     * @param employees
+     *            the employees
+     * @param nanoTime
+     *            the current time of their dispatcher
+     */
+    public UtilizationSnapshot(Collection<Employee> employees, long nanoTime) {
+        this.utilizations = new double[employees.size()];
+        this.handledCalls = new long[employees.size()];
+        int i = 0;
+        for (Employee emp : employees) {
+            long elapsed = nanoTime - emp.getHireTime();
+            utilizations[i] = elapsed <= 0 ? 0 : Math.min(1, (double) emp.getBusyTime() / elapsed);
+            handledCalls[i++] = emp.getHandledCalls();
+        }
+    }
+
+    /**
+     * @return the number of employees.
+     */
+    public int getEmployees() {
+        return utilizations.length;
+    }
+
+    /**
+     * @param employee
+     *            the index of the employee
+     * @return the fraction of its time the employee spent on calls.
+     */
+    public double getUtilization(int employee) {
+        return utilizations[employee];
+    }
+
+    /**
+     * @param employee
+     *            the index of the employee
+     * @return the number of calls the employee handled.
+     */
+    public long getHandledCalls(int employee) {
+        return handledCalls[employee];
+    }
+
+    public double getMin() {
+        double min = utilizations.length == 0 ? 0 : 1;
+        for (double u : utilizations)
+            min = Math.min(min, u);
+        return min;
+    }
+
+    public double getMax() {
+        double max = 0;
+        for (double u : utilizations)
+            max = Math.max(max, u);
+        return max;
+    }
+
+    public double getMean() {
+        double sum = 0;
+        for (double u : utilizations)
+            sum += u;
+        return utilizations.length == 0 ? 0 : sum / utilizations.length;
+    }
+
+    /**
+     * Get how unevenly the load is spread: the standard deviation of the
+     * utilizations divided by their mean.
+     * 
+     * @return the coefficient of variation (0 if the load is even or null).
+     */
+    public double getCoefficientOfVariation() {
+        double mean = getMean();
+        if (mean == 0)
+            return 0;
+        double squares = 0;
+        for (double u : utilizations)
+            squares += (u - mean) * (u - mean);
+        return Math.sqrt(squares / utilizations.length) / mean;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("employees=%d utilization min=%.3f mean=%.3f max=%.3f cv=%.3f", getEmployees(), getMin(),
+                getMean(), getMax(), getCoefficientOfVariation());
+    }
+}
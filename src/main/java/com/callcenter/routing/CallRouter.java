@@ -0,0 +1,62 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.routing;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Rank;
+
+/**
+ * Decides the priority a new call is dispatched with (the minimal rank of the
+ * employees who may take it), and observes how the calls are handled.
+ * Implementations must be thread-safe and cheap, as they are called on every
+ * dispatch and every time an employee is done with a call.
+ * 
+ * @author pviotti
+ */
+@FunctionalInterface
+public interface CallRouter {
+
+    /** A router leaving the calls at their priority. */
+    CallRouter NONE = call -> call.getPriority();
+
+    /**
+     * Get the priority a new call should start at. Escalated calls are not
+     * routed again.
+     * 
+     * @param call
+     *            the call being dispatched
+     * @return the priority (calls are only ever moved up).
+     */
+    int route(Call call);
+
+    /**
+     * Take note that an employee is done with a call (before the call is
+     * escalated or disconnected).
+     * 
+     * @param call
+     *            the call (see {@link Call#getInitialPriority()})
+     * @param rank
+     *            the rank of the employee
+     * @param handledNanos
+     *            the time the employee spent on the call
+     * @param escalated
+     *            whether the employee escalates the call
+     */
+    default void onHandled(Call call, Rank rank, long handledNanos, boolean escalated) {
+    }
+}
@@ -0,0 +1,285 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.routing;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToIntFunction;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Rank;
+
+/**
+ * A router learning, per category of calls and starting rank, how often the
+ * employees of each rank escalate the calls, and sending the calls which would
+ * most likely be escalated straight to the rank likely to solve them. Each hop
+ * saved is a dispatch, a wait and some employee time spared.
+ * 
+ * <p>
+ * A rank is skipped when at least {@link #setThreshold threshold} of the calls
+ * of the category starting at the same rank it has handled were escalated, over
+ * at least {@link #setMinSamples minimum samples} calls. As the calls starting
+ * higher don't tell anything about the lower ranks, one call in
+ * {@link #setExplorationPeriod period} still takes the normal path. Rules can
+ * also force the starting rank of a category ({@link #setRule}).
+ * 
+ * @author pviotti
+ */
+public class EscalationRouter implements CallRouter {
+
+    private static final int RANKS = Rank.values().length;
+
+    private static final int NO_RULE = -1;
+
+    private final int categories;
+    private final ToIntFunction<Call> categorizer;
+
+    private volatile double threshold = 0.8;
+    private volatile int minSamples = 50;
+    private volatile int explorationPeriod = 20;
+    private final int[] rules;
+
+    /* Calls handled, calls solved and time spent, per category, starting rank and rank. */
+    private final LongAdder[] handled;
+    private final LongAdder[] solved;
+    private final LongAdder[] handlingTime;
+
+    /* Calls routed per category and starting rank, to pick the calls exploring. */
+    private final AtomicLongArray routed;
+
+    private final LongAdder promotedCalls = new LongAdder();
+    private final LongAdder skippedHops = new LongAdder();
+    private final DoubleAdder savedTime = new DoubleAdder();
+
+    /**
+     * Creates a router telling the categories of calls apart by the lowest skill
+     * they require (e.g. their product line): category 0 holds the calls
+     * requiring no skill, category i + 1 those whose lowest required skill is
+     * skill i.
+     */
+    public EscalationRouter() {
+        this(Long.SIZE + 1, EscalationRouter::lowestSkill);
+    }
+
+    /**
+     * Creates a router.
+     * 
+     * @param _categories
+     *            the number of categories
+     * @param _categorizer
+     *            gives the category of a call, between 0 and the number of
+     *            categories (calls of other categories are left alone)
+     */
+    public EscalationRouter(int _categories, ToIntFunction<Call> _categorizer) {
+        if (_categories < 1)
+            throw new IllegalArgumentException("There must be at least one category");
+        this.categories = _categories;
+        this.categorizer = _categorizer;
+        this.rules = new int[_categories];
+        Arrays.fill(rules, NO_RULE);
+        this.handled = newAdders(_categories * RANKS * RANKS);
+        this.solved = newAdders(_categories * RANKS * RANKS);
+        this.handlingTime = newAdders(_categories * RANKS * RANKS);
+        this.routed = new AtomicLongArray(_categories * RANKS);
+    }
+
+    private static int lowestSkill(Call call) {
+        long skills = call.getRequiredSkills();
+        return skills == 0 ? 0 : 1 + Long.numberOfTrailingZeros(skills);
+    }
+
+    /**
+     * Set the fraction of the calls a rank must have escalated to be skipped.
+     * 
+     * @param _threshold
+     *            the fraction, between 0 (exclusive) and 1
+     * @return this router
+     */
+    public EscalationRouter setThreshold(double _threshold) {
+        if (!(_threshold > 0 && _threshold <= 1))
+            throw new IllegalArgumentException("The threshold must be in (0, 1]");
+        this.threshold = _threshold;
+        return this;
+    }
+
+    /**
+     * Set how many calls a rank must have handled before it may be skipped.
+     * 
+     * @param _minSamples
+     *            the number of calls (at least 1)
+     * @return this router
+     */
+    public EscalationRouter setMinSamples(int _minSamples) {
+        if (_minSamples < 1)
+            throw new IllegalArgumentException("The minimum number of samples must be positive");
+        this.minSamples = _minSamples;
+        return this;
+    }
+
+    /**
+     * Set how often calls take the normal path anyway, to keep learning about the
+     * ranks they would skip.
+     * 
+     * @param _explorationPeriod
+     *            one call in this number, per category and starting rank (0 for
+     *            none)
+     * @return this router
+     */
+    public EscalationRouter setExplorationPeriod(int _explorationPeriod) {
+        if (_explorationPeriod < 0)
+            throw new IllegalArgumentException("The exploration period cannot be negative");
+        this.explorationPeriod = _explorationPeriod;
+        return this;
+    }
+
+    /**
+     * Force the calls of a category to start at least at a given rank, whatever
+     * has been learned.
+     * 
+     * @param category
+     *            the category
+     * @param rank
+     *            the rank, or null to remove the rule
+     * @return this router
+     */
+    public EscalationRouter setRule(int category, Rank rank) {
+        rules[category] = rank == null ? NO_RULE : rank.getValue();
+        return this;
+    }
+
+    @Override
+    public int route(Call call) {
+        int start = call.getPriority();
+        int category = categorizer.applyAsInt(call);
+        if (category < 0 || category >= categories)
+            return start;
+
+        int priority = start;
+        if (rules[category] > start) {
+            priority = rules[category];
+        } else {
+            int period = explorationPeriod;
+            if (period > 0 && routed.getAndIncrement(category * RANKS + start) % period == 0)
+                return start;
+            while (priority < RANKS - 1) {
+                int i = index(category, start, priority);
+                long calls = handled[i].sum();
+                if (calls < minSamples || calls - solved[i].sum() < threshold * calls)
+                    break;
+                priority++;
+            }
+        }
+
+        if (priority > start) {
+            promotedCalls.increment();
+            skippedHops.add(priority - start);
+            savedTime.add(expectedTime(category, start, priority));
+        }
+        return priority;
+    }
+
+    /**
+     * Estimate the time a call would have spent with the ranks it skips: the time
+     * spent by each of those ranks on the calls of the category starting at the
+     * same rank, per such call.
+     */
+    private double expectedTime(int category, int start, int priority) {
+        long calls = handled[index(category, start, start)].sum();
+        if (calls == 0)
+            return 0;
+        long time = 0;
+        for (int rank = start; rank < priority; rank++)
+            time += handlingTime[index(category, start, rank)].sum();
+        return (double) time / calls;
+    }
+
+    @Override
+    public void onHandled(Call call, Rank rank, long handledNanos, boolean escalated) {
+        int start = call.getInitialPriority();
+        int category = categorizer.applyAsInt(call);
+        if (start < 0 || category < 0 || category >= categories)
+            return;
+        int i = index(category, start, rank.getValue());
+        handled[i].increment();
+        handlingTime[i].add(handledNanos);
+        if (!escalated)
+            solved[i].increment();
+    }
+
+    private static int index(int category, int start, int rank) {
+        return (category * RANKS + start) * RANKS + rank;
+    }
+
+    /**
+     * Get the fraction of the calls of a category, starting at a given rank,
+     * that the employees of a rank escalated.
+     * 
+     * @param category
+     *            the category
+     * @param start
+     *            the rank the calls started at
+     * @param rank
+     *            the rank of the employees
+     * @return the escalation rate, or 0 if they haven't handled such calls.
+     */
+    public double getEscalationRate(int category, Rank start, Rank rank) {
+        int i = index(category, start.getValue(), rank.getValue());
+        long calls = handled[i].sum();
+        return calls == 0 ? 0 : (double) (calls - solved[i].sum()) / calls;
+    }
+
+    /**
+     * @return the number of calls started above their priority.
+     */
+    public long getPromotedCalls() {
+        return promotedCalls.sum();
+    }
+
+    /**
+     * @return the number of ranks skipped by the calls (one per escalation saved).
+     */
+    public long getSkippedHops() {
+        return skippedHops.sum();
+    }
+
+    /**
+     * Get an estimate of the employee time saved by skipping ranks, based on the
+     * time the skipped ranks spent on similar calls.
+     * 
+     * @return the time saved, in nanoseconds.
+     */
+    public long getSavedTime() {
+        return (long) savedTime.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("promoted=%d skippedHops=%d savedTime=%dms", getPromotedCalls(), getSkippedHops(),
+                TimeUnit.NANOSECONDS.toMillis(getSavedTime()));
+    }
+
+    private static LongAdder[] newAdders(int size) {
+        LongAdder[] adders = new LongAdder[size];
+        for (int i = 0; i < size; i++)
+            adders[i] = new LongAdder();
+        return adders;
+    }
+}
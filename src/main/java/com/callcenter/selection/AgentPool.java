@@ -0,0 +1,60 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.selection;
+
+import com.callcenter.employees.Employee;
+
+/**
+ * A lock-free pool of the free employees of a rank and skill set, whose order
+ * of retrieval implements an {@link AgentSelectionPolicy}.
+ * 
+ * <p>
+ * The pool only holds candidates: an employee taken out of it may have been
+ * claimed meanwhile (e.g. when leaving the call center), in which case the
+ * dispatcher's {@link Employee#tryClaim()} fails and the employee is dropped.
+ * 
+ * @author pviotti
+ */
+public interface AgentPool {
+
+    /**
+     * Add an employee who just got free.
+     * 
+     * @param emp
+     *            the employee
+     */
+    void add(Employee emp);
+
+    /**
+     * Take an employee out of the pool.
+     * 
+     * @return the employee, or null if the pool is empty.
+     */
+    Employee poll();
+
+    /**
+     * Forget an employee who has left the call center (it may still be returned
+     * by a concurrent poll, but can't be claimed anymore). Does nothing by
+     * default: the pool drops the employee once polled.
+     * 
+     * @param emp
+     *            the employee
+     */
+    default void remove(Employee emp) {
+    }
+}
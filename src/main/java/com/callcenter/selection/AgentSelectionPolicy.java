@@ -0,0 +1,61 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.selection;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+/**
+ * How the dispatcher picks a free employee among those of the right rank and
+ * skills (see {@link com.callcenter.DispatcherConfig#setAgentSelectionPolicy}):
+ * each policy creates the pools holding the free employees, and picks an
+ * employee in constant time (or a scan of a bitmap, one word per 64 employees).
+ * 
+ * @author pviotti
+ */
+public interface AgentSelectionPolicy {
+
+    /**
+     * The employee who got free last (the default): its caches are warm, but the
+     * load concentrates on a few employees when the call center isn't busy.
+     */
+    AgentSelectionPolicy LAST_FREED = random -> new StackAgentPool();
+
+    /** The employee who has been free the longest. */
+    AgentSelectionPolicy LEAST_RECENTLY_BUSY = random -> new QueueAgentPool();
+
+    /** The next free employee after the last one picked, in hiring order. */
+    AgentSelectionPolicy ROUND_ROBIN = random -> new RoundRobinAgentPool();
+
+    /**
+     * The least busy (over its whole shift) of two free employees drawn at random.
+     */
+    AgentSelectionPolicy POWER_OF_TWO_CHOICES = TwoChoicesAgentPool::new;
+
+    /**
+     * Creates an empty pool of free employees.
+     * 
+     * @param random
+     *            the random generator of the calling thread (e.g.
+     *            {@link java.util.concurrent.ThreadLocalRandom#current()}, or the
+     *            generator of a simulation), for the policies drawing employees at
+     *            random
+     * @return the pool.
+     */
+    AgentPool newPool(Supplier<? extends Random> random);
+}
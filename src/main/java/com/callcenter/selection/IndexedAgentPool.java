@@ -0,0 +1,198 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.selection;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.callcenter.employees.Employee;
+
+/**
+ * A pool giving each employee a slot, the first time it is added, and keeping
+ * the free slots in a lock-free bitmap, so that subclasses can pick a free
+ * employee from any position. The slots of the employees who leave are given to
+ * the next employees.
+ * 
+ * @author pviotti
+ */
+abstract class IndexedAgentPool implements AgentPool {
+
+    /**
+     * The employees and the bitmap of the free ones, replaced when the pool grows.
+     */
+    static final class Table {
+        final Employee[] members;
+        final AtomicLongArray bits;
+
+        Table(int capacity) {
+            this.members = new Employee[capacity];
+            this.bits = new AtomicLongArray(capacity >>> 6);
+        }
+    }
+
+    private final ConcurrentHashMap<Employee, Integer> slots = new ConcurrentHashMap<Employee, Integer>();
+    private volatile Table table = new Table(64);
+    private volatile int size;
+
+    /* The slots of the employees who left (guarded by this). */
+    private int[] freed = new int[8];
+    private int freedCount;
+
+    @Override
+    public void add(Employee emp) {
+        Integer slot = slots.get(emp);
+        if (slot == null) {
+            slot = register(emp);
+            // The employee may have left while getting free: don't keep its slot
+            if (emp.isRetiring()) {
+                remove(emp);
+                return;
+            }
+        }
+        // A bit set in a table being replaced may not have been copied: set it again
+        Table t;
+        do {
+            t = table;
+            set(t, slot);
+        } while (t != table);
+    }
+
+    @Override
+    public synchronized void remove(Employee emp) {
+        Integer slot = slots.remove(emp);
+        if (slot == null)
+            return;
+        // The member is kept until the slot is given again: a concurrent poll may
+        // still return it, but it can't be claimed anymore
+        take(table, slot);
+        if (freedCount == freed.length)
+            freed = Arrays.copyOf(freed, freedCount * 2);
+        freed[freedCount++] = slot;
+    }
+
+    private synchronized int register(Employee emp) {
+        Integer known = slots.get(emp);
+        if (known != null)
+            return known;
+        Table t = table;
+        int slot;
+        if (freedCount > 0) {
+            slot = freed[--freedCount];
+        } else {
+            slot = size;
+            if (slot == t.members.length)
+                t = grow(t);
+            size = slot + 1;
+        }
+        t.members[slot] = emp;
+        slots.put(emp, slot);
+        return slot;
+    }
+
+    /**
+     * Replace the table by a copy twice as large. The bits of the slots that don't
+     * hold a free employee anymore (left set by a departed employee, or by one
+     * claimed without polling this pool) are not copied.
+     */
+    private Table grow(Table t) {
+        int capacity = t.members.length;
+        Table larger = new Table(capacity * 2);
+        System.arraycopy(t.members, 0, larger.members, 0, capacity);
+        for (int i = 0; i < t.bits.length(); i++) {
+            long word = t.bits.get(i);
+            for (long w = word; w != 0; w &= w - 1) {
+                int slot = (i << 6) + Long.numberOfTrailingZeros(w);
+                if (!holdsFree(t, slot))
+                    word &= ~(1L << slot);
+            }
+            larger.bits.set(i, word);
+        }
+        table = larger;
+        // An employee got free while copying may have set its bit in the old table
+        // only: set it again in the new one
+        for (int slot = 0; slot < capacity; slot++)
+            if ((t.bits.get(slot >>> 6) & 1L << slot) != 0 && holdsFree(t, slot))
+                set(larger, slot);
+        return larger;
+    }
+
+    private boolean holdsFree(Table t, int slot) {
+        Employee emp = t.members[slot];
+        return emp != null && emp.isFree() && Integer.valueOf(slot).equals(slots.get(emp));
+    }
+
+    /**
+     * Get the current table.
+     */
+    final Table table() {
+        return table;
+    }
+
+    /**
+     * Get the number of slots given so far (including those of the employees who
+     * left).
+     */
+    final int size() {
+        return size;
+    }
+
+    private static void set(Table t, int slot) {
+        int index = slot >>> 6;
+        long mask = 1L << slot;
+        long word;
+        do {
+            word = t.bits.get(index);
+        } while ((word & mask) == 0 && !t.bits.compareAndSet(index, word, word | mask));
+    }
+
+    /**
+     * Clear the bit of a slot.
+     * 
+     * @return true if the slot was free (and the caller now owns its employee).
+     */
+    static boolean take(Table t, int slot) {
+        int index = slot >>> 6;
+        long mask = 1L << slot;
+        while (true) {
+            long word = t.bits.get(index);
+            if ((word & mask) == 0)
+                return false;
+            if (t.bits.compareAndSet(index, word, word & ~mask))
+                return true;
+        }
+    }
+
+    /**
+     * Find the first free slot at or after a position, wrapping around.
+     * 
+     * @return the slot, or -1 if no slot is free.
+     */
+    static int next(Table t, int from) {
+        int words = t.bits.length();
+        int index = (from >>> 6) % words;
+        long word = t.bits.get(index) & (-1L << from);
+        for (int i = 0; i <= words; i++) {
+            if (word != 0)
+                return (index << 6) + Long.numberOfTrailingZeros(word);
+            index = index + 1 == words ? 0 : index + 1;
+            word = t.bits.get(index);
+        }
+        return -1;
+    }
+}
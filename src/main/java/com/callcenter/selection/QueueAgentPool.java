@@ -0,0 +1,43 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.selection;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.callcenter.employees.Employee;
+
+/**
+ * Lock-free FIFO queue of free employees (see
+ * {@link AgentSelectionPolicy#LEAST_RECENTLY_BUSY}).
+ * 
+ * @author pviotti
+ */
+final class QueueAgentPool implements AgentPool {
+
+    private final ConcurrentLinkedQueue<Employee> employees = new ConcurrentLinkedQueue<Employee>();
+
+    @Override
+    public void add(Employee emp) {
+        employees.offer(emp);
+    }
+
+    @Override
+    public Employee poll() {
+        return employees.poll();
+    }
+}
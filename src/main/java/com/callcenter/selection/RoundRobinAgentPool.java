@@ -0,0 +1,46 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.selection;
+
+import com.callcenter.employees.Employee;
+
+/**
+ * Pool picking the next free employee after the last one picked (see
+ * {@link AgentSelectionPolicy#ROUND_ROBIN}).
+ * 
+ * @author pviotti
+ */
+final class RoundRobinAgentPool extends IndexedAgentPool {
+
+    /* Where to start looking for a free employee (races only shift the start). */
+    private volatile int cursor;
+
+    @Override
+    public Employee poll() {
+        Table t = table();
+        while (true) {
+            int slot = next(t, cursor & Integer.MAX_VALUE);
+            if (slot < 0)
+                return null;
+            if (take(t, slot)) {
+                cursor = slot + 1;
+                return t.members[slot];
+            }
+        }
+    }
+}
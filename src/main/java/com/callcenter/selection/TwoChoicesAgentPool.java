@@ -0,0 +1,62 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.selection;
+
+import java.util.Random;
+import java.util.function.Supplier;
+
+import com.callcenter.employees.Employee;
+
+/**
+ * Pool picking the least busy of two free employees drawn at random (see
+ * {@link AgentSelectionPolicy#POWER_OF_TWO_CHOICES}): the busy times of the
+ * employees converge, without looking at all of them.
+ * 
+ * @author pviotti
+ */
+final class TwoChoicesAgentPool extends IndexedAgentPool {
+
+    private final Supplier<? extends Random> random;
+
+    /**
+     * @param _random
+     *            the random generator of the calling thread
+     */
+    TwoChoicesAgentPool(Supplier<? extends Random> _random) {
+        this.random = _random;
+    }
+
+    @Override
+    public Employee poll() {
+        Table t = table();
+        int size = size();
+        if (size == 0)
+            return null;
+        Random rnd = random.get();
+        while (true) {
+            int first = next(t, rnd.nextInt(size));
+            if (first < 0)
+                return null;
+            int second = next(t, rnd.nextInt(size));
+            int slot = second >= 0 && t.members[second].getBusyTime() < t.members[first].getBusyTime() ? second
+                    : first;
+            if (take(t, slot))
+                return t.members[slot];
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.simulation;
+
+import java.util.Arrays;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Employee;
+
+/**
+ * Priority queue of the events of a simulation, by time: a binary heap over
+ * parallel arrays, so that scheduling an event doesn't allocate. Events at the
+ * same time are polled in the order they were added, so that runs are
+ * reproducible. Not thread-safe.
+ * 
+ * @author pviotti
+ */
+final class EventQueue {
+
+    private long[] times = new long[64];
+    private long[] sequences = new long[64];
+    private Employee[] employees = new Employee[64];
+    private Call[] calls = new Call[64];
+    private long[] durations = new long[64];
+    private int size;
+    private long sequence;
+
+    /* The last polled event. */
+    private Employee employee;
+    private Call call;
+    private long duration;
+
+    /**
+     * Schedule an event.
+     * 
+     * @param time
+     *            the time of the event
+     * @param _employee
+     *            the employee ending a conversation, or null for an arrival
+     * @param _call
+     *            the call, or null for an arrival
+     * @param _duration
+     *            the duration of the conversation
+     */
+    void add(long time, Employee _employee, Call _call, long _duration) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            sequences = Arrays.copyOf(sequences, capacity);
+            employees = Arrays.copyOf(employees, capacity);
+            calls = Arrays.copyOf(calls, capacity);
+            durations = Arrays.copyOf(durations, capacity);
+        }
+        long seq = sequence++;
+        int i = size++;
+        // Sift up
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(time, seq, parent))
+                break;
+            move(parent, i);
+            i = parent;
+        }
+        set(i, time, seq, _employee, _call, _duration);
+    }
+
+    /**
+     * Take out the earliest event, which is then described by {@link #employee()},
+     * {@link #call()} and {@link #duration()}.
+     * 
+     * @return the time of the event
+     * @throws IllegalStateException
+     *             if the queue is empty
+     */
+    long poll() {
+        if (size == 0)
+            throw new IllegalStateException("No event is scheduled");
+        long time = times[0];
+        employee = employees[0];
+        call = calls[0];
+        duration = durations[0];
+
+        int last = --size;
+        long lastTime = times[last], lastSeq = sequences[last];
+        Employee lastEmployee = employees[last];
+        Call lastCall = calls[last];
+        long lastDuration = durations[last];
+        employees[last] = null;
+        calls[last] = null;
+        // Sift down
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && before(times[child + 1], sequences[child + 1], child))
+                child++;
+            if (!before(times[child], sequences[child], lastTime, lastSeq))
+                break;
+            move(child, i);
+            i = child;
+        }
+        if (size > 0)
+            set(i, lastTime, lastSeq, lastEmployee, lastCall, lastDuration);
+        return time;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the employee of the last polled event, or null for an arrival.
+     */
+    Employee employee() {
+        return employee;
+    }
+
+    /**
+     * @return the call of the last polled event, or null for an arrival.
+     */
+    Call call() {
+        return call;
+    }
+
+    /**
+     * @return the duration of the conversation of the last polled event.
+     */
+    long duration() {
+        return duration;
+    }
+
+    private boolean before(long time, long seq, int i) {
+        return before(time, seq, times[i], sequences[i]);
+    }
+
+    private static boolean before(long time, long seq, long otherTime, long otherSeq) {
+        return time < otherTime || (time == otherTime && seq < otherSeq);
+    }
+
+    private void move(int from, int to) {
+        set(to, times[from], sequences[from], employees[from], calls[from], durations[from]);
+    }
+
+    private void set(int i, long time, long seq, Employee _employee, Call _call, long _duration) {
+        times[i] = time;
+        sequences[i] = seq;
+        employees[i] = _employee;
+        calls[i] = _call;
+        durations[i] = _duration;
+    }
+}
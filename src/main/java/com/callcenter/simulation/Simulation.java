@@ -0,0 +1,287 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.Call;
+import com.callcenter.CallDispatcher;
+import com.callcenter.CallPool;
+import com.callcenter.DispatcherConfig;
+import com.callcenter.ExecutionMode;
+import com.callcenter.employees.Employee;
+import com.callcenter.employees.Rank;
+import com.callcenter.journal.CallJournal;
+import com.callcenter.messaging.MessageSink;
+import com.callcenter.metrics.CallCenterMetrics;
+
+/**
+ * Discrete-event simulation of a call center, for capacity planning: calls
+ * arrive as a Poisson process and are routed, queued and escalated by a
+ * {@link CallDispatcher} in {@link ExecutionMode#SIMULATED} mode, while the
+ * conversations (drawn from the configured conversation model) are played on a
+ * virtual clock. A run takes a single thread, and is reproducible given the same
+ * seed; independent runs (e.g. with different staffing, see
+ * {@link #withStaffing}) can be executed in parallel with
+ * {@link #sweep(List, long, Executor)}.
+ * 
+ * @author pviotti
+ */
+public class Simulation {
+
+    private static final int RANKS = Rank.values().length;
+
+    private final int[] staffing;
+    private final DispatcherConfig config;
+
+    /* Mean number of calls arriving per nanosecond. */
+    private double arrivalRate = 10.0 / TimeUnit.SECONDS.toNanos(1);
+
+    /* Cumulative probabilities of the priorities of the arriving calls. */
+    private double[] priorityMix = { 1, 1, 1 };
+
+    private long seed;
+
+    /**
+     * Creates a simulation of a call center with the given numbers of respondents,
+     * managers and directors, and the given configuration (of which the execution
+     * mode, the stripes, the journal and the message sink are ignored).
+     * 
+     * @param _numRespondents
+     *            number of respondents
+     * @param _numManagers
+     *            number of managers
+     * @param _numDirectors
+     *            number of directors
+     * @param _config
+     *            the configuration of the dispatcher
+     */
+    public Simulation(int _numRespondents, int _numManagers, int _numDirectors, DispatcherConfig _config) {
+        this.staffing = new int[] { _numRespondents, _numManagers, _numDirectors };
+        this.config = new DispatcherConfig(_config).setMode(ExecutionMode.SIMULATED).setStripes(1)
+                .setJournal(CallJournal.NONE).setMessageSink(MessageSink.SILENT);
+    }
+
+    /**
+     * Set the mean arrival rate of the calls.
+     * 
+     * @param calls
+     *            the mean number of calls arriving per time unit
+     * @param unit
+     *            the time unit
+     * @return this simulation
+     */
+    public Simulation setArrivalRate(double calls, TimeUnit unit) {
+        if (!(calls > 0))
+            throw new IllegalArgumentException("The arrival rate must be positive");
+        this.arrivalRate = calls / unit.toNanos(1);
+        return this;
+    }
+
+    /**
+     * Set the share of the arriving calls of each priority (normalised).
+     * 
+     * @param respondent
+     *            the share of the calls of priority RESPONDENT
+     * @param manager
+     *            the share of the calls of priority MANAGER
+     * @param director
+     *            the share of the calls of priority DIRECTOR
+     * @return this simulation
+     */
+    public Simulation setPriorityMix(double respondent, double manager, double director) {
+        double total = respondent + manager + director;
+        if (respondent < 0 || manager < 0 || director < 0 || !(total > 0))
+            throw new IllegalArgumentException("The shares must be non-negative, and not all zero");
+        this.priorityMix = new double[] { respondent / total, (respondent + manager) / total, 1 };
+        return this;
+    }
+
+    /**
+     * Set the seed of the random generator drawing the arrivals and the
+     * conversations.
+     * 
+     * @param _seed
+     *            the seed
+     * @return this simulation
+     */
+    public Simulation setSeed(long _seed) {
+        this.seed = _seed;
+        return this;
+    }
+
+    /**
+     * Creates a copy of this simulation with a different staffing, for what-if
+     * analyses.
+     * 
+     * @param _numRespondents
+     *            number of respondents
+     * @param _numManagers
+     *            number of managers
+     * @param _numDirectors
+     *            number of directors
+     * @return the new simulation
+     */
+    public Simulation withStaffing(int _numRespondents, int _numManagers, int _numDirectors) {
+        Simulation copy = new Simulation(_numRespondents, _numManagers, _numDirectors, config);
+        copy.arrivalRate = this.arrivalRate;
+        copy.priorityMix = this.priorityMix;
+        copy.seed = this.seed;
+        return copy;
+    }
+
+    /**
+     * Run the simulation until a number of calls have arrived and all the calls
+     * are over.
+     * 
+     * @param calls
+     *            the number of arriving calls
+     * @return the result of the run
+     */
+    public SimulationResult run(long calls) {
+        return new Run().execute(calls);
+    }
+
+    /**
+     * Run several simulations in parallel, e.g. the same call center with
+     * different staffings.
+     * 
+     * @param simulations
+     *            the simulations
+     * @param calls
+     *            the number of arriving calls of each run
+     * @param executor
+     *            the executor running the simulations (e.g. a pool with one
+     *            thread per core)
+     * @return the results, in the order of the simulations
+     */
+    public static List<SimulationResult> sweep(List<Simulation> simulations, long calls, Executor executor) {
+        List<CompletableFuture<SimulationResult>> runs = new ArrayList<CompletableFuture<SimulationResult>>();
+        for (Simulation simulation : simulations)
+            runs.add(CompletableFuture.supplyAsync(() -> simulation.run(calls), executor));
+        List<SimulationResult> results = new ArrayList<SimulationResult>(runs.size());
+        for (CompletableFuture<SimulationResult> run : runs)
+            results.add(run.join());
+        return results;
+    }
+
+    /**
+     * A run of the simulation: the virtual clock, the scheduled events and the
+     * simulated call center.
+     */
+    final class Run implements Simulator {
+
+        private final EventQueue events = new EventQueue();
+        private final Random rnd = new Random(seed);
+        private long now;
+
+        /* The calls go back to the pool when they end, even when dropped or rejected. */
+        final CallPool pool = new CallPool(1024, this::newCall);
+
+        /* The number of calls created by the pool. */
+        int allocated;
+
+        @Override
+        public long now() {
+            return now;
+        }
+
+        @Override
+        public Random random() {
+            return rnd;
+        }
+
+        @Override
+        public void simulate(Employee employee, Call call) {
+            long duration = Math.max(0, employee.answerCall(call, rnd));
+            events.add(now + duration, employee, call, duration);
+        }
+
+        SimulationResult execute(long calls) {
+            long start = System.nanoTime();
+            CallDispatcher dispatcher = new CallDispatcher(staffing[0], staffing[1], staffing[2],
+                    new DispatcherConfig(config).setSimulator(this));
+            CallCenterMetrics metrics = dispatcher.getMetrics();
+
+            double[] queueAreas = new double[RANKS];
+            int[] depths = new int[RANKS];
+            int[] maxDepths = new int[RANKS];
+            long arrived = 0;
+            if (calls > 0)
+                events.add(interArrivalTime(), null, null, 0);
+            while (!events.isEmpty()) {
+                long time = events.poll();
+                for (int i = 0; i < RANKS; i++)
+                    queueAreas[i] += (double) depths[i] * (time - now);
+                now = time;
+
+                Call call = events.call();
+                if (call == null) {
+                    // A new call arrives
+                    dispatcher.dispatchCall(pool.acquire(nextPriority()));
+                    if (++arrived < calls)
+                        events.add(now + interArrivalTime(), null, null, 0);
+                } else {
+                    // An employee is done talking: the call is escalated or ended
+                    Employee employee = events.employee();
+                    if (employee.wrapUpCall(call, events.duration(), rnd))
+                        dispatcher.dispatchCall(call);
+                    dispatcher.getNextCall(employee);
+                }
+
+                for (int i = 0; i < RANKS; i++) {
+                    depths[i] = metrics.getQueueDepth(i);
+                    maxDepths[i] = Math.max(maxDepths[i], depths[i]);
+                }
+            }
+
+            double[] meanDepths = new double[RANKS];
+            for (int i = 0; i < RANKS; i++)
+                meanDepths[i] = now == 0 ? 0 : queueAreas[i] / now;
+            return new SimulationResult(staffing.clone(), arrived, now, System.nanoTime() - start,
+                    metrics.snapshot(), meanDepths, maxDepths);
+        }
+
+        private Call newCall() {
+            allocated++;
+            return new Call() {
+                @Override
+                protected void ended() {
+                    pool.release(this);
+                }
+            };
+        }
+
+        private long interArrivalTime() {
+            return (long) (-Math.log(1 - rnd.nextDouble()) / arrivalRate);
+        }
+
+        private int nextPriority() {
+            double p = rnd.nextDouble();
+            int priority = 0;
+            while (p >= priorityMix[priority] && priority < RANKS - 1)
+                priority++;
+            return priority;
+        }
+    }
+}
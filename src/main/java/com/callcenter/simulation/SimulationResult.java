@@ -0,0 +1,130 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+import com.callcenter.employees.Rank;
+import com.callcenter.metrics.MetricsSnapshot;
+
+/**
+ * Outcome of a run of a {@link Simulation}: the metrics of the call center at
+ * the end of the run (including the waiting and handling times per rank, on the
+ * virtual clock) and the lengths of the queues over the run.
+ * 
+ * @author pviotti
+ */
+public class SimulationResult {
+
+    private final int[] staffing;
+    private final long calls;
+    private final long simulatedNanos;
+    private final long elapsedNanos;
+    private final MetricsSnapshot metrics;
+    private final double[] meanQueueLengths;
+    private final int[] maxQueueLengths;
+
+    SimulationResult(int[] _staffing, long _calls, long _simulatedNanos, long _elapsedNanos,
+            MetricsSnapshot _metrics, double[] _meanQueueLengths, int[] _maxQueueLengths) {
+        this.staffing = _staffing;
+        this.calls = _calls;
+        this.simulatedNanos = _simulatedNanos;
+        this.elapsedNanos = _elapsedNanos;
+        this.metrics = _metrics;
+        this.meanQueueLengths = _meanQueueLengths;
+        this.maxQueueLengths = _maxQueueLengths;
+    }
+
+    /**
+     * @param rank
+     *            the rank of the employees
+     * @return the number of employees of this rank.
+     */
+    public int getStaffing(Rank rank) {
+        return staffing[rank.getValue()];
+    }
+
+    /**
+     * @return the number of calls which arrived during the run.
+     */
+    public long getCalls() {
+        return calls;
+    }
+
+    /**
+     * Get the virtual time from the start of the run to the end of the last call.
+     * 
+     * @param unit
+     *            the time unit
+     * @return the simulated time.
+     */
+    public long getSimulatedTime(TimeUnit unit) {
+        return unit.convert(simulatedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the (real) time taken by the run.
+     * 
+     * @param unit
+     *            the time unit
+     * @return the elapsed time.
+     */
+    public long getElapsedTime(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the metrics of the call center at the end of the run.
+     */
+    public MetricsSnapshot getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @param rank
+     *            the rank of the queue
+     * @return the length of the queue averaged over the simulated time.
+     */
+    public double getMeanQueueLength(Rank rank) {
+        return meanQueueLengths[rank.getValue()];
+    }
+
+    /**
+     * @param rank
+     *            the rank of the queue
+     * @return the maximum length of the queue.
+     */
+    public int getMaxQueueLength(Rank rank) {
+        return maxQueueLengths[rank.getValue()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("staffing=").append(staffing[0]).append('/').append(staffing[1]).append('/').append(staffing[2])
+                .append(" calls=").append(calls).append(" simulated=")
+                .append(TimeUnit.NANOSECONDS.toSeconds(simulatedNanos)).append("s elapsed=")
+                .append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos)).append("ms\n");
+        for (Rank rank : Rank.values()) {
+            int i = rank.getValue();
+            sb.append(rank).append(": queue mean=").append(String.format("%.2f", meanQueueLengths[i]))
+                    .append(" max=").append(maxQueueLengths[i]).append("\n");
+        }
+        return sb.append(metrics).toString();
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.simulation;
+
+import java.util.Random;
+
+import com.callcenter.Call;
+import com.callcenter.employees.Employee;
+
+/**
+ * Drives a {@link com.callcenter.CallDispatcher} in
+ * {@link com.callcenter.ExecutionMode#SIMULATED} mode: the dispatcher takes the
+ * time from the simulator and hands it the conversations, instead of executing
+ * them.
+ * 
+ * @author pviotti
+ */
+public interface Simulator {
+
+    /**
+     * Get the current time of the simulation.
+     * 
+     * @return the virtual time in nanoseconds.
+     */
+    long now();
+
+    /**
+     * An employee has been assigned a call: the conversation is to be played by
+     * the simulator, which lets the employee wrap up the call (see
+     * {@link Employee#wrapUpCall}) and then get its next call once it is over.
+     * 
+     * @param employee
+     *            the claimed employee
+     * @param call
+     *            the call
+     */
+    void simulate(Employee employee, Call call);
+
+    /**
+     * Get the random generator of the simulation, which the dispatcher draws from
+     * too (e.g. to pick a free employee), so that a run can be reproduced.
+     * 
+     * @return the random generator.
+     */
+    Random random();
+}
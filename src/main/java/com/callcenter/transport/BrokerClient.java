@@ -0,0 +1,223 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.transport;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Transport to a {@link BrokerServer} over TCP. The requests of a batch (the
+ * polls for each rank, or the frames of many reports) are pipelined: they are
+ * written at once, then the replies are read. After an I/O error the connection
+ * is closed, and opened again by the next request; the broker then puts back the
+ * calls of a poll whose replies were lost.
+ * 
+ * @author pviotti
+ */
+public class BrokerClient implements CallTransport {
+
+    private final InetSocketAddress address;
+    private SocketChannel channel;
+    private ByteBuffer out = ByteBuffer.allocate(BrokerServer.MAX_FRAME + 4);
+    private final ByteBuffer in = ByteBuffer.allocate(BrokerServer.MAX_FRAME + 4);
+
+    /**
+     * Connect to a broker.
+     * 
+     * @param _address
+     *            the address of the broker
+     * @throws IOException
+     *             if the broker cannot be reached
+     */
+    public BrokerClient(InetSocketAddress _address) throws IOException {
+        this.address = _address;
+        connect();
+    }
+
+    @Override
+    public int register() throws IOException {
+        out.clear();
+        out.putInt(1).put(BrokerServer.REGISTER);
+        try {
+            send();
+            return receive().getInt();
+        } catch (IOException e) {
+            throw disconnect(e);
+        }
+    }
+
+    @Override
+    public int offer(long[] calls, int count, int[] refused) throws IOException {
+        if (count > MAX_OFFER)
+            throw new IllegalArgumentException("Too many calls: " + count);
+        // A single frame, so that the broker takes the offer as a whole
+        out.clear();
+        reserve(9 + 8 * count).putInt(5 + 8 * count).put(BrokerServer.OFFER).putInt(count);
+        for (int i = 0; i < count; i++)
+            out.putLong(calls[i]);
+        try {
+            send();
+            ByteBuffer reply = receive();
+            int n = reply.getInt();
+            for (int i = 0; i < n; i++)
+                refused[i] = reply.getInt();
+            return n;
+        } catch (IOException e) {
+            throw disconnect(e);
+        }
+    }
+
+    @Override
+    public int poll(int[] maxCalls, long[] calls) throws IOException {
+        int requests = 0;
+        out.clear();
+        for (int rank = 0; rank < maxCalls.length; rank++)
+            for (int max = maxCalls[rank]; max > 0; max -= BrokerServer.MAX_CALLS) {
+                reserve(10).putInt(6).put(BrokerServer.POLL).put((byte) rank)
+                        .putInt(Math.min(max, BrokerServer.MAX_CALLS));
+                requests++;
+            }
+        try {
+            send();
+            int taken = 0;
+            for (int i = 0; i < requests; i++) {
+                ByteBuffer reply = receive();
+                int n = reply.getInt();
+                for (int j = 0; j < n; j++)
+                    calls[taken++] = reply.getLong();
+            }
+            // Got them: the broker can forget them (it puts them back if the connection breaks before)
+            if (taken > 0) {
+                out.clear();
+                out.putInt(1).put(BrokerServer.ACKNOWLEDGE);
+                send();
+            }
+            return taken;
+        } catch (IOException e) {
+            throw disconnect(e);
+        }
+    }
+
+    @Override
+    public void report(long[] ended, int count) throws IOException {
+        out.clear();
+        for (int from = 0; from < count; from += BrokerServer.MAX_REPORTS) {
+            int n = Math.min(BrokerServer.MAX_REPORTS, count - from);
+            reserve(9 + 16 * n).putInt(5 + 16 * n).put(BrokerServer.REPORT).putInt(n);
+            for (int i = 2 * from; i < 2 * (from + n); i++)
+                out.putLong(ended[i]);
+        }
+        try {
+            send();
+        } catch (IOException e) {
+            throw disconnect(e);
+        }
+    }
+
+    @Override
+    public int pollReports(int node, long[] ended) throws IOException {
+        out.clear();
+        out.putInt(9).put(BrokerServer.POLL_REPORTS).putInt(node)
+                .putInt(Math.min(ended.length / 2, BrokerServer.MAX_REPORTS));
+        try {
+            send();
+            ByteBuffer reply = receive();
+            int n = reply.getInt();
+            for (int i = 0; i < 2 * n; i++)
+                ended[i] = reply.getLong();
+            return n;
+        } catch (IOException e) {
+            throw disconnect(e);
+        }
+    }
+
+    private void connect() throws IOException {
+        channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+    }
+
+    /**
+     * Close the connection after an I/O error (the replies pending on it are
+     * lost), so that the next request opens a new one.
+     * 
+     * @param e
+     *            the error
+     * @return the error.
+     */
+    private IOException disconnect(IOException e) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            channel = null;
+        }
+        return e;
+    }
+
+    private ByteBuffer reserve(int bytes) {
+        if (out.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+            out.flip();
+            larger.put(out);
+            out = larger;
+        }
+        return out;
+    }
+
+    private void send() throws IOException {
+        if (channel == null)
+            connect();
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+    }
+
+    /**
+     * Read a reply frame.
+     * 
+     * @return the payload of the frame, valid until the next call.
+     */
+    private ByteBuffer receive() throws IOException {
+        in.clear().limit(4);
+        readFully();
+        int length = in.getInt(0);
+        if (length < 4 || length > BrokerServer.MAX_FRAME)
+            throw new IOException("Invalid frame length: " + length);
+        in.clear().limit(length);
+        readFully();
+        in.flip();
+        return in;
+    }
+
+    private void readFully() throws IOException {
+        while (in.hasRemaining())
+            if (channel.read(in) < 0)
+                throw new EOFException("The broker closed the connection");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+}
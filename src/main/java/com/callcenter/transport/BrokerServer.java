@@ -0,0 +1,321 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.transport;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A TCP server giving access to a {@link CallBroker}, on a single non-blocking
+ * thread. Requests are served in order on each connection, so that clients can
+ * pipeline them (see {@link BrokerClient}).
+ * 
+ * <p>
+ * Each request and each reply is a frame made of its length (an int) and its
+ * payload. Requests start with an operation byte:
+ * <ul>
+ * <li>{@code OFFER} is followed by the number of calls and the encoded calls
+ * (longs), and is answered by the number of calls not accepted and their indexes
+ * in the request (ints);</li>
+ * <li>{@code POLL} is followed by a rank (a byte) and a maximum number of calls
+ * (an int), and is answered by the number of calls taken and the encoded
+ * calls;</li>
+ * <li>{@code ACKNOWLEDGE} tells that the replies to the previous polls have been
+ * received, and is not answered;</li>
+ * <li>{@code REGISTER} is answered by the number of a new node (an int);</li>
+ * <li>{@code REPORT} is followed by the number of calls and their reports (pairs
+ * of longs, see {@link CallBroker#report}), and is not answered;</li>
+ * <li>{@code POLL_REPORTS} is followed by the number of a node and a maximum
+ * number of calls (ints), and is answered by the number of calls reported and
+ * their reports.</li>
+ * </ul>
+ * 
+ * <p>
+ * The calls taken by the polls of a connection are held until acknowledged: if
+ * the connection is closed before (e.g. a reply was lost), they are put back at
+ * the head of their queues. A call is thus served at least once.
+ * 
+ * @author pviotti
+ */
+public class BrokerServer implements AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger();
+
+    static final byte OFFER = 1;
+    static final byte POLL = 2;
+    static final byte REGISTER = 3;
+    static final byte REPORT = 4;
+    static final byte POLL_REPORTS = 5;
+    static final byte ACKNOWLEDGE = 6;
+
+    /* Maximum size of a frame (the calls of a batch are split into frames). */
+    static final int MAX_FRAME = 1 << 16;
+    static final int MAX_CALLS = (MAX_FRAME - 5) / 8;
+    static final int MAX_REPORTS = (MAX_FRAME - 5) / 16;
+
+    private final CallBroker broker;
+    private final ServerSocketChannel server;
+    private final Selector selector;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /* Reused to hold the calls taken for a request. */
+    private final long[] calls = new long[MAX_CALLS];
+    private final int[] rejected = new int[MAX_CALLS];
+    private final long[] reports = new long[2 * MAX_REPORTS];
+
+    /**
+     * Start serving a broker.
+     * 
+     * @param _broker
+     *            the broker
+     * @param address
+     *            the address to listen on (port 0 for any free port)
+     * @throws IOException
+     *             if the address cannot be bound
+     */
+    public BrokerServer(CallBroker _broker, InetSocketAddress address) throws IOException {
+        this.broker = _broker;
+        this.selector = Selector.open();
+        this.server = ServerSocketChannel.open();
+        server.bind(address);
+        server.configureBlocking(false);
+        server.register(selector, SelectionKey.OP_ACCEPT);
+        this.thread = new Thread(this::run, "broker");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the address the server listens on.
+     * 
+     * @return the address.
+     * @throws IOException
+     *             if the server is closed
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) server.getLocalAddress();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (key.isAcceptable())
+                            accept();
+                        else
+                            serve(key);
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Closing broker connection: {}", e.toString());
+                        disconnect(key);
+                    }
+                }
+            } catch (IOException e) {
+                log.error("Broker failure", e);
+                return;
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    /**
+     * Read the requests, and write the replies, of a connection.
+     */
+    private void serve(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+
+        if (key.isReadable()) {
+            if (channel.read(connection.in) < 0) {
+                disconnect(key);
+                return;
+            }
+            ByteBuffer in = connection.in;
+            in.flip();
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 1 || length > MAX_FRAME)
+                    throw new IOException("Invalid frame length: " + length);
+                if (in.remaining() < 4 + length)
+                    break;
+                in.getInt();
+                handle(in, connection);
+            }
+            in.compact();
+        }
+
+        ByteBuffer out = connection.out;
+        out.flip();
+        channel.write(out);
+        out.compact();
+        key.interestOps(out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * Handle a request, putting the reply in the output buffer of the connection.
+     */
+    private void handle(ByteBuffer in, Connection connection) throws IOException {
+        byte op = in.get();
+        switch (op) {
+        case OFFER: {
+            int n = in.getInt();
+            if (n < 0 || n > MAX_CALLS)
+                throw new IOException("Invalid number of calls: " + n);
+            for (int i = 0; i < n; i++)
+                calls[i] = in.getLong();
+            int refused = broker.offer(calls, 0, n, rejected);
+            ByteBuffer out = connection.reserve(8 + 4 * refused).putInt(4 + 4 * refused).putInt(refused);
+            for (int i = 0; i < refused; i++)
+                out.putInt(rejected[i]);
+            break;
+        }
+        case POLL: {
+            int rank = in.get();
+            int max = Math.min(in.getInt(), MAX_CALLS);
+            if (rank < 0 || rank > 2)
+                throw new IOException("Invalid rank: " + rank);
+            int taken = broker.poll(rank, max, calls, 0);
+            connection.hold(calls, taken);
+            ByteBuffer out = connection.reserve(8 + 8 * taken).putInt(4 + 8 * taken).putInt(taken);
+            for (int i = 0; i < taken; i++)
+                out.putLong(calls[i]);
+            break;
+        }
+        case ACKNOWLEDGE:
+            connection.held = 0;
+            break;
+        case REGISTER:
+            connection.reserve(8).putInt(4).putInt(broker.register());
+            break;
+        case REPORT: {
+            int n = in.getInt();
+            if (n < 0 || n > MAX_REPORTS)
+                throw new IOException("Invalid number of calls: " + n);
+            for (int i = 0; i < 2 * n; i++)
+                reports[i] = in.getLong();
+            broker.report(reports, 0, n);
+            break;
+        }
+        case POLL_REPORTS: {
+            int node = in.getInt();
+            int max = Math.min(in.getInt(), MAX_REPORTS);
+            int n = broker.pollReports(node, max, reports);
+            ByteBuffer out = connection.reserve(8 + 16 * n).putInt(4 + 16 * n).putInt(n);
+            for (int i = 0; i < 2 * n; i++)
+                out.putLong(reports[i]);
+            break;
+        }
+        default:
+            throw new IOException("Invalid operation: " + op);
+        }
+    }
+
+    /**
+     * Stop the server and close its connections (waiting for the thread of the
+     * server even if interrupted, in which case the interrupt status is restored).
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        selector.wakeup();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        for (SelectionKey key : selector.keys())
+            disconnect(key);
+        selector.close();
+    }
+
+    /**
+     * Close a connection, putting back in the backlog the calls taken by the
+     * polls not acknowledged.
+     */
+    private void disconnect(SelectionKey key) throws IOException {
+        key.cancel();
+        key.channel().close();
+        Connection connection = (Connection) key.attachment();
+        if (connection != null && connection.held > 0) {
+            broker.requeue(connection.taken, 0, connection.held);
+            connection.held = 0;
+        }
+    }
+
+    /**
+     * The buffers of a connection, and the calls taken by its polls not
+     * acknowledged yet.
+     */
+    private static class Connection {
+        final ByteBuffer in = ByteBuffer.allocate(MAX_FRAME + 4);
+        ByteBuffer out = ByteBuffer.allocate(MAX_FRAME + 4);
+        long[] taken = new long[64];
+        int held;
+
+        /**
+         * Hold calls until the client acknowledges them.
+         */
+        void hold(long[] calls, int count) {
+            if (held + count > taken.length)
+                taken = Arrays.copyOf(taken, Math.max(held + count, 2 * taken.length));
+            System.arraycopy(calls, 0, taken, held, count);
+            held += count;
+        }
+
+        /**
+         * Make room in the output buffer (a slow client may have replies pending).
+         */
+        ByteBuffer reserve(int bytes) {
+            if (out.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                out.flip();
+                larger.put(out);
+                out = larger;
+            }
+            return out;
+        }
+    }
+}
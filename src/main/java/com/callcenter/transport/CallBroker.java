@@ -0,0 +1,294 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.transport;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.callcenter.employees.Rank;
+
+/**
+ * The call backlog shared by several dispatcher nodes: a bounded FIFO queue of
+ * calls per priority, each call being encoded as a single long (its id and its
+ * priority), and the reports of the calls served by other nodes than the ones
+ * which offered them. Thread-safe.
+ * 
+ * <p>
+ * The ids of the calls are given by the nodes, and start with the number of
+ * the node (see {@link #register()}), so that the node which offered a call
+ * can be told apart. Offers are idempotent: a node sending again its last offer
+ * (e.g. after an I/O error, not knowing whether it went through) gets the same
+ * answer, and the calls aren't queued twice.
+ * 
+ * @author pviotti
+ */
+public class CallBroker {
+
+    private static final int RANKS = Rank.values().length;
+
+    /* Bits of the sequence number of a call within its node, in the id of the call. */
+    static final int SEQUENCE_BITS = 40;
+
+    /* Maximum number of nodes (the ids must fit in 61 bits, next to the priority). */
+    static final int MAX_NODES = 1 << 21;
+
+    /* Reported in place of the rank of the employee when a call couldn't be served. */
+    static final int REFUSED = 3;
+
+    private final ArrayDeque<Long>[] queues;
+    private final int capacity;
+
+    /* Reports for each node: the encoded calls (id and rank), each followed by its duration. */
+    private final Map<Integer, ArrayDeque<Long>> reports = new HashMap<Integer, ArrayDeque<Long>>();
+
+    /* The last offer of each node, to recognize it if sent again. */
+    private final Map<Integer, Offer> lastOffers = new HashMap<Integer, Offer>();
+
+    private int nodes;
+
+    /**
+     * The first and last calls of an offer, and the indexes of the calls refused.
+     */
+    private static final class Offer {
+        final long first;
+        final long last;
+        final int[] refused;
+
+        Offer(long _first, long _last, int[] _refused) {
+            this.first = _first;
+            this.last = _last;
+            this.refused = _refused;
+        }
+    }
+
+    /**
+     * @param _capacity
+     *            the maximum number of calls in the queue of each priority
+     */
+    @SuppressWarnings({ "unchecked", "rawtypes" }) // no arrays of a generic type
+    public CallBroker(int _capacity) {
+        if (_capacity < 1)
+            throw new IllegalArgumentException("The capacity must be positive");
+        this.capacity = _capacity;
+        this.queues = new ArrayDeque[RANKS];
+        for (int i = 0; i < RANKS; i++)
+            queues[i] = new ArrayDeque<Long>();
+    }
+
+    /**
+     * Give a number to a new node.
+     * 
+     * @return the number of the node.
+     * @throws IllegalStateException
+     *             if there are too many nodes
+     */
+    public synchronized int register() {
+        if (nodes == MAX_NODES)
+            throw new IllegalStateException("Too many nodes");
+        return nodes++;
+    }
+
+    /**
+     * Put encoded calls of the same node in their queues.
+     * 
+     * @param calls
+     *            the encoded calls (see {@link #encode(long, int)})
+     * @param from
+     *            the index of the first call
+     * @param to
+     *            the index after the last call
+     * @param rejected
+     *            where to copy the indexes (from 0) of the calls not accepted
+     *            because their queue was full
+     * @return the number of calls not accepted
+     */
+    public synchronized int offer(long[] calls, int from, int to, int[] rejected) {
+        if (from == to)
+            return 0;
+        int node = nodeOf(calls[from]);
+        Offer last = lastOffers.get(node);
+        if (last != null && last.first == calls[from] && last.last == calls[to - 1]) {
+            System.arraycopy(last.refused, 0, rejected, 0, last.refused.length);
+            return last.refused.length;
+        }
+
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            ArrayDeque<Long> queue = queues[priorityOf(calls[i])];
+            if (queue.size() == capacity)
+                rejected[n++] = i - from;
+            else
+                queue.add(calls[i]);
+        }
+        int[] refused = new int[n];
+        System.arraycopy(rejected, 0, refused, 0, n);
+        lastOffers.put(node, new Offer(calls[from], calls[to - 1], refused));
+        return n;
+    }
+
+    /**
+     * Take encoded calls of priority at most rank, the highest priority first.
+     * 
+     * @param rank
+     *            the rank of the employees taking the calls
+     * @param max
+     *            the maximum number of calls
+     * @param calls
+     *            where to copy the calls
+     * @param offset
+     *            the index of the first call in the array
+     * @return the number of calls taken
+     */
+    public synchronized int poll(int rank, int max, long[] calls, int offset) {
+        int taken = 0;
+        for (int priority = rank; priority >= 0 && taken < max; priority--) {
+            ArrayDeque<Long> queue = queues[priority];
+            while (taken < max && !queue.isEmpty())
+                calls[offset + taken++] = queue.poll();
+        }
+        return taken;
+    }
+
+    /**
+     * Put calls taken from the backlog back at the head of their queues (e.g. if
+     * the node which took them couldn't get them), in the order they were taken.
+     * The queues may thus hold more calls than their capacity for a while.
+     * 
+     * @param calls
+     *            the encoded calls
+     * @param from
+     *            the index of the first call
+     * @param to
+     *            the index after the last call
+     */
+    public synchronized void requeue(long[] calls, int from, int to) {
+        for (int i = to - 1; i >= from; i--)
+            queues[priorityOf(calls[i])].addFirst(calls[i]);
+    }
+
+    /**
+     * Report the end of calls taken from the backlog to the nodes which offered
+     * them.
+     * 
+     * @param ended
+     *            pairs of longs: a call encoded with the rank of the employee who
+     *            solved it in place of its priority (or {@link #REFUSED}), then its
+     *            duration in nanoseconds
+     * @param from
+     *            the index of the first call
+     * @param to
+     *            the index after the last call
+     */
+    public synchronized void report(long[] ended, int from, int to) {
+        for (int i = from; i < to; i++) {
+            ArrayDeque<Long> queue = reports.get(nodeOf(ended[2 * i]));
+            if (queue == null)
+                reports.put(nodeOf(ended[2 * i]), queue = new ArrayDeque<Long>());
+            queue.add(ended[2 * i]);
+            queue.add(ended[2 * i + 1]);
+        }
+    }
+
+    /**
+     * Take the reports of the calls of a node which have been served by other
+     * nodes.
+     * 
+     * @param node
+     *            the number of the node
+     * @param max
+     *            the maximum number of calls
+     * @param ended
+     *            where to copy the reports (see {@link #report})
+     * @return the number of calls reported
+     */
+    public synchronized int pollReports(int node, int max, long[] ended) {
+        ArrayDeque<Long> queue = reports.get(node);
+        int n = 0;
+        while (n < max && queue != null && !queue.isEmpty()) {
+            ended[2 * n] = queue.poll();
+            ended[2 * n + 1] = queue.poll();
+            n++;
+        }
+        return n;
+    }
+
+    /**
+     * Get the length of the queues.
+     * 
+     * @return an array with the length of the queue of each priority.
+     */
+    public synchronized int[] size() {
+        int[] res = new int[RANKS];
+        for (int i = 0; i < RANKS; i++)
+            res[i] = queues[i].size();
+        return res;
+    }
+
+    /**
+     * Encode a call as a long.
+     * 
+     * @param id
+     *            the id of the call (below 2^61)
+     * @param priority
+     *            the priority of the call (or the rank of its employee, in a
+     *            report)
+     * @return the encoded call.
+     */
+    static long encode(long id, int priority) {
+        return id << 2 | priority;
+    }
+
+    /**
+     * Get the id of an encoded call.
+     * 
+     * @param call
+     *            the encoded call
+     * @return the id.
+     */
+    static long idOf(long call) {
+        return call >>> 2;
+    }
+
+    /**
+     * Get the number of the node which offered an encoded call.
+     * 
+     * @param call
+     *            the encoded call
+     * @return the number of the node.
+     */
+    static int nodeOf(long call) {
+        return (int) (call >>> (SEQUENCE_BITS + 2));
+    }
+
+    /**
+     * Get the priority of an encoded call.
+     * 
+     * @param call
+     *            the encoded call
+     * @return the priority, or an exception if the call is not valid
+     * @throws IllegalArgumentException
+     *             if the priority is not valid
+     */
+    static int priorityOf(long call) {
+        int priority = (int) (call & 3);
+        if (priority >= RANKS)
+            throw new IllegalArgumentException("Invalid call priority: " + priority);
+        return priority;
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Transport of the call backlog shared by several dispatcher nodes (see
+ * {@link DispatcherNode}): the calls no node could assign right away are
+ * offered to the shared queue of their priority, the nodes having free
+ * employees take them back, and the nodes serving the calls of others report
+ * their end to the node which offered them. Only the priority and the id of the
+ * calls travel, encoded as longs (see {@link CallBroker}); the operations work on
+ * batches, so that a node needs a round trip per batch rather than per call.
+ * Implementations need not be thread-safe.
+ * 
+ * @author pviotti
+ */
+public interface CallTransport extends Closeable {
+
+    /* Maximum number of calls offered at once. */
+    int MAX_OFFER = 1024;
+
+    /**
+     * Give a number to a new node, which starts the ids of its calls.
+     * 
+     * @return the number of the node.
+     * @throws IOException
+     *             if the backlog cannot be reached
+     */
+    int register() throws IOException;
+
+    /**
+     * Put calls of the same node in the shared backlog. The offer is
+     * all-or-nothing, and idempotent: the same offer sent again right after (e.g.
+     * after an IOException) gets the same answer, without queuing the calls twice.
+     * 
+     * @param calls
+     *            the encoded calls
+     * @param count
+     *            the number of calls (at most {@link #MAX_OFFER})
+     * @param refused
+     *            where to copy the indexes of the calls which were not accepted,
+     *            because the queue of their priority was full
+     * @return the number of calls not accepted
+     * @throws IOException
+     *             if the backlog cannot be reached
+     */
+    int offer(long[] calls, int count, int[] refused) throws IOException;
+
+    /**
+     * Take calls out of the shared backlog for the free employees of a node:
+     * employees of rank r only get calls of priority r or lower, the calls of
+     * highest priority first (and the oldest first, within a priority). If the
+     * calls taken can't be received (IOException), they are put back in the
+     * backlog: a call may then be taken twice, if it was received nonetheless.
+     * 
+     * @param maxCalls
+     *            the maximum number of calls to be taken for each rank
+     * @param calls
+     *            where to copy the encoded calls taken (large enough for the sum
+     *            of maxCalls)
+     * @return the number of calls taken
+     * @throws IOException
+     *             if the backlog cannot be reached
+     */
+    int poll(int[] maxCalls, long[] calls) throws IOException;
+
+    /**
+     * Report the end of calls taken from the shared backlog.
+     * 
+     * @param ended
+     *            pairs of longs: the call encoded with the rank of the employee
+     *            who solved it in place of its priority (or
+     *            {@link CallBroker#REFUSED} if the node turned it down), then its
+     *            duration in nanoseconds
+     * @param count
+     *            the number of calls
+     * @throws IOException
+     *             if the backlog cannot be reached
+     */
+    void report(long[] ended, int count) throws IOException;
+
+    /**
+     * Take the reports of the calls of a node served by other nodes.
+     * 
+     * @param node
+     *            the number of the node
+     * @param ended
+     *            where to copy the reports (see {@link #report(long[], int)}), at
+     *            most ended.length / 2 of them
+     * @return the number of calls reported
+     * @throws IOException
+     *             if the backlog cannot be reached
+     */
+    int pollReports(int node, long[] ended) throws IOException;
+}
@@ -0,0 +1,354 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.transport;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.util.Unbox;
+
+import com.callcenter.Call;
+import com.callcenter.CallDispatcher;
+import com.callcenter.DispatchOutcome;
+import com.callcenter.ExecutionMode;
+import com.callcenter.employees.Rank;
+
+/**
+ * A call center node sharing its call backlog with other nodes through a
+ * {@link CallTransport}: the calls which can't be assigned to a free employee of
+ * the node are offered to the shared backlog, from which every node takes calls
+ * for its free employees (of at least the rank of the calls). The calls go back
+ * and forth in batches, on a background thread of the node.
+ * 
+ * <p>
+ * Only the priority and an id (made of the number of the node and a sequence
+ * number) of a call travel. The node keeps the calls it offered by id: a call it
+ * takes back is served as it is, and a call served by another node (as a new
+ * call there) is disconnected, with the rank of the employee who solved it and
+ * its duration, once the other node reports its end; a call the other node turns
+ * down comes back to the queues of this node. The calls requiring skills are
+ * kept by their node.
+ * 
+ * <p>
+ * The calls still in the shared backlog when the node is closed are served by
+ * the other nodes, but their end is no longer reported. An offer the backlog
+ * can't be reached for is sent again until it is answered; if it still isn't
+ * when the node is closed, its calls are kept by the node, even though the
+ * backlog may have received them. Likewise, the calls of a poll whose reply is
+ * lost go back to the backlog, and may be served twice if the reply got through
+ * after all: the node which offered them only ends them once.
+ * 
+ * @author pviotti
+ */
+public class DispatcherNode implements AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger();
+
+    private static final int RANKS = Rank.values().length;
+
+    /* Maximum number of calls offered, or reported, at once. */
+    private static final int BATCH_SIZE = CallTransport.MAX_OFFER;
+
+    /* Pause of the background thread when there is nothing to exchange. */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final CallDispatcher dispatcher;
+    private final CallTransport transport;
+    private final int node;
+
+    /* The calls to be offered to the shared backlog. */
+    private final ConcurrentLinkedQueue<Call> outbox = new ConcurrentLinkedQueue<Call>();
+
+    /* The calls of other nodes which have ended here, to be reported. */
+    private final ConcurrentLinkedQueue<RemoteCall> served = new ConcurrentLinkedQueue<RemoteCall>();
+
+    /* The calls offered by this node, and not ended yet, by id (background thread only). */
+    private final Map<Long, Call> shared = new HashMap<Long, Call>();
+    private long sequence;
+
+    /* The offer being sent (background thread only). */
+    private final Call[] batch = new Call[BATCH_SIZE];
+    private final long[] encoded = new long[BATCH_SIZE];
+    private final int[] refused = new int[BATCH_SIZE];
+    private int pending;
+
+    /* The reports being sent, or received (background thread only). */
+    private final long[] reports = new long[2 * BATCH_SIZE];
+    private int reporting;
+    private final long[] received = new long[2 * BATCH_SIZE];
+
+    private final LongAdder offered = new LongAdder();
+    private final LongAdder taken = new LongAdder();
+
+    private final Thread exchanger;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a node, which starts exchanging calls with the shared backlog.
+     * 
+     * @param _dispatcher
+     *            the dispatcher of the node, in an asynchronous mode (not actor)
+     * @param _transport
+     *            the transport to the shared backlog, used by the node only
+     * @throws IllegalArgumentException
+     *             if the dispatcher handles calls on the dispatching thread, or
+     *             in actor mode
+     * @throws IOException
+     *             if the shared backlog cannot be reached
+     */
+    public DispatcherNode(CallDispatcher _dispatcher, CallTransport _transport) throws IOException {
+        ExecutionMode mode = _dispatcher.getConfig().getMode();
+        if (mode != ExecutionMode.ASYNCHRONOUS && mode != ExecutionMode.VIRTUAL_THREADS)
+            throw new IllegalArgumentException("A node needs an asynchronous dispatcher");
+        this.dispatcher = _dispatcher;
+        this.transport = _transport;
+        this.node = _transport.register();
+        this.exchanger = new Thread(this::exchange, "node-exchanger");
+        exchanger.setDaemon(true);
+        exchanger.start();
+    }
+
+    /**
+     * Routes the call to a free employee of the node having at least the call's
+     * rank, or else offers it to the shared backlog.
+     * 
+     * @param call
+     *            the call being dispatched
+     * @return the outcome of the dispatch: ASSIGNED, QUEUED (in the shared
+     *         backlog, or in the node's queues if it requires skills) or INVALID
+     */
+    public DispatchOutcome dispatchCall(Call call) {
+        if (call == null || call.getPriority() >= RANKS || call.getPriority() < 0)
+            return DispatchOutcome.INVALID;
+        if (call.getRequiredSkills() != 0)
+            return dispatcher.dispatchCall(call);
+        if (dispatcher.assignCall(call))
+            return DispatchOutcome.ASSIGNED;
+        outbox.add(call);
+        return DispatchOutcome.QUEUED;
+    }
+
+    /**
+     * Offer the pending calls to the shared backlog, report the calls of other
+     * nodes served here, and take calls for the free employees, until the node is
+     * closed.
+     */
+    private void exchange() {
+        int[] free = new int[RANKS];
+        long[] polled = new long[BATCH_SIZE];
+        List<Call> calls = new ArrayList<Call>();
+        while (running) {
+            try {
+                boolean idle = offer() == 0;
+                idle &= report() == 0;
+                if (!shared.isEmpty())
+                    idle &= receiveReports() == 0;
+
+                int wanted = 0;
+                for (Rank rank : Rank.values())
+                    wanted += free[rank.getValue()] = dispatcher.getFreeEmployees(rank);
+                if (wanted > 0) {
+                    if (polled.length < wanted)
+                        polled = new long[Math.max(wanted, 2 * polled.length)];
+                    int n = transport.poll(free, polled);
+                    for (int i = 0; i < n; i++) {
+                        if (CallBroker.nodeOf(polled[i]) != node) {
+                            calls.add(new RemoteCall(polled[i], served));
+                            continue;
+                        }
+                        // One of ours: serve the original call
+                        Call call = shared.remove(CallBroker.idOf(polled[i]));
+                        if (call != null)
+                            calls.add(call);
+                        else
+                            log.warn("Unknown call taken back: {}", Unbox.box(CallBroker.idOf(polled[i])));
+                    }
+                    if (!calls.isEmpty()) {
+                        dispatcher.dispatchCalls(calls);
+                        taken.add(calls.size());
+                        calls.clear();
+                        idle = false;
+                    }
+                }
+                if (idle && outbox.isEmpty())
+                    LockSupport.parkNanos(IDLE_NANOS);
+            } catch (IOException e) {
+                log.error("Cannot reach the shared backlog", e);
+                LockSupport.parkNanos(IDLE_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Offer a batch of pending calls to the shared backlog (the calls refused wait
+     * in the node's queues), or the last batch again if it couldn't be sent.
+     * 
+     * @return the number of calls of the batch.
+     */
+    private int offer() throws IOException {
+        if (pending == 0) {
+            Call call;
+            while (pending < BATCH_SIZE && (call = outbox.poll()) != null) {
+                long id = (long) node << CallBroker.SEQUENCE_BITS | ++sequence;
+                shared.put(id, call);
+                batch[pending] = call;
+                encoded[pending++] = CallBroker.encode(id, call.getPriority());
+            }
+            if (pending == 0)
+                return 0;
+        }
+        int n = transport.offer(encoded, pending, refused);
+        for (int i = 0; i < n; i++) {
+            shared.remove(CallBroker.idOf(encoded[refused[i]]));
+            dispatcher.dispatchCall(batch[refused[i]]);
+        }
+        offered.add(pending - n);
+        int count = pending;
+        Arrays.fill(batch, 0, pending, null);
+        pending = 0;
+        return count;
+    }
+
+    /**
+     * Report the calls of other nodes which have ended here (sending again the
+     * reports which couldn't be sent, which the other nodes ignore if they got
+     * them).
+     * 
+     * @return the number of calls reported.
+     */
+    private int report() throws IOException {
+        RemoteCall call;
+        while (reporting < BATCH_SIZE && (call = served.poll()) != null) {
+            reports[2 * reporting] = call.report();
+            reports[2 * reporting++ + 1] = call.getDurationNanos();
+        }
+        if (reporting == 0)
+            return 0;
+        transport.report(reports, reporting);
+        int count = reporting;
+        reporting = 0;
+        return count;
+    }
+
+    /**
+     * End the calls of this node which have been served by other nodes (or put
+     * them in the node's queues, if turned down).
+     * 
+     * @return the number of calls reported.
+     */
+    private int receiveReports() throws IOException {
+        int n = transport.pollReports(node, received);
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            Call call = shared.remove(CallBroker.idOf(received[2 * i]));
+            if (call == null)
+                continue; // reported twice
+            int rank = (int) (received[2 * i] & 3);
+            if (rank == CallBroker.REFUSED) {
+                dispatcher.dispatchCall(call);
+            } else {
+                call.setStartTime(now - received[2 * i + 1]);
+                call.disconnect(Rank.values()[rank], now);
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Get the number of this node in the shared backlog.
+     * 
+     * @return the number of the node.
+     */
+    public int getNode() {
+        return node;
+    }
+
+    /**
+     * Get the number of calls this node has put in the shared backlog.
+     * 
+     * @return the number of calls offered.
+     */
+    public long getOffered() {
+        return offered.sum();
+    }
+
+    /**
+     * Get the number of calls this node has taken from the shared backlog.
+     * 
+     * @return the number of calls taken.
+     */
+    public long getTaken() {
+        return taken.sum();
+    }
+
+    /**
+     * Get the dispatcher of this node.
+     * 
+     * @return the dispatcher.
+     */
+    public CallDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * Stop exchanging calls with the shared backlog (the calls not offered yet are
+     * kept by the node, the calls of other nodes served here are reported a last
+     * time) and close the transport. Waits for the background thread even if
+     * interrupted, in which case the interrupt status is restored.
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        boolean interrupted = false;
+        while (exchanger.isAlive()) {
+            try {
+                exchanger.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        try {
+            report();
+            if (pending > 0)
+                offer();
+        } catch (IOException e) {
+            log.error("Cannot reach the shared backlog", e);
+        } finally {
+            for (int i = 0; i < pending; i++)
+                dispatcher.dispatchCall(batch[i]);
+            pending = 0;
+            Call call;
+            while ((call = outbox.poll()) != null)
+                dispatcher.dispatchCall(call);
+            transport.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.transport;
+
+/**
+ * Transport to a broker in the same JVM, e.g. for tests or for nodes sharing a
+ * process.
+ * 
+ * @author pviotti
+ */
+public class LocalTransport implements CallTransport {
+
+    private final CallBroker broker;
+
+    /**
+     * @param _broker
+     *            the broker
+     */
+    public LocalTransport(CallBroker _broker) {
+        this.broker = _broker;
+    }
+
+    @Override
+    public int register() {
+        return broker.register();
+    }
+
+    @Override
+    public int offer(long[] calls, int count, int[] refused) {
+        if (count > MAX_OFFER)
+            throw new IllegalArgumentException("Too many calls: " + count);
+        return broker.offer(calls, 0, count, refused);
+    }
+
+    @Override
+    public int poll(int[] maxCalls, long[] calls) {
+        int taken = 0;
+        for (int rank = 0; rank < maxCalls.length; rank++)
+            if (maxCalls[rank] > 0)
+                taken += broker.poll(rank, maxCalls[rank], calls, taken);
+        return taken;
+    }
+
+    @Override
+    public void report(long[] ended, int count) {
+        broker.report(ended, 0, count);
+    }
+
+    @Override
+    public int pollReports(int node, long[] ended) {
+        return broker.pollReports(node, ended.length / 2, ended);
+    }
+
+    @Override
+    public void close() {
+    }
+}
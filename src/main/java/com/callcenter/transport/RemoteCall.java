@@ -0,0 +1,64 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.transport;
+
+import java.util.Queue;
+
+import com.callcenter.Call;
+
+/**
+ * A call taken from the shared backlog by a node other than the one which
+ * offered it: when it ends, it is queued to be reported to its node.
+ * 
+ * @author pviotti
+ */
+final class RemoteCall extends Call {
+
+    /* The call as encoded by the node which offered it. */
+    private final long token;
+
+    private final Queue<RemoteCall> ended;
+
+    /**
+     * @param _token
+     *            the encoded call
+     * @param _ended
+     *            where to put the call when it ends
+     */
+    RemoteCall(long _token, Queue<RemoteCall> _ended) {
+        super(CallBroker.priorityOf(_token));
+        this.token = _token;
+        this.ended = _ended;
+    }
+
+    @Override
+    protected void ended() {
+        ended.add(this);
+    }
+
+    /**
+     * Get the end of this call, to be reported to the node which offered it.
+     * 
+     * @return the call encoded with the rank of the employee who solved it (or
+     *         {@link CallBroker#REFUSED}).
+     */
+    long report() {
+        return CallBroker.encode(CallBroker.idOf(token),
+                isRejected() ? CallBroker.REFUSED : getHandlerRank().getValue());
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads (Java 21 and later).
+ * 
+ * @author pviotti
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Returns whether virtual threads are available on this JVM.
+     * 
+     * @return true if virtual threads are supported.
+     */
+    static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Get a factory of virtual threads.
+     * 
+     * @param prefix
+     *            the prefix of the names of the threads
+     * @return a factory of virtual threads.
+     */
+    static ThreadFactory newThreadFactory(String prefix) {
+        return Thread.ofVirtual().name(prefix, 1).factory();
+    }
+}
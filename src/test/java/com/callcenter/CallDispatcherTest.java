@@ -18,25 +18,53 @@
 package com.callcenter;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Random;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.junit.Assume;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.callcenter.conversation.ConversationModel;
+import com.callcenter.conversation.UniformConversationModel;
+import com.callcenter.employees.Employee;
+import com.callcenter.employees.Rank;
+import com.callcenter.journal.MappedCallJournal;
+import com.callcenter.messaging.CallMessage;
+import com.callcenter.metrics.MetricsSnapshot;
+import com.callcenter.metrics.UtilizationSnapshot;
+import com.callcenter.selection.AgentSelectionPolicy;
 
 public class CallDispatcherTest {
 
     CallDispatcher instance = null;
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private int NUM_CALLERS = 30;
     private int NUM_THREADS = 6;
     private Random rnd = new Random();
@@ -79,9 +107,9 @@ public class CallDispatcherTest {
 
     @Test
     public void testInvalidCalls() {
-        instance.dispatchCall(null);
-        instance.dispatchCall(new Call(CallDispatcher.RANKS + rnd.nextInt()));
-        instance.dispatchCall(new Call(-1 * rnd.nextInt(50)));
+        assertEquals(DispatchOutcome.INVALID, instance.dispatchCall(null));
+        assertEquals(DispatchOutcome.INVALID, instance.dispatchCall(new Call(CallDispatcher.RANKS + rnd.nextInt(50))));
+        assertEquals(DispatchOutcome.INVALID, instance.dispatchCall(new Call(-1 - rnd.nextInt(50))));
         testNoQueuedCalls();
     }
 
@@ -101,6 +129,81 @@ public class CallDispatcherTest {
         testNoQueuedCalls();
     }
 
+    @Test
+    public void testSynchronousEscalations() {
+        // Every call is escalated up to a director: each escalation must be answered by the
+        // drain loop once the escalating employee is free, not by a nested dispatch
+        final int[] depths = new int[Rank.values().length];
+        instance = new CallDispatcher(4, 4, 4, new DispatcherConfig().setConversationModel(new ConversationModel() {
+            @Override
+            public long handlingTime(Call call, Rank rank, Random rnd) {
+                int depth = Thread.currentThread().getStackTrace().length;
+                assertTrue(depths[rank.getValue()] == 0 || depths[rank.getValue()] == depth);
+                depths[rank.getValue()] = depth;
+                for (int i = 0; i < rank.getValue(); i++)
+                    assertEquals(4, instance.getFreeEmployees(Rank.values()[i]));
+                return 0;
+            }
+
+            @Override
+            public boolean escalates(Call call, Rank rank, Random rnd) {
+                return rnd.nextDouble() < 0.9;
+            }
+        }));
+
+        for (int i = 0; i < 1000; i++) {
+            Call call = new Call();
+            assertEquals(DispatchOutcome.ASSIGNED, instance.dispatchCall(call));
+            assertFalse(call.isActive());
+        }
+        assertTrue(depths[Rank.DIRECTOR.getValue()] > 0);
+        assertEquals(depths[Rank.RESPONDENT.getValue()], depths[Rank.MANAGER.getValue()]);
+        assertEquals(depths[Rank.RESPONDENT.getValue()], depths[Rank.DIRECTOR.getValue()]);
+        testNoQueuedCalls();
+        for (Rank rank : Rank.values())
+            assertEquals(4, instance.getFreeEmployees(rank));
+    }
+
+    @Test
+    public void testCallPool() {
+        CallPool pool = new CallPool(4);
+        Call call = pool.acquire(1);
+        instance.dispatchCall(call);
+        assertFalse(call.isActive());
+        assertTrue(call.getDurationNanos() >= 0);
+        pool.release(call);
+        assertEquals(1, pool.size());
+
+        Call recycled = pool.acquire(2);
+        assertSame(call, recycled);
+        assertTrue(recycled.isActive());
+        assertEquals(2, recycled.getPriority());
+        assertNull(recycled.getHandlerRank());
+        assertFalse(recycled.getCompletion().isDone());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRecycleActiveCall() {
+        new CallPool(4).release(new Call());
+    }
+
+    @Test
+    public void testCallWithoutCompatibleEmployee() {
+        instance = new CallDispatcher(1, 0, 0);
+        Call prioritizedCall = new Call(1);
+        instance.dispatchCall(prioritizedCall);
+        assertTrue(prioritizedCall.isActive());
+        assertArrayEquals(new int[] { 0, 1, 0 }, instance.getQueuesSize());
+
+        // The respondent is still free, but cannot handle the queued call
+        assertNull(instance.getHandler(1));
+        Employee respondent = instance.getHandler(0);
+        assertEquals(Rank.RESPONDENT, respondent.getRank());
+        instance.getNextCall(respondent);
+        assertTrue(respondent.isFree());
+        assertTrue(prioritizedCall.isActive());
+    }
+
     @Test
     public void testConcurrentCalls() {
         ArrayList<Caller> callers = new ArrayList<Caller>();
@@ -125,6 +228,661 @@ public class CallDispatcherTest {
         testNoQueuedCalls();
     }
 
+    @Test
+    public void testAsynchronousCalls() throws Exception {
+        instance = new CallDispatcher(3, 2, 1, ExecutionMode.ASYNCHRONOUS);
+        ArrayList<Call> calls = new ArrayList<Call>();
+        ArrayList<CompletableFuture<Call>> futures = new ArrayList<CompletableFuture<Call>>();
+        for (int i = 0; i < NUM_CALLERS; i++) {
+            Call call = new Call(rnd.nextInt(CallDispatcher.RANKS));
+            calls.add(call);
+            instance.dispatchCall(call);
+            futures.add(call.getCompletion());
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        for (int i = 0; i < NUM_CALLERS; i++) {
+            assertSame(calls.get(i), futures.get(i).get());
+            assertFalse(calls.get(i).isActive());
+            assertTrue(calls.get(i).getHandlerRank().getValue() >= calls.get(i).getPriority());
+        }
+        testNoQueuedCalls();
+        instance.shutdown();
+    }
+
+    @Test
+    public void testActorCalls() throws Exception {
+        instance = new CallDispatcher(3, 2, 1, new DispatcherConfig().setMode(ExecutionMode.ACTOR).setMailboxCapacity(2));
+        ArrayList<CompletableFuture<Call>> futures = new ArrayList<CompletableFuture<Call>>();
+        for (int i = 0; i < NUM_CALLERS; i++) {
+            Call call = new Call(rnd.nextInt(CallDispatcher.RANKS));
+            // Calls that find every mailbox full are queued
+            DispatchOutcome outcome = instance.dispatchCall(call);
+            assertTrue(outcome == DispatchOutcome.ASSIGNED || outcome == DispatchOutcome.QUEUED);
+            futures.add(call.getCompletion());
+        }
+
+        for (CompletableFuture<Call> future : futures) {
+            Call call = future.get(30, TimeUnit.SECONDS);
+            assertTrue(call.getHandlerRank().getValue() >= call.getPriority());
+        }
+        testNoQueuedCalls();
+        instance.shutdown();
+    }
+
+    @Test
+    public void testActorEscalationsWithFullMailboxes() throws Exception {
+        // Every call is escalated up to the director, whose mailbox is always full
+        instance = new CallDispatcher(1, 1, 1, new DispatcherConfig().setMode(ExecutionMode.ACTOR)
+                .setMailboxCapacity(1).setConversationModel(new UniformConversationModel(2, TimeUnit.MILLISECONDS, 1)));
+        ArrayList<CompletableFuture<Call>> futures = new ArrayList<CompletableFuture<Call>>();
+        int queued = 0;
+        for (int i = 0; i < 50; i++) {
+            Call call = new Call(0);
+            DispatchOutcome outcome = instance.dispatchCall(call);
+            assertNotEquals(DispatchOutcome.REJECTED, outcome);
+            if (outcome == DispatchOutcome.QUEUED)
+                queued++;
+            futures.add(call.getCompletion());
+        }
+        assertTrue(queued > 0);
+
+        for (CompletableFuture<Call> future : futures)
+            assertEquals(Rank.DIRECTOR, future.get(30, TimeUnit.SECONDS).getHandlerRank());
+        testNoQueuedCalls();
+        instance.shutdown();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testVirtualThreadsUnsupported() {
+        Assume.assumeFalse(VirtualThreads.isSupported());
+        new CallDispatcher(3, 2, 1, ExecutionMode.VIRTUAL_THREADS);
+    }
+
+    @Test
+    public void testBatchCalls() {
+        instance = new CallDispatcher(2, 1, 1, new DispatcherConfig().setQueueCapacity(4)
+                .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0)));
+        Employee[] busy = { instance.getHandler(0), instance.getHandler(1) };
+
+        // One respondent and one director free
+        ArrayList<Call> batch = new ArrayList<Call>();
+        batch.add(new Call(2));
+        batch.add(null);
+        batch.add(new Call(0));
+        for (int i = 0; i < 6; i++)
+            batch.add(new Call(1));
+        DispatchOutcome[] outcomes = instance.dispatchCalls(batch);
+
+        assertEquals(DispatchOutcome.ASSIGNED, outcomes[0]);
+        assertEquals(DispatchOutcome.INVALID, outcomes[1]);
+        assertEquals(DispatchOutcome.ASSIGNED, outcomes[2]);
+        int queued = 0, rejected = 0;
+        for (int i = 3; i < outcomes.length; i++)
+            if (outcomes[i] == DispatchOutcome.QUEUED)
+                queued++;
+            else if (outcomes[i] == DispatchOutcome.REJECTED)
+                rejected++;
+        assertEquals(4, queued);
+        assertEquals(2, rejected);
+
+        for (Employee emp : busy)
+            instance.getNextCall(emp);
+        for (int i = 0; i < batch.size(); i++)
+            if (outcomes[i] == DispatchOutcome.ASSIGNED || outcomes[i] == DispatchOutcome.QUEUED) {
+                assertFalse(batch.get(i).isActive());
+                assertTrue(batch.get(i).getHandlerRank().getValue() >= batch.get(i).getPriority());
+            }
+        testNoQueuedCalls();
+    }
+
+    @Test
+    public void testBatchAsynchronousCalls() throws Exception {
+        instance = new CallDispatcher(3, 2, 1, ExecutionMode.ASYNCHRONOUS);
+        ArrayList<Call> batch = new ArrayList<Call>();
+        for (int i = 0; i < NUM_CALLERS; i++)
+            batch.add(new Call(rnd.nextInt(CallDispatcher.RANKS)));
+        instance.dispatchCalls(batch);
+
+        for (Call call : batch) {
+            call.getCompletion().get(30, TimeUnit.SECONDS);
+            assertTrue(call.getHandlerRank().getValue() >= call.getPriority());
+        }
+        testNoQueuedCalls();
+        instance.shutdown();
+    }
+
+    @Test
+    public void testBatchOfLowPriorityCalls() {
+        ArrayList<Call> batch = new ArrayList<Call>();
+        for (int i = 0; i < 3; i++)
+            batch.add(new Call(0));
+        DispatchOutcome[] outcomes = instance.dispatchCalls(batch);
+
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(DispatchOutcome.ASSIGNED, outcomes[i]);
+            assertFalse(batch.get(i).isActive());
+        }
+        testNoQueuedCalls();
+    }
+
+    @Test
+    public void testAgentSelectionPolicies() {
+        // One call at a time: the employee who just got free takes every call
+        UtilizationSnapshot utilization = runSequentialCalls(AgentSelectionPolicy.LAST_FREED);
+        assertEquals(50, utilization.getHandledCalls(4));
+        assertTrue(utilization.getCoefficientOfVariation() > 1);
+
+        for (AgentSelectionPolicy policy : new AgentSelectionPolicy[] { AgentSelectionPolicy.LEAST_RECENTLY_BUSY,
+                AgentSelectionPolicy.ROUND_ROBIN }) {
+            utilization = runSequentialCalls(policy);
+            for (int i = 0; i < utilization.getEmployees(); i++)
+                assertEquals(10, utilization.getHandledCalls(i));
+            assertTrue(utilization.toString(), utilization.getCoefficientOfVariation() < 0.5);
+        }
+
+        utilization = runSequentialCalls(AgentSelectionPolicy.POWER_OF_TWO_CHOICES);
+        assertTrue(utilization.toString(), utilization.getMin() > 0);
+    }
+
+    private UtilizationSnapshot runSequentialCalls(AgentSelectionPolicy policy) {
+        instance = new CallDispatcher(5, 0, 0,
+                new DispatcherConfig().setAgentSelectionPolicy(policy)
+                        .setConversationModel(new UniformConversationModel(5, TimeUnit.MILLISECONDS, 0)));
+        for (int i = 0; i < 50; i++)
+            assertEquals(DispatchOutcome.ASSIGNED, instance.dispatchCall(new Call(0)));
+        return instance.getUtilization(Rank.RESPONDENT);
+    }
+
+    @Test
+    public void testStripedCalls() throws Exception {
+        instance = new CallDispatcher(8, 4, 2, new DispatcherConfig().setMode(ExecutionMode.ASYNCHRONOUS).setStripes(4));
+        final ArrayList<Call> calls = new ArrayList<Call>();
+        for (int i = 0; i < NUM_THREADS * NUM_CALLERS; i++)
+            calls.add(new Call(rnd.nextInt(CallDispatcher.RANKS)));
+
+        ExecutorService ex = Executors.newFixedThreadPool(NUM_THREADS);
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < NUM_THREADS; t++) {
+            final int from = t * NUM_CALLERS;
+            futures.add(ex.submit(() -> instance.dispatchCalls(calls.subList(from, from + NUM_CALLERS / 2))));
+            futures.add(ex.submit(() -> {
+                for (Call call : calls.subList(from + NUM_CALLERS / 2, from + NUM_CALLERS))
+                    instance.dispatchCall(call);
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        ex.shutdown();
+
+        for (Call call : calls) {
+            call.getCompletion().get(30, TimeUnit.SECONDS);
+            assertTrue(call.getHandlerRank().getValue() >= call.getPriority());
+        }
+        testNoQueuedCalls();
+        instance.shutdown();
+    }
+
+    @Test
+    public void testWorkStealing() {
+        instance = new CallDispatcher(2, 2, 2, new DispatcherConfig().setStripes(2)
+                .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0)));
+        ArrayList<Employee> employees = new ArrayList<Employee>();
+        Employee emp;
+        while ((emp = instance.getHandler(0)) != null)
+            employees.add(emp);
+        assertEquals(6, employees.size());
+
+        // The calls are queued in the stripe of this thread
+        Call[] calls = { new Call(2), new Call(1), new Call(0) };
+        for (Call call : calls)
+            assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(call));
+
+        // A director of the other stripe steals them
+        for (Employee e : employees)
+            if (e.getRank() == Rank.DIRECTOR && e.getStripe() != instance.currentStripe()) {
+                instance.getNextCall(e);
+                break;
+            }
+        for (Call call : calls) {
+            assertFalse(call.isActive());
+            assertEquals(Rank.DIRECTOR, call.getHandlerRank());
+        }
+        testNoQueuedCalls();
+    }
+
+    @Test
+    public void testEarliestDeadlineFirst() {
+        assertArrayEquals(new int[] { 2, 1, 0 }, serveQueuedCalls(new DispatcherConfig()));
+        // A call of a lower priority is served first once it has waited long enough
+        assertArrayEquals(new int[] { 0, 2, 1 }, serveQueuedCalls(new DispatcherConfig()
+                .setServiceLevels(TimeUnit.MILLISECONDS, 0, 3600000, 60000)));
+
+        MetricsSnapshot snapshot = instance.getMetrics().snapshot();
+        assertEquals(1, snapshot.getDeadlineMisses(Rank.RESPONDENT));
+        assertEquals(0, snapshot.getDeadlineMisses(Rank.DIRECTOR));
+        assertEquals(1, snapshot.getWaitTimes(Rank.MANAGER).getCount());
+    }
+
+    /**
+     * Queue calls of priority 0, 2 and 1 while all employees are busy, then let the
+     * director serve them.
+     * 
+     * @return the priorities of the calls, in the order they have been served
+     */
+    private int[] serveQueuedCalls(DispatcherConfig config) {
+        final ArrayList<Integer> served = new ArrayList<Integer>();
+        instance = new CallDispatcher(1, 1, 1,
+                config.setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0))
+                        .setMessageSink((call, message, argument) -> {
+                            if (message == CallMessage.GREETING_DIRECTOR)
+                                served.add(call.getPriority());
+                        }));
+        Employee director = instance.getHandler(2);
+        claimAll();
+        for (int priority : new int[] { 0, 2, 1 })
+            assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(new Call(priority)));
+
+        instance.getNextCall(director);
+        int[] order = new int[served.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = served.get(i);
+        return order;
+    }
+
+    @Test
+    public void testSkillBasedRouting() {
+        final long french = 1 << 0, spanish = 1 << 1;
+        instance = new CallDispatcher(2, 1, 1,
+                new DispatcherConfig().setSkills(Rank.RESPONDENT, french, french | spanish)
+                        .setSkills(Rank.DIRECTOR, spanish)
+                        .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0)));
+        Employee respondent = instance.getHandler(0);
+        assertEquals(Rank.RESPONDENT, respondent.getRank());
+        assertEquals(Rank.RESPONDENT, instance.getHandler(0).getRank());
+
+        // The manager is free, but doesn't speak French
+        Call frenchCall = new Call(0, french);
+        assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(frenchCall));
+        assertArrayEquals(new int[] { 1, 0, 0 }, instance.getQueuesSize());
+
+        // The director speaks Spanish
+        Call spanishCall = new Call(0, spanish);
+        assertEquals(DispatchOutcome.ASSIGNED, instance.dispatchCall(spanishCall));
+        assertEquals(Rank.DIRECTOR, spanishCall.getHandlerRank());
+
+        // Nobody speaks both languages at the manager level or above
+        Call bilingualCall = new Call(1, french | spanish);
+        assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(bilingualCall));
+
+        instance.getNextCall(respondent);
+        assertFalse(frenchCall.isActive());
+        assertEquals(Rank.RESPONDENT, frenchCall.getHandlerRank());
+        assertTrue(bilingualCall.isActive());
+        assertArrayEquals(new int[] { 0, 1, 0 }, instance.getQueuesSize());
+    }
+
+    @Test
+    public void testQueuedSkilledCalls() {
+        final long french = 1 << 0, spanish = 1 << 1;
+        instance = new CallDispatcher(2, 0, 0, new DispatcherConfig().setSkills(Rank.RESPONDENT, french, spanish)
+                .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0)));
+        Employee first = instance.getHandler(0), second = instance.getHandler(0);
+        Employee spanishSpeaker = first.getSkills() == spanish ? first : second;
+        Employee frenchSpeaker = first.getSkills() == spanish ? second : first;
+
+        Call call = new Call(0, french);
+        assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(call));
+        instance.getNextCall(spanishSpeaker);
+        assertTrue(call.isActive());
+        assertTrue(spanishSpeaker.isFree());
+
+        instance.getNextCall(frenchSpeaker);
+        assertFalse(call.isActive());
+        testNoQueuedCalls();
+    }
+
+    @Test
+    public void testRecoverFromJournal() throws Exception {
+        Path directory = folder.newFolder("journal").toPath();
+        DispatcherConfig config = new DispatcherConfig()
+                .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0));
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            instance = new CallDispatcher(1, 1, 1, config.setJournal(journal));
+            instance.dispatchCall(new Call(1));
+            claimAll();
+            for (int priority = 0; priority < CallDispatcher.RANKS; priority++)
+                instance.dispatchCall(new Call(priority));
+            assertArrayEquals(new int[] { 1, 1, 1 }, instance.getQueuesSize());
+            // The call center stops with all the employees busy
+        }
+
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            instance = new CallDispatcher(1, 1, 1, config.setJournal(journal));
+            assertEquals(3, instance.getRecoveredCalls().size());
+            assertArrayEquals(new int[] { 1, 1, 1 }, instance.getQueuesSize());
+
+            Call call = new Call();
+            instance.dispatchCall(call);
+            assertFalse(call.isActive());
+            for (Call recovered : instance.getRecoveredCalls())
+                assertFalse(recovered.isActive());
+            testNoQueuedCalls();
+        }
+
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            assertTrue(journal.recover().isEmpty());
+        }
+    }
+
+    @Test
+    public void testRejectWhenFull() throws Exception {
+        instance = new CallDispatcher(1, 1, 1, new DispatcherConfig().setQueueCapacity(2));
+        claimAll();
+
+        Call[] calls = new Call[3];
+        for (int i = 0; i < calls.length; i++)
+            calls[i] = new Call();
+        assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(calls[0]));
+        assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(calls[1]));
+        assertEquals(DispatchOutcome.REJECTED, instance.dispatchCall(calls[2]));
+        assertTrue(calls[2].isRejected());
+        assertFalse(calls[2].isActive());
+        assertEquals(1, instance.getMetrics().snapshot().getRejected(Rank.RESPONDENT));
+        assertArrayEquals(new int[] { 2, 0, 0 }, instance.getQueuesSize());
+        try {
+            calls[2].getCompletion().get();
+            fail("The future of a rejected call must fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void testDropOldestWhenFull() {
+        instance = new CallDispatcher(1, 1, 1,
+                new DispatcherConfig().setQueueCapacity(2).setOverflowPolicy(OverflowPolicy.DROP_OLDEST));
+        claimAll();
+
+        Call[] calls = new Call[3];
+        for (int i = 0; i < calls.length; i++) {
+            calls[i] = new Call();
+            assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(calls[i]));
+        }
+        assertTrue(calls[0].isRejected());
+        assertFalse(calls[1].isRejected());
+        assertFalse(calls[2].isRejected());
+        assertArrayEquals(new int[] { 2, 0, 0 }, instance.getQueuesSize());
+        MetricsSnapshot snapshot = instance.getMetrics().snapshot();
+        assertEquals(1, snapshot.getDropped(Rank.RESPONDENT));
+        assertEquals(0, snapshot.getRejected(Rank.RESPONDENT));
+        assertEquals(2, snapshot.getQueueDepth(Rank.RESPONDENT));
+    }
+
+    @Test
+    public void testQueueCapacitySharedBySkills() {
+        instance = new CallDispatcher(1, 1, 1, new DispatcherConfig().setQueueCapacity(4));
+        claimAll();
+
+        // The calls requiring different skills wait in different queues, within the same capacity
+        for (int i = 0; i < 8; i++)
+            assertEquals(i < 4 ? DispatchOutcome.QUEUED : DispatchOutcome.REJECTED,
+                    instance.dispatchCall(new Call(0, 1L << (i % 4))));
+        assertArrayEquals(new int[] { 4, 0, 0 }, instance.getQueuesSize());
+    }
+
+    @Test
+    public void testDropOldestAmongSkills() {
+        instance = new CallDispatcher(1, 1, 1,
+                new DispatcherConfig().setQueueCapacity(2).setOverflowPolicy(OverflowPolicy.DROP_OLDEST));
+        claimAll();
+
+        Call[] calls = { new Call(0, 0b01), new Call(0, 0b10), new Call(0, 0b10) };
+        for (Call call : calls)
+            assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(call));
+        assertTrue(calls[0].isRejected());
+        assertFalse(calls[1].isRejected());
+        assertFalse(calls[2].isRejected());
+        assertArrayEquals(new int[] { 2, 0, 0 }, instance.getQueuesSize());
+    }
+
+    @Test
+    public void testSpillWhenFull() {
+        instance = new CallDispatcher(1, 1, 1,
+                new DispatcherConfig().setQueueCapacity(2).setOverflowPolicy(OverflowPolicy.SPILL));
+        claimAll();
+
+        DispatchOutcome[] expected = { DispatchOutcome.QUEUED, DispatchOutcome.QUEUED, DispatchOutcome.SPILLED,
+                DispatchOutcome.SPILLED, DispatchOutcome.SPILLED, DispatchOutcome.SPILLED, DispatchOutcome.REJECTED };
+        for (DispatchOutcome outcome : expected)
+            assertEquals(outcome, instance.dispatchCall(new Call()));
+        assertArrayEquals(new int[] { 2, 2, 2 }, instance.getQueuesSize());
+    }
+
+    @Test
+    public void testDrainLargeBacklog() {
+        final int backlog = 1000000;
+        instance = new CallDispatcher(1, 1, 1, new DispatcherConfig()
+                .setQueueCapacity(backlog)
+                .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0.5))
+                .setMessageSink((call, message, argument) -> {
+                }));
+
+        // Keep all employees busy while the backlog builds up
+        Employee[] employees = new Employee[CallDispatcher.RANKS];
+        for (int i = CallDispatcher.RANKS - 1; i >= 0; i--)
+            employees[i] = instance.getHandler(i);
+
+        Call[] calls = new Call[backlog];
+        for (int i = 0; i < backlog; i++) {
+            calls[i] = new Call(rnd.nextInt(CallDispatcher.RANKS));
+            instance.dispatchCall(calls[i]);
+        }
+        int[] queuesSize = instance.getQueuesSize();
+        assertEquals(backlog, queuesSize[0] + queuesSize[1] + queuesSize[2]);
+
+        for (Employee emp : employees)
+            instance.getNextCall(emp);
+
+        for (Call call : calls) {
+            assertFalse(call.isActive());
+            assertTrue(call.getHandlerRank().getValue() >= call.getPriority());
+        }
+        testNoQueuedCalls();
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        instance = new CallDispatcher(1, 1, 1, ExecutionMode.ASYNCHRONOUS);
+        ArrayList<CompletableFuture<Call>> futures = new ArrayList<CompletableFuture<Call>>();
+        for (int i = 0; i < NUM_CALLERS; i++) {
+            Call call = new Call();
+            instance.dispatchCall(call);
+            futures.add(call.getCompletion());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+
+        MetricsSnapshot snapshot = instance.getMetrics().snapshot();
+        long completed = 0, handled = 0;
+        for (Rank rank : Rank.values()) {
+            completed += snapshot.getCompleted(rank);
+            handled += snapshot.getHandleTimes(rank).getCount();
+            assertEquals(0, snapshot.getQueueDepth(rank));
+        }
+        assertEquals(NUM_CALLERS, completed);
+        assertEquals(NUM_CALLERS, snapshot.getDispatched(Rank.RESPONDENT));
+        assertEquals(snapshot.getEscalated(Rank.RESPONDENT), snapshot.getDispatched(Rank.MANAGER));
+        assertEquals(snapshot.getEscalated(Rank.MANAGER), snapshot.getDispatched(Rank.DIRECTOR));
+        assertEquals(completed + snapshot.getEscalated(Rank.RESPONDENT) + snapshot.getEscalated(Rank.MANAGER), handled);
+        // Every call has been either served immediately or taken out of the queue once
+        assertTrue(snapshot.getQueued(Rank.RESPONDENT) > 0);
+        assertEquals(NUM_CALLERS, snapshot.getWaitTimes(Rank.RESPONDENT).getCount());
+        instance.shutdown();
+    }
+
+    @Test
+    public void testNoDoubleBooking() throws Exception {
+        final ConcurrentHashMap<Employee, AtomicInteger> activeClaims = new ConcurrentHashMap<Employee, AtomicInteger>();
+        final AtomicInteger doubleBookings = new AtomicInteger();
+
+        ExecutorService ex = Executors.newFixedThreadPool(NUM_THREADS);
+        ArrayList<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < NUM_THREADS; t++)
+            futures.add(ex.submit(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        Employee emp = instance.getHandler(ThreadLocalRandom.current().nextInt(CallDispatcher.RANKS));
+                        if (emp == null)
+                            continue;
+                        AtomicInteger claims = activeClaims.computeIfAbsent(emp, e -> new AtomicInteger());
+                        if (claims.incrementAndGet() != 1)
+                            doubleBookings.incrementAndGet();
+                        claims.decrementAndGet();
+                        instance.getNextCall(emp);
+                    }
+                }
+            }));
+        for (Future<?> future : futures)
+            future.get();
+        ex.shutdown();
+
+        assertEquals(0, doubleBookings.get());
+        for (Employee emp : activeClaims.keySet())
+            assertTrue(emp.isFree());
+        testNoQueuedCalls();
+    }
+
+    @Test
+    public void testAddEmployee() {
+        instance = new CallDispatcher(0, 0, 0, new DispatcherConfig()
+                .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0)));
+        Call call = new Call(), urgent = new Call(1);
+        assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(call));
+        assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(urgent));
+
+        // A new employee starts with the queued calls it can handle
+        Employee respondent = instance.addEmployee(Rank.RESPONDENT);
+        assertFalse(call.isActive());
+        assertTrue(urgent.isActive());
+        Employee manager = instance.addEmployee(Rank.MANAGER, 0b1);
+        assertFalse(urgent.isActive());
+        assertEquals(0b1, manager.getSkills());
+        testNoQueuedCalls();
+
+        assertEquals(Arrays.asList(respondent), instance.getEmployees(Rank.RESPONDENT));
+        assertEquals(Arrays.asList(manager), instance.getEmployees(Rank.MANAGER));
+        assertTrue(respondent.isFree());
+    }
+
+    @Test
+    public void testRemoveFreeEmployee() throws Exception {
+        Employee respondent = instance.getEmployees(Rank.RESPONDENT).get(0);
+        CompletableFuture<Employee> departure = instance.removeEmployee(respondent);
+        assertSame(respondent, departure.get(0, TimeUnit.SECONDS));
+        assertEquals(2, instance.getEmployees(Rank.RESPONDENT).size());
+        assertFalse(instance.getEmployees(Rank.RESPONDENT).contains(respondent));
+
+        // The other employees keep taking calls, the removed one doesn't
+        for (int i = 0; i < 2; i++)
+            assertTrue(instance.getHandler(0).getRank() == Rank.RESPONDENT);
+        assertTrue(instance.getHandler(0).getRank() == Rank.MANAGER);
+        assertFalse(respondent.isFree());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRemoveUnknownEmployee() {
+        instance.removeEmployee(new CallDispatcher(1, 0, 0).getEmployees(Rank.RESPONDENT).get(0));
+    }
+
+    @Test
+    public void testRemoveBusyEmployee() throws Exception {
+        instance = new CallDispatcher(1, 0, 0, new DispatcherConfig().setMode(ExecutionMode.ASYNCHRONOUS)
+                .setConversationModel(new UniformConversationModel(200, TimeUnit.MILLISECONDS, 0)));
+        Call first = new Call(), second = new Call();
+        instance.dispatchCall(first);
+        assertEquals(DispatchOutcome.QUEUED, instance.dispatchCall(second));
+
+        // The employee finishes its call, but leaves the queued one
+        Employee respondent = instance.getEmployees(Rank.RESPONDENT).get(0);
+        CompletableFuture<Employee> departure = instance.removeEmployee(respondent);
+        assertSame(departure, instance.removeEmployee(respondent));
+        departure.get(5, TimeUnit.SECONDS);
+        assertFalse(first.isActive());
+        assertTrue(second.isActive());
+        assertTrue(instance.getEmployees(Rank.RESPONDENT).isEmpty());
+
+        instance.addEmployee(Rank.RESPONDENT);
+        second.getCompletion().get(5, TimeUnit.SECONDS);
+        testNoQueuedCalls();
+        instance.shutdown();
+    }
+
+    @Test
+    public void testRemoveActor() throws Exception {
+        instance = new CallDispatcher(2, 0, 0, new DispatcherConfig().setMode(ExecutionMode.ACTOR)
+                .setConversationModel(new UniformConversationModel(20, TimeUnit.MILLISECONDS, 0)));
+        ArrayList<CompletableFuture<Call>> futures = new ArrayList<CompletableFuture<Call>>();
+        for (int i = 0; i < 10; i++) {
+            Call call = new Call();
+            instance.dispatchCall(call);
+            futures.add(call.getCompletion());
+        }
+
+        // The calls in the mailbox of the leaving employee are handled before it leaves
+        instance.removeEmployee(instance.getEmployees(Rank.RESPONDENT).get(0)).get(5, TimeUnit.SECONDS);
+        Employee newcomer = instance.addEmployee(Rank.RESPONDENT);
+        for (int i = 0; i < 10; i++) {
+            Call call = new Call();
+            instance.dispatchCall(call);
+            futures.add(call.getCompletion());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertEquals(2, instance.getEmployees(Rank.RESPONDENT).size());
+        assertTrue(instance.getEmployees(Rank.RESPONDENT).contains(newcomer));
+        testNoQueuedCalls();
+        instance.shutdown();
+    }
+
+    @Test
+    public void testRosterChangesWhileDispatching() throws Exception {
+        instance = new CallDispatcher(4, 2, 1, new DispatcherConfig().setMode(ExecutionMode.ASYNCHRONOUS)
+                .setStripes(2).setConversationModel(new UniformConversationModel(2, TimeUnit.MILLISECONDS, 0.2)));
+        ExecutorService ex = Executors.newFixedThreadPool(NUM_THREADS);
+        ArrayList<Future<ArrayList<CompletableFuture<Call>>>> callers = new ArrayList<Future<ArrayList<CompletableFuture<Call>>>>();
+        for (int t = 0; t < NUM_THREADS; t++)
+            callers.add(ex.submit(() -> {
+                ArrayList<CompletableFuture<Call>> futures = new ArrayList<CompletableFuture<Call>>();
+                for (int i = 0; i < 200; i++) {
+                    Call call = new Call(ThreadLocalRandom.current().nextInt(CallDispatcher.RANKS));
+                    instance.dispatchCall(call);
+                    futures.add(call.getCompletion());
+                }
+                return futures;
+            }));
+
+        // Meanwhile, replace the respondents and the managers
+        for (int i = 0; i < 20; i++) {
+            Rank rank = i % 2 == 0 ? Rank.RESPONDENT : Rank.MANAGER;
+            instance.addEmployee(rank);
+            instance.removeEmployee(instance.getEmployees(rank).get(0)).get(10, TimeUnit.SECONDS);
+        }
+
+        for (Future<ArrayList<CompletableFuture<Call>>> caller : callers)
+            for (CompletableFuture<Call> future : caller.get())
+                assertFalse(future.get(30, TimeUnit.SECONDS).isActive());
+        ex.shutdown();
+        assertEquals(4, instance.getEmployees(Rank.RESPONDENT).size());
+        assertEquals(2, instance.getEmployees(Rank.MANAGER).size());
+        testNoQueuedCalls();
+        instance.shutdown();
+    }
+
+    private void claimAll() {
+        while (instance.getHandler(0) != null)
+            ;
+    }
+
     private void testNoQueuedCalls() {
         int[] expQueuesSize = new int[CallDispatcher.RANKS];
         Arrays.fill(expQueuesSize, 0);
@@ -0,0 +1,126 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Test;
+
+public class RingQueueTest {
+
+    @Test
+    public void testBounded() {
+        RingQueue<Integer> queue = new RingQueue<Integer>(3);
+        assertEquals(4, queue.capacity());
+        for (int i = 0; i < 4; i++)
+            assertTrue(queue.offer(i));
+        assertFalse(queue.offer(4));
+        assertEquals(4, queue.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Integer.valueOf(i), queue.peek());
+            assertEquals(Integer.valueOf(i), queue.poll());
+        }
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    public void testOfferAll() {
+        RingQueue<Integer> queue = new RingQueue<Integer>(4);
+        assertTrue(queue.offer(-1));
+        assertTrue(queue.offer(0));
+        assertEquals(Integer.valueOf(-1), queue.poll());
+
+        Integer[] run = { 1, 2, 3, 4, 5 };
+        assertEquals(3, queue.offerAll(run, 0, 5));
+        assertEquals(0, queue.offerAll(run, 3, 5));
+        for (int i = 0; i < 4; i++)
+            assertEquals(Integer.valueOf(i), queue.poll());
+        assertEquals(2, queue.offerAll(run, 3, 5));
+        assertEquals(Integer.valueOf(4), queue.poll());
+        assertEquals(Integer.valueOf(5), queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testMinimalCapacity() {
+        RingQueue<Integer> queue = new RingQueue<Integer>(1);
+        assertEquals(2, queue.capacity());
+        assertTrue(queue.offer(0));
+        assertTrue(queue.offer(1));
+        assertFalse(queue.offer(2));
+        assertEquals(Integer.valueOf(0), queue.poll());
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws Exception {
+        final int threads = 4, elements = 200000;
+        final RingQueue<Long> queue = new RingQueue<Long>(1024);
+        final AtomicLong sum = new AtomicLong();
+        final LongAdder consumed = new LongAdder();
+
+        ArrayList<Thread> all = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            if (t % 2 == 0)
+                all.add(new Thread(() -> {
+                    for (long i = 1; i <= elements; i++)
+                        while (!queue.offer(i))
+                            Thread.yield();
+                }));
+            else
+                // Offer runs of elements at once
+                all.add(new Thread(() -> {
+                    Long[] run = new Long[elements];
+                    for (int i = 0; i < elements; i++)
+                        run[i] = i + 1L;
+                    for (int from = 0; from < elements;) {
+                        int added = queue.offerAll(run, from, Math.min(from + 16, elements));
+                        if (added == 0)
+                            Thread.yield();
+                        from += added;
+                    }
+                }));
+            all.add(new Thread(() -> {
+                while (consumed.sum() < (long) threads * elements) {
+                    Long e = queue.poll();
+                    if (e == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    sum.addAndGet(e);
+                    consumed.increment();
+                }
+            }));
+        }
+        for (Thread t : all)
+            t.start();
+        for (Thread t : all)
+            t.join();
+
+        assertEquals((long) threads * elements * (elements + 1) / 2, sum.get());
+        assertTrue(queue.isEmpty());
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.Test;
+
+public class SkillIndexTest {
+
+    @Test
+    public void testSortedBySkillCount() {
+        SkillIndex<ArrayList<String>> index = new SkillIndex<ArrayList<String>>(ArrayList::new);
+        ArrayList<String> both = index.get(0b11);
+        index.get(0b100);
+        index.get(0);
+        assertSame(both, index.get(0b11));
+
+        long[] skills = new long[index.entries().length];
+        for (int i = 0; i < skills.length; i++)
+            skills[i] = index.entries()[i].skills;
+        assertArrayEquals(new long[] { 0, 0b100, 0b11 }, skills);
+    }
+
+    @Test
+    public void testCovers() {
+        assertTrue(SkillIndex.covers(0b11, 0));
+        assertTrue(SkillIndex.covers(0b11, 0b10));
+        assertTrue(SkillIndex.covers(0b11, 0b11));
+        assertFalse(SkillIndex.covers(0b01, 0b11));
+        assertFalse(SkillIndex.covers(0, 0b1));
+    }
+}
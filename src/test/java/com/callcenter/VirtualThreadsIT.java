@@ -0,0 +1,98 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.callcenter.conversation.UniformConversationModel;
+import com.callcenter.employees.Rank;
+import com.callcenter.messaging.MessageSink;
+
+/**
+ * Tests of the virtual threads mode, run against the multi-release jar (the
+ * Java 21 classes aren't visible from the class directories) by the failsafe
+ * plugin of the java21 profile.
+ */
+public class VirtualThreadsIT {
+
+    private CallDispatcher instance;
+
+    @BeforeClass
+    public static void checkSupport() {
+        assertTrue("The multi-release jar must provide virtual threads", VirtualThreads.isSupported());
+    }
+
+    @After
+    public void shutdown() {
+        if (instance != null)
+            instance.shutdown();
+    }
+
+    @Test
+    public void testVirtualThreadCalls() throws Exception {
+        Random rnd = new Random();
+        instance = new CallDispatcher(3, 2, 1, new DispatcherConfig().setMode(ExecutionMode.VIRTUAL_THREADS)
+                .setMessageSink(MessageSink.SILENT));
+        ArrayList<CompletableFuture<Call>> futures = new ArrayList<CompletableFuture<Call>>();
+        for (int i = 0; i < 30; i++) {
+            Call call = new Call(rnd.nextInt(CallDispatcher.RANKS));
+            instance.dispatchCall(call);
+            futures.add(call.getCompletion());
+        }
+
+        for (CompletableFuture<Call> future : futures) {
+            Call call = future.get(30, TimeUnit.SECONDS);
+            assertTrue(call.getHandlerRank().getValue() >= call.getPriority());
+        }
+        assertEquals(0, instance.getQueuesSize()[0] + instance.getQueuesSize()[1] + instance.getQueuesSize()[2]);
+    }
+
+    @Test
+    public void testManyConcurrentConversations() throws Exception {
+        // Far more employees talking at once than a platform thread each would allow
+        final int employees = 20_000, callsPerEmployee = 5;
+        instance = new CallDispatcher(employees, 0, 0,
+                new DispatcherConfig().setMode(ExecutionMode.VIRTUAL_THREADS).setMessageSink(MessageSink.SILENT)
+                        .setQueueCapacity(employees * callsPerEmployee)
+                        .setConversationModel(new UniformConversationModel(20, TimeUnit.MILLISECONDS, 0)));
+
+        long start = System.nanoTime();
+        ArrayList<CompletableFuture<Call>> futures = new ArrayList<CompletableFuture<Call>>();
+        for (int i = 0; i < employees * callsPerEmployee; i++) {
+            Call call = new Call();
+            assertTrue(instance.dispatchCall(call) != DispatchOutcome.REJECTED);
+            futures.add(call.getCompletion());
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(60, TimeUnit.SECONDS);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        // About 5 conversations of 10 ms on average per employee, all the employees at once
+        assertTrue("Took " + elapsed + "ms", elapsed < 10_000);
+        assertEquals(employees * callsPerEmployee, instance.getMetrics().snapshot().getCompleted(Rank.RESPONDENT));
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.conversation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.callcenter.employees.Rank;
+
+public class ConversationModelTest {
+
+    private static final int SAMPLES = 100000;
+    private Random rnd = new Random(42);
+
+    @Test
+    public void testUniform() {
+        ConversationModel model = new UniformConversationModel(10, TimeUnit.MILLISECONDS, 0);
+        for (int i = 0; i < SAMPLES; i++) {
+            long time = model.handlingTime(null, Rank.RESPONDENT, rnd);
+            assertTrue(time >= 0 && time < TimeUnit.MILLISECONDS.toNanos(10));
+            assertFalse(model.escalates(null, Rank.RESPONDENT, rnd));
+        }
+        assertEquals(0, new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0).handlingTime(null, Rank.MANAGER, rnd));
+    }
+
+    @Test
+    public void testExponential() {
+        ConversationModel model = new ExponentialConversationModel(new double[] { 1, 2, 4 }, TimeUnit.MILLISECONDS,
+                new double[] { 0.3, 0.1, 0 });
+        for (Rank rank : Rank.values())
+            assertEquals(1 << rank.getValue(), mean(model, rank) / 1e6, 0.1 * (1 << rank.getValue()));
+        assertEquals(0.3, escalationRate(model, Rank.RESPONDENT), 0.01);
+        assertEquals(0.1, escalationRate(model, Rank.MANAGER), 0.01);
+    }
+
+    @Test
+    public void testLogNormal() {
+        ConversationModel model = new LogNormalConversationModel(5, TimeUnit.MILLISECONDS, 0.5, 0.2);
+        long[] times = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++)
+            times[i] = model.handlingTime(null, Rank.RESPONDENT, rnd);
+        Arrays.sort(times);
+        assertEquals(5, times[SAMPLES / 2] / 1e6, 0.1);
+        assertEquals(0.2, escalationRate(model, Rank.MANAGER), 0.01);
+    }
+
+    @Test
+    public void testTrace() throws IOException {
+        Path trace = Files.createTempFile("trace", ".csv");
+        try {
+            Files.write(trace, Arrays.asList("# rank,handlingTimeMicros,escalated",
+                    "RESPONDENT,1000,true",
+                    "RESPONDENT,3000,false",
+                    "",
+                    "MANAGER,2000,false",
+                    "DIRECTOR,5000,false"), StandardCharsets.UTF_8);
+            ConversationModel model = TraceConversationModel.load(trace);
+            for (int i = 0; i < 100; i++) {
+                long time = model.handlingTime(null, Rank.RESPONDENT, rnd);
+                assertTrue(time == 1000000 || time == 3000000);
+                assertEquals(5000000, model.handlingTime(null, Rank.DIRECTOR, rnd));
+                assertFalse(model.escalates(null, Rank.MANAGER, rnd));
+            }
+            assertEquals(0.5, escalationRate(model, Rank.RESPONDENT), 0.01);
+        } finally {
+            Files.delete(trace);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMalformedTrace() throws IOException {
+        Path trace = Files.createTempFile("trace", ".csv");
+        try {
+            Files.write(trace, Arrays.asList("RESPONDENT,abc,true"), StandardCharsets.UTF_8);
+            TraceConversationModel.load(trace);
+        } finally {
+            Files.delete(trace);
+        }
+    }
+
+    private double mean(ConversationModel model, Rank rank) {
+        double sum = 0;
+        for (int i = 0; i < SAMPLES; i++)
+            sum += model.handlingTime(null, rank, rnd);
+        return sum / SAMPLES;
+    }
+
+    private double escalationRate(ConversationModel model, Rank rank) {
+        int escalated = 0;
+        for (int i = 0; i < SAMPLES; i++)
+            if (model.escalates(null, rank, rnd))
+                escalated++;
+        return (double) escalated / SAMPLES;
+    }
+}
@@ -0,0 +1,68 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.ingress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CallStoreTest {
+
+    @Test
+    public void testQueues() {
+        CallStore store = new CallStore(4);
+        assertEquals(0, store.add(1, 10, 3, 100, 0, 7));
+        assertEquals(1, store.add(2, 20, 0, 200, 2, 8));
+        assertEquals(2, store.add(3, 30, 0, 300, 0, 9));
+        assertEquals(3, store.size());
+        assertEquals(-1, store.peek(1));
+
+        int handle = store.poll(0);
+        assertEquals(1, store.getId(handle));
+        assertEquals(10, store.getTimestamp(handle));
+        assertEquals(3, store.getSkills(handle));
+        assertEquals(100, store.getArrival(handle));
+        assertEquals(0, store.getPriority(handle));
+        assertEquals(7, store.getConnection(handle));
+        store.free(handle);
+
+        assertEquals(3, store.getId(store.peek(0)));
+        assertEquals(2, store.getId(store.poll(2)));
+        assertEquals(-1, store.peek(2));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void testCapacity() {
+        CallStore store = new CallStore(2);
+        int first = store.add(1, 0, 0, 0, 1, 0);
+        store.add(2, 0, 0, 0, 1, 0);
+        assertTrue(store.isFull());
+        assertEquals(-1, store.add(3, 0, 0, 0, 1, 0));
+
+        // The freed records are reused
+        store.free(store.poll(1));
+        assertFalse(store.isFull());
+        assertEquals(first, store.add(3, 0, 0, 0, 2, 0));
+        assertEquals(2, store.getId(store.poll(1)));
+        assertEquals(3, store.getId(store.poll(2)));
+        assertEquals(0, store.size());
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.ingress;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.callcenter.CallDispatcher;
+import com.callcenter.DispatcherConfig;
+import com.callcenter.ExecutionMode;
+import com.callcenter.conversation.UniformConversationModel;
+import com.callcenter.messaging.MessageSink;
+
+public class IngressServerTest {
+
+    private static CallDispatcher newDispatcher(int respondents, int managers, int directors, int queueCapacity,
+            long duration, double escalation) {
+        return new CallDispatcher(respondents, managers, directors,
+                new DispatcherConfig().setMode(ExecutionMode.ASYNCHRONOUS).setMessageSink(MessageSink.SILENT)
+                        .setQueueCapacity(queueCapacity)
+                        .setConversationModel(new UniformConversationModel(duration, TimeUnit.MILLISECONDS, escalation)));
+    }
+
+    /**
+     * Send calls of the given priorities, identified by their index.
+     */
+    private static void send(SocketChannel channel, int[] priorities) throws Exception {
+        ByteBuffer out = ByteBuffer.allocate(priorities.length * IngressServer.CALL_FRAME);
+        for (int i = 0; i < priorities.length; i++)
+            out.putLong(i).putLong(i * 10L).putLong(0).putInt(priorities[i]);
+        out.flip();
+        while (out.hasRemaining())
+            channel.write(out);
+    }
+
+    /**
+     * Read the events of the calls sent.
+     * 
+     * @return the events, indexed by call identifier: status, rank, and whether
+     *         the timestamp was sent back.
+     */
+    private static int[][] receive(SocketChannel channel, int calls) throws Exception {
+        ByteBuffer in = ByteBuffer.allocate(calls * IngressServer.EVENT_FRAME);
+        while (in.hasRemaining())
+            assertTrue(channel.read(in) >= 0);
+        in.flip();
+        int[][] events = new int[calls][];
+        for (int i = 0; i < calls; i++) {
+            int id = (int) in.getLong();
+            long timestamp = in.getLong();
+            in.getLong();
+            assertEquals(null, events[id]);
+            events[id] = new int[] { in.get(), in.get(), timestamp == id * 10L ? 1 : 0 };
+        }
+        return events;
+    }
+
+    private static int[][] exchange(IngressServer server, int[] priorities) throws Exception {
+        try (SocketChannel channel = SocketChannel.open(server.getAddress())) {
+            send(channel, priorities);
+            return receive(channel, priorities.length);
+        }
+    }
+
+    @Test
+    public void testCalls() throws Exception {
+        CallDispatcher dispatcher = newDispatcher(3, 2, 1, 1 << 16, 1, 0.2);
+        try (IngressServer server = new IngressServer(dispatcher, new InetSocketAddress("127.0.0.1", 0), 1 << 10)) {
+            int[] priorities = new int[2000];
+            for (int i = 0; i < priorities.length; i++)
+                priorities[i] = i % 3;
+            priorities[7] = 5;
+
+            int[][] events = exchange(server, priorities);
+            for (int i = 0; i < priorities.length; i++) {
+                assertEquals(1, events[i][2]);
+                if (i == 7) {
+                    assertEquals(IngressServer.INVALID, events[i][0]);
+                    assertEquals(-1, events[i][1]);
+                } else {
+                    assertEquals(IngressServer.COMPLETED, events[i][0]);
+                    assertTrue(events[i][1] >= priorities[i]);
+                }
+            }
+            assertEquals(priorities.length - 1, server.getReceived());
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testInvalidCallsRecycled() throws Exception {
+        CallDispatcher dispatcher = newDispatcher(1, 1, 1, 1 << 16, 0, 0);
+        try (IngressServer server = new IngressServer(dispatcher, new InetSocketAddress("127.0.0.1", 0), 4)) {
+            int[] priorities = new int[100];
+            for (int i = 0; i < priorities.length; i++)
+                priorities[i] = i % 2 == 0 ? -1 : 3;
+
+            int[][] events = exchange(server, priorities);
+            for (int[] event : events)
+                assertEquals(IngressServer.INVALID, event[0]);
+            assertEquals(0, server.getReceived());
+            // The same few calls have been used over and over
+            assertTrue(server.getIdleCalls() > 0);
+            assertTrue(server.getIdleCalls() <= 4);
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        CallDispatcher dispatcher = newDispatcher(2, 1, 1, 1 << 16, 1, 0.2);
+        try (IngressServer server = new IngressServer(dispatcher, new InetSocketAddress("127.0.0.1", 0), 3)) {
+            int[][] events = exchange(server, new int[500]);
+            for (int[] event : events)
+                assertEquals(IngressServer.COMPLETED, event[0]);
+            assertEquals(500, server.getReceived());
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testBacklog() throws Exception {
+        CallDispatcher dispatcher = newDispatcher(2, 1, 1, 1 << 16, 1, 0.2);
+        try (IngressServer server = new IngressServer(dispatcher, new InetSocketAddress("127.0.0.1", 0), 8, 1 << 16);
+                SocketChannel channel = SocketChannel.open(server.getAddress())) {
+            int[] priorities = new int[2000];
+            for (int i = 0; i < priorities.length; i++)
+                priorities[i] = i % 3;
+            send(channel, priorities);
+
+            // The calls not in flight wait in the backlog
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (server.getBacklog() == 0 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            assertTrue(server.getBacklog() > 0);
+
+            int[][] events = receive(channel, priorities.length);
+            for (int i = 0; i < priorities.length; i++) {
+                assertEquals(IngressServer.COMPLETED, events[i][0]);
+                assertEquals(1, events[i][2]);
+            }
+            assertEquals(priorities.length, server.getReceived());
+            assertEquals(0, server.getBacklog());
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testRejectedCalls() throws Exception {
+        CallDispatcher dispatcher = newDispatcher(1, 0, 0, 2, 20, 0);
+        try (IngressServer server = new IngressServer(dispatcher, new InetSocketAddress("127.0.0.1", 0), 100)) {
+            int completed = 0, rejected = 0;
+            for (int[] event : exchange(server, new int[20]))
+                if (event[0] == IngressServer.COMPLETED)
+                    completed++;
+                else if (event[0] == IngressServer.REJECTED)
+                    rejected++;
+            assertTrue(completed >= 3);
+            assertTrue(rejected > 0);
+            assertEquals(20, completed + rejected);
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    public void testCloseInterrupted() throws Exception {
+        CallDispatcher dispatcher = newDispatcher(1, 0, 0, 2, 0, 0);
+        IngressServer server = new IngressServer(dispatcher, new InetSocketAddress("127.0.0.1", 0), 10);
+        // The server stops anyway, and the interrupt is kept for the caller
+        Thread.currentThread().interrupt();
+        server.close();
+        assertTrue(Thread.interrupted());
+        dispatcher.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSynchronousDispatcher() throws Exception {
+        new IngressServer(new CallDispatcher(1, 1, 1), new InetSocketAddress("127.0.0.1", 0), 10);
+    }
+}
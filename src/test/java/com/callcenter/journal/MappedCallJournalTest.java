@@ -0,0 +1,202 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.callcenter.Call;
+
+public class MappedCallJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRecoverPendingCalls() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Call solved = new Call(0), escalated = new Call(0), queued = new Call(2, 0b101), rejected = new Call(1);
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            assertTrue(journal.recover().isEmpty());
+            for (Call call : new Call[] { solved, escalated, queued, rejected })
+                journal.record(JournalEvent.DISPATCHED, call);
+            journal.record(JournalEvent.STARTED, solved);
+            journal.record(JournalEvent.DISCONNECTED, solved);
+            journal.record(JournalEvent.STARTED, escalated);
+            escalated.setPriority(1);
+            journal.record(JournalEvent.ESCALATED, escalated);
+            journal.record(JournalEvent.QUEUED, queued);
+            journal.record(JournalEvent.REJECTED, rejected);
+        }
+
+        List<Call> recovered;
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            recovered = journal.recover();
+            assertEquals(2, recovered.size());
+            assertEquals(escalated.getId(), recovered.get(0).getId());
+            assertEquals(1, recovered.get(0).getPriority());
+            assertEquals(queued.getId(), recovered.get(1).getId());
+            assertEquals(2, recovered.get(1).getPriority());
+            assertEquals(0b101, recovered.get(1).getRequiredSkills());
+
+            // New calls don't reuse the old identifiers
+            Call call = new Call();
+            journal.record(JournalEvent.DISPATCHED, call);
+            assertTrue(call.getId() > queued.getId());
+            journal.record(JournalEvent.DISCONNECTED, recovered.get(0));
+        }
+
+        // The pending calls have been carried over to the new segment
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            assertEquals(2, journal.recover().size());
+            assertEquals(queued.getId(), journal.recover().get(0).getId());
+        }
+    }
+
+    @Test
+    public void testSegmentRollover() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final int calls = 1000;
+        try (MappedCallJournal journal = new MappedCallJournal(directory, 10 * MappedCallJournal.RECORD_SIZE, 1,
+                TimeUnit.MILLISECONDS)) {
+            for (int i = 0; i < calls; i++) {
+                Call call = new Call(i % 3);
+                journal.record(JournalEvent.DISPATCHED, call);
+                if (i % 2 == 0)
+                    journal.record(JournalEvent.DISCONNECTED, call);
+            }
+        }
+        try (Stream<Path> segments = Files.list(directory)) {
+            assertNotEquals(1, segments.count());
+        }
+        try (MappedCallJournal journal = new MappedCallJournal(directory, 10 * MappedCallJournal.RECORD_SIZE, 1,
+                TimeUnit.MILLISECONDS)) {
+            List<Call> recovered = journal.recover();
+            assertEquals(calls / 2, recovered.size());
+            for (int i = 0; i < recovered.size(); i++)
+                assertEquals((2 * i + 1) % 3, recovered.get(i).getPriority());
+        }
+    }
+
+    @Test
+    public void testRecoveredCallsQueuedOnce() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (MappedCallJournal journal = new MappedCallJournal(directory, 1 << 12, 1, TimeUnit.MILLISECONDS)) {
+            for (int i = 0; i < 3; i++)
+                journal.record(JournalEvent.QUEUED, new Call(i));
+        }
+
+        try (MappedCallJournal journal = new MappedCallJournal(directory, 1 << 12, 1, TimeUnit.MILLISECONDS)) {
+            List<Call> recovered = journal.recover();
+            assertEquals(3, recovered.size());
+            // Queued again, as a dispatcher does with the recovered calls: nothing new to record
+            for (Call call : recovered)
+                journal.record(JournalEvent.QUEUED, call);
+            assertEquals(3, countRecords(directory));
+            journal.record(JournalEvent.STARTED, recovered.get(0));
+            journal.record(JournalEvent.QUEUED, recovered.get(0));
+            assertEquals(5, countRecords(directory));
+        }
+    }
+
+    @Test
+    public void testConcurrentRollover() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        final int threads = 4, calls = 5000;
+        try (MappedCallJournal journal = new MappedCallJournal(directory, 7 * MappedCallJournal.RECORD_SIZE, 1,
+                TimeUnit.MILLISECONDS)) {
+            Thread[] writers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; i < calls; i++) {
+                        Call call = new Call(i % 3);
+                        journal.record(JournalEvent.DISPATCHED, call);
+                        if (i % 2 == 0)
+                            journal.record(JournalEvent.DISCONNECTED, call);
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers)
+                writer.join();
+        }
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            assertEquals(threads * calls / 2, journal.recover().size());
+        }
+    }
+
+    @Test
+    public void testTornRecordsIgnored() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        Call first = new Call(0), second = new Call(1);
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            journal.record(JournalEvent.QUEUED, first);
+            journal.record(JournalEvent.QUEUED, second);
+            journal.record(JournalEvent.DISCONNECTED, first);
+        }
+
+        // The last record is torn: it reached the disk with its type word, but with
+        // the call id of another call (unchecked, it would end the wrong call)
+        Path segment;
+        try (Stream<Path> segments = Files.list(directory)) {
+            segment = segments.findFirst().get();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            ByteBuffer id = ByteBuffer.allocate(8).putLong(0, second.getId());
+            channel.write(id, 2 * MappedCallJournal.RECORD_SIZE + 8);
+        }
+
+        try (MappedCallJournal journal = new MappedCallJournal(directory)) {
+            List<Call> recovered = journal.recover();
+            assertEquals(2, recovered.size());
+            assertEquals(first.getId(), recovered.get(0).getId());
+            assertEquals(second.getId(), recovered.get(1).getId());
+        }
+    }
+
+    /**
+     * Count the records written in the segments of a journal.
+     */
+    private static int countRecords(Path directory) throws IOException {
+        int records = 0;
+        try (Stream<Path> segments = Files.list(directory)) {
+            for (Path segment : (Iterable<Path>) segments::iterator) {
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(segment));
+                for (int position = 0; position < buffer.capacity(); position += MappedCallJournal.RECORD_SIZE)
+                    if (buffer.getInt(position) != 0)
+                        records++;
+            }
+        }
+        return records;
+    }
+}
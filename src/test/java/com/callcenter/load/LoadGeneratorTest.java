@@ -0,0 +1,192 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.load;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.callcenter.DispatcherConfig;
+import com.callcenter.ExecutionMode;
+import com.callcenter.OverflowPolicy;
+import com.callcenter.conversation.UniformConversationModel;
+import com.callcenter.employees.Rank;
+import com.callcenter.messaging.MessageSink;
+
+public class LoadGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final DispatcherConfig CONFIG = new DispatcherConfig().setMode(ExecutionMode.ASYNCHRONOUS)
+            .setConversationModel(new UniformConversationModel(0, TimeUnit.MILLISECONDS, 0))
+            .setMessageSink(MessageSink.SILENT);
+
+    /**
+     * Write a trace of calls arriving at a regular pace.
+     */
+    private Path writeTrace(int calls, long intervalMicros, String priority, long handlingTimeMicros)
+            throws IOException {
+        List<String> lines = new ArrayList<String>();
+        lines.add("# arrivalMicros,priority,handlingTimeMicros");
+        for (int i = 0; i < calls; i++)
+            lines.add((1_000_000 + i * intervalMicros) + "," + priority + "," + handlingTimeMicros);
+        Path trace = folder.newFile().toPath();
+        Files.write(trace, lines, StandardCharsets.UTF_8);
+        return trace;
+    }
+
+    @Test
+    public void testReadTrace() throws IOException {
+        Path trace = folder.newFile().toPath();
+        Files.write(trace, Arrays.asList("# arrivalMicros,priority,handlingTimeMicros", "10,RESPONDENT,1000", "",
+                "10,DIRECTOR,2500", "12,RESPONDENT,1000,2000"), StandardCharsets.UTF_8);
+        try (CallTrace calls = new CallTrace(trace)) {
+            assertTrue(calls.next());
+            assertEquals(10_000, calls.getArrivalTime());
+            assertEquals(Rank.RESPONDENT.getValue(), calls.getPriority());
+            assertEquals(1_000_000, calls.getHandlingTime());
+            assertTrue(calls.next());
+            assertEquals(Rank.DIRECTOR.getValue(), calls.getPriority());
+            assertEquals(2_500_000, calls.getHandlingTime());
+            assertTrue(calls.next());
+            assertArrayEquals(new long[] { 1_000_000, 2_000_000 }, calls.getHandlingTimes());
+            assertEquals(3_000_000, calls.getHandlingTime());
+            assertFalse(calls.next());
+        }
+    }
+
+    @Test
+    public void testMalformedTraces() throws IOException {
+        for (List<String> lines : Arrays.asList(Arrays.asList("10,CLERK,1000"), Arrays.asList("10,RESPONDENT"),
+                Arrays.asList("20,RESPONDENT,1000", "10,RESPONDENT,1000"))) {
+            Path trace = folder.newFile().toPath();
+            Files.write(trace, lines, StandardCharsets.UTF_8);
+            try (CallTrace calls = new CallTrace(trace)) {
+                while (calls.next())
+                    ;
+                fail("Malformed trace accepted: " + lines);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSynchronousMode() {
+        new LoadGenerator(1, 1, 1, new DispatcherConfig());
+    }
+
+    @Test
+    public void testReplay() throws IOException {
+        LoadReport report = new LoadGenerator(10, 1, 1, CONFIG).replay(writeTrace(50, 2000, "RESPONDENT", 1000));
+
+        assertEquals(50, report.getOffered());
+        assertEquals(50, report.getCompleted());
+        assertEquals(50, report.getResponseTimes(Rank.RESPONDENT).getCount());
+        assertEquals(0, report.getResponseTimes(Rank.MANAGER).getCount());
+        assertEquals(0, report.getRejected());
+        assertEquals(0, report.getUnfinished());
+        // The calls last the recorded handling time, and arrive at the recorded pace
+        assertTrue(report.getResponseTimes().getPercentile(0) >= TimeUnit.MICROSECONDS.toNanos(1000) * 0.98);
+        assertTrue(report.getElapsedTime(TimeUnit.MILLISECONDS) >= 98);
+    }
+
+    @Test
+    public void testReplayedHops() {
+        ReplayConversationModel model = new ReplayConversationModel(
+                new UniformConversationModel(0, TimeUnit.MILLISECONDS, 1));
+        Random rnd = new Random(42);
+
+        // The escalations recorded in the trace are replayed, each hop lasting its own time
+        ReplayedCall escalated = new ReplayedCall(0, new long[] { 1000, 2000 });
+        assertEquals(1000, model.handlingTime(escalated, Rank.RESPONDENT, rnd));
+        assertTrue(model.escalates(escalated, Rank.RESPONDENT, rnd));
+        assertEquals(2000, model.handlingTime(escalated, Rank.MANAGER, rnd));
+        assertFalse(model.escalates(escalated, Rank.MANAGER, rnd));
+
+        // With a single recorded hop, the other model escalates the call and times the next hops
+        ReplayedCall single = new ReplayedCall(0, new long[] { 1000 });
+        assertEquals(1000, model.handlingTime(single, Rank.RESPONDENT, rnd));
+        assertTrue(model.escalates(single, Rank.RESPONDENT, rnd));
+        assertEquals(0, model.handlingTime(single, Rank.MANAGER, rnd));
+    }
+
+    @Test
+    public void testEscalatedReplay() throws IOException {
+        Path trace = folder.newFile().toPath();
+        Files.write(trace, Arrays.asList("0,RESPONDENT,20000,30000"), StandardCharsets.UTF_8);
+        LoadReport report = new LoadGenerator(1, 1, 1, CONFIG).replay(trace);
+
+        assertEquals(1, report.getCompleted());
+        // The call lasts the sum of the recorded hops
+        assertTrue(report.getResponseTimes().getMax() >= TimeUnit.MILLISECONDS.toNanos(50) * 0.98);
+    }
+
+    @Test
+    public void testScaledReplay() throws IOException {
+        LoadReport report = new LoadGenerator(10, 1, 1, CONFIG).setSpeed(10)
+                .replay(writeTrace(50, 20_000, "MANAGER", 0));
+
+        assertEquals(50, report.getResponseTimes(Rank.MANAGER).getCount());
+        assertTrue(report.getElapsedTime(TimeUnit.MILLISECONDS) >= 98);
+        assertTrue(report.getElapsedTime(TimeUnit.MILLISECONDS) < 900);
+    }
+
+    @Test
+    public void testOverload() throws IOException {
+        // The only mailbox is full: the calls wait in the queue and the generator keeps up with the trace
+        LoadReport report = new LoadGenerator(1, 0, 0,
+                new DispatcherConfig(CONFIG).setMode(ExecutionMode.ACTOR).setMailboxCapacity(1))
+                        .replay(writeTrace(20, 1000, "RESPONDENT", 10_000));
+
+        assertEquals(20, report.getCompleted());
+        assertTrue(report.getDispatchDelays().getMax() < TimeUnit.MILLISECONDS.toNanos(100));
+        // Response times include the time the calls waited in the queue
+        assertTrue(report.getResponseTimes().getMax() >= TimeUnit.MILLISECONDS.toNanos(180));
+    }
+
+    @Test
+    public void testDroppedCalls() throws IOException {
+        // A single busy employee and a queue of one call: the queued calls are evicted by the next ones
+        LoadReport report = new LoadGenerator(1, 0, 0,
+                new DispatcherConfig(CONFIG).setQueueCapacity(1).setOverflowPolicy(OverflowPolicy.DROP_OLDEST))
+                        .replay(writeTrace(10, 100, "RESPONDENT", 50_000));
+
+        assertEquals(0, report.getRejected());
+        assertTrue(report.getDropped() > 0);
+        assertEquals(report.getOffered(), report.getCompleted() + report.getDropped() + report.getUnfinished());
+        assertTrue(report.toString().contains("dropped=" + report.getDropped()));
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.Test;
+
+import com.callcenter.employees.Rank;
+
+public class RingBufferMessageSinkTest {
+
+    private static final int PRODUCERS = 4;
+    private static final int MESSAGES = 100000;
+
+    @Test
+    public void testDelivery() throws Exception {
+        final LongAdder delivered = new LongAdder();
+        final AtomicLong argumentsSum = new AtomicLong();
+        final RingBufferMessageSink sink = new RingBufferMessageSink(1 << 20, (call, message, argument) -> {
+            delivered.increment();
+            if (message.hasArgument())
+                argumentsSum.addAndGet(argument);
+        });
+
+        ArrayList<Thread> producers = new ArrayList<Thread>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            Thread t = new Thread(() -> {
+                for (int i = 0; i < MESSAGES; i++)
+                    sink.say(null, i % 2 == 0 ? CallMessage.END : CallMessage.WAIT, 2);
+            });
+            producers.add(t);
+            t.start();
+        }
+        for (Thread t : producers)
+            t.join();
+        sink.close();
+
+        assertEquals(0, sink.getDropped());
+        assertEquals(PRODUCERS * MESSAGES, delivered.sum());
+        assertEquals(PRODUCERS * MESSAGES, argumentsSum.get());
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        final LongAdder delivered = new LongAdder();
+        RingBufferMessageSink sink = new RingBufferMessageSink(3, (call, message, argument) -> {
+            delivered.increment();
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+            }
+        });
+        for (int i = 0; i < 1000; i++)
+            sink.say(null, CallMessage.WAIT, 0);
+        sink.close();
+        assertEquals(1000, delivered.sum() + sink.getDropped());
+    }
+
+    @Test
+    public void testCloseInterrupted() {
+        final LongAdder delivered = new LongAdder();
+        RingBufferMessageSink sink = new RingBufferMessageSink(1 << 10, (call, message, argument) -> {
+            delivered.increment();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        });
+        for (int i = 0; i < 100; i++)
+            sink.say(null, CallMessage.WAIT, 0);
+        // The pending messages are delivered anyway, and the interrupt is kept for the caller
+        Thread.currentThread().interrupt();
+        sink.close();
+        assertTrue(Thread.interrupted());
+        assertEquals(100, delivered.sum());
+    }
+
+    @Test
+    public void testMessages() {
+        assertEquals("Hi! I'm a manager. How can I help you?", CallMessage.greeting(Rank.MANAGER).format(0));
+        assertEquals("Issue solved! Thank you for calling, have a nice day![42ms]", CallMessage.END.format(42));
+    }
+}
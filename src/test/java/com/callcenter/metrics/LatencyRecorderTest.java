@@ -0,0 +1,71 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class LatencyRecorderTest {
+
+    @Test
+    public void testBuckets() {
+        long previous = -1;
+        for (int bucket = 0; bucket < LatencyRecorder.BUCKETS; bucket++) {
+            long lowest = LatencyRecorder.lowestValueOf(bucket);
+            assertTrue(lowest > previous);
+            assertEquals(bucket, LatencyRecorder.bucketOf(lowest));
+            assertEquals(bucket, LatencyRecorder.bucketOf(LatencyRecorder.highestValueOf(bucket)));
+            previous = lowest;
+        }
+        assertEquals(LatencyRecorder.BUCKETS - 1, LatencyRecorder.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        Random rnd = new Random(42);
+        long[] values = new long[100000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = (long) (rnd.nextDouble() * 1e9);
+            recorder.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        LatencySnapshot snapshot = recorder.snapshot();
+        assertEquals(values.length, snapshot.getCount());
+        assertEquals(values[values.length - 1], snapshot.getMax());
+        for (double percentile : new double[] { 50, 90, 99, 99.9 }) {
+            long expected = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            assertEquals(expected, snapshot.getPercentile(percentile), expected * 0.016);
+        }
+        assertEquals(snapshot.getMax(), snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencySnapshot snapshot = new LatencyRecorder().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getPercentile(99));
+        assertEquals(0, snapshot.getMean(), 0);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.routing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.callcenter.Call;
+import com.callcenter.CallDispatcher;
+import com.callcenter.DispatcherConfig;
+import com.callcenter.conversation.ConversationModel;
+import com.callcenter.employees.Rank;
+import com.callcenter.messaging.MessageSink;
+
+public class EscalationRouterTest {
+
+    /* The calls requiring skill 0 are escalated up to the directors, the others solved right away. */
+    private static final ConversationModel MODEL = new ConversationModel() {
+        @Override
+        public long handlingTime(Call call, Rank rank, Random rnd) {
+            return TimeUnit.MICROSECONDS.toNanos(20);
+        }
+
+        @Override
+        public boolean escalates(Call call, Rank rank, Random rnd) {
+            return call.getRequiredSkills() != 0;
+        }
+    };
+
+    @Test
+    public void testLearnedRouting() {
+        EscalationRouter router = new EscalationRouter().setMinSamples(20).setExplorationPeriod(10);
+        DispatcherConfig config = new DispatcherConfig().setConversationModel(MODEL).setCallRouter(router)
+                .setMessageSink(MessageSink.SILENT);
+        for (Rank rank : Rank.values())
+            config.setSkills(rank, 1L);
+        CallDispatcher dispatcher = new CallDispatcher(2, 2, 2, config);
+
+        ArrayList<Call> calls = new ArrayList<Call>();
+        for (int i = 0; i < 600; i++) {
+            Call call = new Call(0, i % 2);
+            calls.add(call);
+            dispatcher.dispatchCall(call);
+        }
+
+        int promoted = 0;
+        for (Call call : calls) {
+            assertTrue(!call.isActive());
+            if (call.getRequiredSkills() != 0) {
+                assertEquals(Rank.DIRECTOR, call.getHandlerRank());
+                if (call.getInitialPriority() == Rank.DIRECTOR.getValue())
+                    promoted++;
+            } else {
+                assertEquals(Rank.RESPONDENT, call.getHandlerRank());
+                assertEquals(0, call.getInitialPriority());
+            }
+        }
+        assertEquals(1.0, router.getEscalationRate(1, Rank.RESPONDENT, Rank.RESPONDENT), 0);
+        assertEquals(0.0, router.getEscalationRate(0, Rank.RESPONDENT, Rank.RESPONDENT), 0);
+
+        // Once learned, only the calls exploring go through the respondents and managers
+        assertTrue(router.toString(), promoted > 200);
+        assertEquals(promoted, router.getPromotedCalls());
+        assertEquals(2 * promoted, router.getSkippedHops());
+        assertTrue(router.getSavedTime() >= promoted * TimeUnit.MICROSECONDS.toNanos(40));
+        assertEquals(300 - promoted, dispatcher.getMetrics().snapshot().getEscalated(Rank.RESPONDENT));
+    }
+
+    @Test
+    public void testRules() {
+        EscalationRouter router = new EscalationRouter().setRule(1, Rank.MANAGER);
+        assertEquals(1, router.route(new Call(0, 1L)));
+        assertEquals(2, router.route(new Call(2, 1L)));
+        assertEquals(0, router.route(new Call(0, 2L)));
+        assertEquals(0, router.route(new Call(0)));
+        assertEquals(1, router.getPromotedCalls());
+
+        router.setRule(1, null);
+        assertEquals(0, router.route(new Call(0, 1L)));
+
+        // Calls out of the categories are left alone
+        router = new EscalationRouter(1, call -> call.getPriority() - 1).setRule(0, Rank.DIRECTOR);
+        assertEquals(0, router.route(new Call(0)));
+        assertEquals(2, router.route(new Call(1)));
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.selection;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.junit.Test;
+
+import com.callcenter.CallDispatcher;
+import com.callcenter.employees.Employee;
+import com.callcenter.employees.Rank;
+
+public class AgentPoolTest {
+
+    private static List<Employee> employees(int count) {
+        return new CallDispatcher(count, 0, 0).getEmployees(Rank.RESPONDENT);
+    }
+
+    @Test
+    public void testAllEmployees() {
+        List<Employee> employees = employees(200);
+        for (AgentSelectionPolicy policy : new AgentSelectionPolicy[] { AgentSelectionPolicy.LAST_FREED,
+                AgentSelectionPolicy.LEAST_RECENTLY_BUSY, AgentSelectionPolicy.ROUND_ROBIN,
+                AgentSelectionPolicy.POWER_OF_TWO_CHOICES }) {
+            AgentPool pool = policy.newPool(ThreadLocalRandom::current);
+            for (Employee emp : employees)
+                pool.add(emp);
+            // Adding a free employee again doesn't duplicate it in the indexed pools
+            if (policy == AgentSelectionPolicy.ROUND_ROBIN || policy == AgentSelectionPolicy.POWER_OF_TWO_CHOICES)
+                pool.add(employees.get(3));
+
+            Set<Employee> polled = new HashSet<Employee>();
+            Employee emp;
+            while ((emp = pool.poll()) != null)
+                assertTrue(polled.add(emp));
+            assertEquals(employees.size(), polled.size());
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        List<Employee> employees = employees(4);
+        AgentPool stack = AgentSelectionPolicy.LAST_FREED.newPool(ThreadLocalRandom::current);
+        AgentPool queue = AgentSelectionPolicy.LEAST_RECENTLY_BUSY.newPool(ThreadLocalRandom::current);
+        AgentPool roundRobin = AgentSelectionPolicy.ROUND_ROBIN.newPool(ThreadLocalRandom::current);
+        for (Employee emp : employees) {
+            stack.add(emp);
+            queue.add(emp);
+            roundRobin.add(emp);
+        }
+
+        assertSame(employees.get(3), stack.poll());
+        assertSame(employees.get(0), queue.poll());
+        assertSame(employees.get(0), roundRobin.poll());
+
+        // The employee who just got free is picked next, last, or in its turn
+        stack.add(employees.get(3));
+        queue.add(employees.get(0));
+        roundRobin.add(employees.get(0));
+        assertSame(employees.get(3), stack.poll());
+        assertSame(employees.get(1), queue.poll());
+        assertSame(employees.get(1), roundRobin.poll());
+        assertSame(employees.get(2), roundRobin.poll());
+        assertSame(employees.get(3), roundRobin.poll());
+        assertSame(employees.get(0), roundRobin.poll());
+        assertNull(roundRobin.poll());
+    }
+
+    @Test
+    public void testSeededChoices() {
+        // Pools drawing from generators with the same seed pick the same employees
+        List<Employee> employees = employees(100);
+        List<List<Employee>> picks = new ArrayList<List<Employee>>();
+        for (int run = 0; run < 2; run++) {
+            Random rnd = new Random(42);
+            AgentPool pool = AgentSelectionPolicy.POWER_OF_TWO_CHOICES.newPool(() -> rnd);
+            for (Employee emp : employees)
+                pool.add(emp);
+            List<Employee> polled = new ArrayList<Employee>();
+            for (int i = 0; i < 50; i++)
+                polled.add(pool.poll());
+            picks.add(polled);
+        }
+        assertEquals(picks.get(0), picks.get(1));
+    }
+
+    @Test
+    public void testSlotsReused() {
+        List<Employee> employees = employees(8);
+        IndexedAgentPool pool = (IndexedAgentPool) AgentSelectionPolicy.ROUND_ROBIN.newPool(ThreadLocalRandom::current);
+        for (Employee emp : employees.subList(0, 4))
+            pool.add(emp);
+
+        // The employees who leave give their slots to the next ones
+        pool.remove(employees.get(1));
+        pool.remove(employees.get(2));
+        pool.remove(employees.get(2));
+        for (Employee emp : employees.subList(4, 8))
+            pool.add(emp);
+        assertEquals(6, pool.size());
+
+        Set<Employee> polled = new HashSet<Employee>();
+        Employee emp;
+        while ((emp = pool.poll()) != null)
+            assertTrue(polled.add(emp));
+        assertEquals(6, polled.size());
+        assertTrue(!polled.contains(employees.get(1)) && !polled.contains(employees.get(2)));
+    }
+
+    @Test
+    public void testGrowthDropsStaleSlots() {
+        List<Employee> employees = employees(80);
+        IndexedAgentPool pool = (IndexedAgentPool) AgentSelectionPolicy.ROUND_ROBIN.newPool(ThreadLocalRandom::current);
+        for (Employee emp : employees.subList(0, 64))
+            pool.add(emp);
+
+        // Employees leave while others are claimed without polling the pool
+        pool.remove(employees.get(1));
+        pool.remove(employees.get(2));
+        assertTrue(employees.get(3).tryClaim());
+        assertTrue(employees.get(4).tryClaim());
+        // The next ones take the freed slots, then the table grows
+        for (Employee emp : employees.subList(64, 80))
+            pool.add(emp);
+        assertEquals(78, pool.size());
+
+        Set<Employee> polled = new HashSet<Employee>();
+        Employee emp;
+        while ((emp = pool.poll()) != null)
+            assertTrue(polled.add(emp));
+        Set<Employee> free = new HashSet<Employee>(employees);
+        free.removeAll(employees.subList(1, 5));
+        assertEquals(free, polled);
+    }
+}
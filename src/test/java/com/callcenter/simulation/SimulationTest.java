@@ -0,0 +1,126 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.simulation;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.callcenter.DispatcherConfig;
+import com.callcenter.conversation.ExponentialConversationModel;
+import com.callcenter.employees.Rank;
+import com.callcenter.metrics.MetricsSnapshot;
+
+public class SimulationTest {
+
+    private static Simulation newSimulation(int respondents, int managers, int directors) {
+        return new Simulation(respondents, managers, directors,
+                new DispatcherConfig().setConversationModel(new ExponentialConversationModel(new double[] { 3, 3, 3 },
+                        TimeUnit.MINUTES, new double[] { 0.1, 0.1, 0 }))).setArrivalRate(10, TimeUnit.MINUTES).setPriorityMix(0.9, 0.08, 0.02).setSeed(42);
+    }
+
+    @Test
+    public void testReproducibleRuns() {
+        SimulationResult first = newSimulation(30, 5, 2).run(100_000);
+        SimulationResult second = newSimulation(30, 5, 2).run(100_000);
+        SimulationResult other = newSimulation(30, 5, 2).setSeed(7).run(100_000);
+
+        assertEquals(100_000, first.getCalls());
+        assertEquals(first.getSimulatedTime(TimeUnit.NANOSECONDS), second.getSimulatedTime(TimeUnit.NANOSECONDS));
+        assertNotEquals(first.getSimulatedTime(TimeUnit.NANOSECONDS), other.getSimulatedTime(TimeUnit.NANOSECONDS));
+        for (Rank rank : Rank.values()) {
+            assertEquals(first.getMetrics().getCompleted(rank), second.getMetrics().getCompleted(rank));
+            assertEquals(first.getMetrics().getEscalated(rank), second.getMetrics().getEscalated(rank));
+            assertEquals(first.getMetrics().getWaitTimes(rank).getMean(),
+                    second.getMetrics().getWaitTimes(rank).getMean(), 0);
+            assertEquals(first.getMeanQueueLength(rank), second.getMeanQueueLength(rank), 0);
+            assertEquals(first.getMaxQueueLength(rank), second.getMaxQueueLength(rank));
+        }
+    }
+
+    @Test
+    public void testAllCallsAreSolved() {
+        SimulationResult result = newSimulation(30, 5, 2).run(50_000);
+        MetricsSnapshot metrics = result.getMetrics();
+
+        long completed = 0, escalated = 0;
+        for (Rank rank : Rank.values()) {
+            completed += metrics.getCompleted(rank);
+            escalated += metrics.getEscalated(rank);
+            assertEquals(0, metrics.getQueueDepth(rank));
+            assertEquals(metrics.getDispatched(rank), metrics.getWaitTimes(rank).getCount());
+        }
+        assertEquals(50_000, completed);
+        assertEquals(50_000 + escalated, metrics.getHandleTimes(Rank.RESPONDENT).getCount()
+                + metrics.getHandleTimes(Rank.MANAGER).getCount() + metrics.getHandleTimes(Rank.DIRECTOR).getCount());
+        // Handling times are drawn on the virtual clock: about 3 minutes on average
+        double meanHandle = metrics.getHandleTimes(Rank.RESPONDENT).getMean();
+        assertTrue(meanHandle > TimeUnit.SECONDS.toNanos(170) && meanHandle < TimeUnit.SECONDS.toNanos(190));
+    }
+
+    @Test
+    public void testStaffingSweep() throws Exception {
+        Simulation understaffed = newSimulation(31, 5, 2);
+        List<Simulation> simulations = Arrays.asList(understaffed, understaffed.withStaffing(33, 5, 2),
+                understaffed.withStaffing(40, 5, 2));
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        List<SimulationResult> results;
+        try {
+            results = Simulation.sweep(simulations, 20_000, executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(3, results.size());
+        for (int i = 0; i < results.size(); i++)
+            assertEquals(simulations.get(i).run(20_000).getMetrics().getWaitTimes(Rank.RESPONDENT).getMean(),
+                    results.get(i).getMetrics().getWaitTimes(Rank.RESPONDENT).getMean(), 0);
+        assertEquals(40, results.get(2).getStaffing(Rank.RESPONDENT));
+        // More respondents, shorter queues
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i).getMeanQueueLength(Rank.RESPONDENT) < results.get(i - 1)
+                    .getMeanQueueLength(Rank.RESPONDENT));
+            assertTrue(results.get(i).getMetrics().getWaitTimes(Rank.RESPONDENT).getMean() < results.get(i - 1)
+                    .getMetrics().getWaitTimes(Rank.RESPONDENT).getMean());
+        }
+    }
+
+    @Test
+    public void testRejectedCallsRecycled() {
+        // Queues of one call: arriving and escalated calls get rejected
+        Simulation simulation = new Simulation(1, 1, 1,
+                new DispatcherConfig().setQueueCapacity(1).setConversationModel(new ExponentialConversationModel(
+                        new double[] { 3, 3, 3 }, TimeUnit.MINUTES, new double[] { 0.5, 0.5, 0 })))
+                                .setArrivalRate(60, TimeUnit.MINUTES).setSeed(42);
+        Simulation.Run run = simulation.new Run();
+        MetricsSnapshot metrics = run.execute(10_000).getMetrics();
+
+        assertTrue(metrics.getRejected(Rank.RESPONDENT) > 0);
+        assertTrue(metrics.getRejected(Rank.MANAGER) + metrics.getRejected(Rank.DIRECTOR) > 0);
+        // All the calls are back in the pool
+        assertEquals(run.allocated, run.pool.size());
+    }
+}
@@ -0,0 +1,276 @@
+/**
+ * call-center - ${project.description}
+ * Copyright © 2018 pviotti (notexistent@email.com)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.callcenter.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.callcenter.Call;
+import com.callcenter.CallDispatcher;
+import com.callcenter.DispatchOutcome;
+import com.callcenter.DispatcherConfig;
+import com.callcenter.ExecutionMode;
+import com.callcenter.conversation.UniformConversationModel;
+import com.callcenter.employees.Rank;
+import com.callcenter.messaging.MessageSink;
+
+public class DispatcherNodeTest {
+
+    private static CallDispatcher newDispatcher(int respondents, int managers, int directors) {
+        return new CallDispatcher(respondents, managers, directors,
+                new DispatcherConfig().setMode(ExecutionMode.ASYNCHRONOUS).setMessageSink(MessageSink.SILENT)
+                        .setConversationModel(new UniformConversationModel(5, TimeUnit.MILLISECONDS, 0)));
+    }
+
+    private static long completed(CallDispatcher dispatcher) {
+        long completed = 0;
+        for (Rank rank : Rank.values())
+            completed += dispatcher.getMetrics().snapshot().getCompleted(rank);
+        return completed;
+    }
+
+    private static void awaitEnd(List<Call> calls) throws Exception {
+        for (Call call : calls)
+            call.getCompletion().get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testBrokerRanks() {
+        CallBroker broker = new CallBroker(2);
+        LocalTransport transport = new LocalTransport(broker);
+        assertEquals(0, transport.register());
+        long[] calls = { CallBroker.encode(1, 0), CallBroker.encode(2, 2), CallBroker.encode(3, 1),
+                CallBroker.encode(4, 0), CallBroker.encode(5, 0), CallBroker.encode(6, 1) };
+        int[] refused = new int[calls.length];
+        assertEquals(1, transport.offer(calls, calls.length, refused));
+        assertEquals(4, refused[0]);
+        assertTrue(Arrays.equals(new int[] { 2, 2, 1 }, broker.size()));
+
+        // Respondents only get calls of priority RESPONDENT, the others the most urgent calls first
+        long[] taken = new long[5];
+        assertEquals(3, transport.poll(new int[] { 1, 2, 0 }, taken));
+        assertEquals(1, CallBroker.idOf(taken[0]));
+        assertEquals(0, CallBroker.priorityOf(taken[0]));
+        assertEquals(3, CallBroker.idOf(taken[1]));
+        assertEquals(6, CallBroker.idOf(taken[2]));
+        assertEquals(1, CallBroker.priorityOf(taken[2]));
+        assertEquals(2, transport.poll(new int[] { 0, 0, 5 }, taken));
+        assertEquals(2, CallBroker.idOf(taken[0]));
+        assertEquals(4, CallBroker.idOf(taken[1]));
+    }
+
+    @Test
+    public void testOfferSentAgain() {
+        CallBroker broker = new CallBroker(2);
+        LocalTransport transport = new LocalTransport(broker);
+        int node = transport.register();
+        long first = (long) node << CallBroker.SEQUENCE_BITS;
+        long[] calls = { CallBroker.encode(first + 1, 0), CallBroker.encode(first + 2, 0),
+                CallBroker.encode(first + 3, 0) };
+        int[] refused = new int[calls.length];
+        assertEquals(1, transport.offer(calls, calls.length, refused));
+        assertEquals(2, refused[0]);
+
+        // The same offer (e.g. after an I/O error) gets the same answer, and isn't queued twice
+        refused[0] = -1;
+        assertEquals(1, transport.offer(calls, calls.length, refused));
+        assertEquals(2, refused[0]);
+        assertTrue(Arrays.equals(new int[] { 2, 0, 0 }, broker.size()));
+    }
+
+    @Test
+    public void testTcpTransport() throws Exception {
+        CallBroker broker = new CallBroker(300);
+        try (BrokerServer server = new BrokerServer(broker, new InetSocketAddress("127.0.0.1", 0));
+                BrokerClient client = new BrokerClient(server.getAddress())) {
+            assertEquals(0, client.register());
+            assertEquals(1, client.register());
+
+            long[] calls = new long[CallTransport.MAX_OFFER];
+            for (int i = 0; i < calls.length; i++)
+                calls[i] = CallBroker.encode(i, i % 3);
+            int[] refused = new int[calls.length];
+            assertEquals(calls.length - 900, client.offer(calls, calls.length, refused));
+            assertEquals(900, refused[0]);
+            assertTrue(Arrays.equals(new int[] { 300, 300, 300 }, broker.size()));
+
+            // Several frames, pipelined
+            long[] taken = new long[20_010];
+            assertEquals(900, client.poll(new int[] { 10, 0, 20_000 }, taken));
+            for (int i = 0; i < 10; i++)
+                assertEquals(0, CallBroker.priorityOf(taken[i]));
+            assertEquals(2, CallBroker.priorityOf(taken[10]));
+            assertEquals(2, CallBroker.idOf(taken[10]));
+            assertTrue(Arrays.equals(new int[] { 0, 0, 0 }, broker.size()));
+
+            long id = 1L << CallBroker.SEQUENCE_BITS | 7;
+            client.report(new long[] { CallBroker.encode(id, Rank.MANAGER.getValue()), 42 }, 1);
+            long[] reports = new long[8];
+            assertEquals(0, client.pollReports(0, reports));
+            assertEquals(1, client.pollReports(1, reports));
+            assertEquals(id, CallBroker.idOf(reports[0]));
+            assertEquals(Rank.MANAGER.getValue(), (int) (reports[0] & 3));
+            assertEquals(42, reports[1]);
+        }
+    }
+
+    @Test
+    public void testSharedBacklog() throws Exception {
+        CallBroker broker = new CallBroker(1000);
+        try (BrokerServer server = new BrokerServer(broker, new InetSocketAddress("127.0.0.1", 0));
+                DispatcherNode front = new DispatcherNode(newDispatcher(0, 0, 0), new BrokerClient(server.getAddress()));
+                DispatcherNode managers = new DispatcherNode(newDispatcher(0, 2, 0),
+                        new BrokerClient(server.getAddress()));
+                DispatcherNode directors = new DispatcherNode(newDispatcher(0, 0, 1),
+                        new BrokerClient(server.getAddress()))) {
+            // The front node has nobody: its calls are served by the others, according to their rank
+            List<Call> calls = new ArrayList<Call>();
+            for (int i = 0; i < 60; i++) {
+                Call call = new Call(1 + i % 2);
+                calls.add(call);
+                assertEquals(DispatchOutcome.QUEUED, front.dispatchCall(call));
+            }
+
+            // The other nodes report the end of the calls to the front node
+            awaitEnd(calls);
+            for (Call call : calls) {
+                assertFalse(call.isActive());
+                assertEquals(call.getPriority(), call.getHandlerRank().getValue());
+                assertTrue(call.getDurationNanos() > 0);
+            }
+            assertEquals(60, completed(managers.getDispatcher()) + completed(directors.getDispatcher()));
+            assertEquals(0, managers.getDispatcher().getMetrics().snapshot().getDispatched(Rank.DIRECTOR));
+            assertEquals(30, directors.getDispatcher().getMetrics().snapshot().getDispatched(Rank.DIRECTOR));
+            assertEquals(60, front.getOffered());
+            assertEquals(60, managers.getTaken() + directors.getTaken());
+            assertEquals(0, completed(front.getDispatcher()));
+        }
+    }
+
+    @Test
+    public void testLostPollReply() throws Exception {
+        CallBroker broker = new CallBroker(1000);
+        try (BrokerServer server = new BrokerServer(broker, new InetSocketAddress("127.0.0.1", 0));
+                DispatcherNode front = new DispatcherNode(newDispatcher(0, 0, 0),
+                        new BrokerClient(server.getAddress()))) {
+            Call call = new Call(0);
+            assertEquals(DispatchOutcome.QUEUED, front.dispatchCall(call));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (broker.size()[0] == 0 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+
+            // A poller takes the call, and goes away without acknowledging it
+            try (SocketChannel poller = SocketChannel.open(server.getAddress())) {
+                ByteBuffer request = ByteBuffer.allocate(10);
+                request.putInt(6).put(BrokerServer.POLL).put((byte) 0).putInt(10).flip();
+                poller.write(request);
+                ByteBuffer reply = ByteBuffer.allocate(16);
+                while (reply.hasRemaining())
+                    assertTrue(poller.read(reply) >= 0);
+                assertEquals(1, reply.getInt(4));
+                assertEquals(0, broker.size()[0]);
+            }
+
+            // The call goes back to the backlog, and is served by another node
+            while (broker.size()[0] == 0 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            try (DispatcherNode respondents = new DispatcherNode(newDispatcher(1, 0, 0),
+                    new BrokerClient(server.getAddress()))) {
+                call.getCompletion().get(30, TimeUnit.SECONDS);
+                assertEquals(Rank.RESPONDENT, call.getHandlerRank());
+                assertEquals(1, respondents.getTaken());
+            }
+        }
+    }
+
+    @Test
+    public void testCallsTakenBack() throws Exception {
+        CallBroker broker = new CallBroker(1000);
+        try (DispatcherNode node = new DispatcherNode(newDispatcher(1, 0, 0), new LocalTransport(broker))) {
+            List<Call> calls = new ArrayList<Call>();
+            for (int i = 0; i < 10; i++) {
+                Call call = new Call(0);
+                calls.add(call);
+                node.dispatchCall(call);
+            }
+
+            // The calls taken back by the node which offered them are the calls themselves
+            awaitEnd(calls);
+            assertEquals(10, completed(node.getDispatcher()));
+            assertTrue(node.getTaken() > 0);
+            assertEquals(node.getOffered(), node.getTaken());
+        }
+    }
+
+    @Test
+    public void testRefusedReport() throws Exception {
+        CallBroker broker = new CallBroker(1000);
+        LocalTransport other = new LocalTransport(broker);
+        try (DispatcherNode node = new DispatcherNode(newDispatcher(0, 0, 0), new LocalTransport(broker))) {
+            Call call = new Call(0);
+            assertEquals(DispatchOutcome.QUEUED, node.dispatchCall(call));
+            long[] taken = new long[1];
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (other.poll(new int[] { 1, 0, 0 }, taken) == 0 && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            assertEquals(node.getNode(), CallBroker.nodeOf(taken[0]));
+
+            // A call turned down by another node comes back to the queues of its node
+            other.report(new long[] { CallBroker.encode(CallBroker.idOf(taken[0]), CallBroker.REFUSED), 0 }, 1);
+            while (node.getDispatcher().getMetrics().snapshot().getQueued(Rank.RESPONDENT) == 0
+                    && System.nanoTime() < deadline)
+                Thread.sleep(1);
+            assertEquals(1, node.getDispatcher().getMetrics().snapshot().getQueued(Rank.RESPONDENT));
+            assertTrue(call.isActive());
+        }
+    }
+
+    @Test
+    public void testLocalNodes() throws Exception {
+        CallBroker broker = new CallBroker(1000);
+        try (DispatcherNode first = new DispatcherNode(newDispatcher(1, 0, 0), new LocalTransport(broker));
+                DispatcherNode second = new DispatcherNode(newDispatcher(3, 0, 0), new LocalTransport(broker))) {
+            assertTrue(first.getNode() != second.getNode());
+            List<Call> calls = new ArrayList<Call>();
+            int assigned = 0;
+            for (int i = 0; i < 40; i++) {
+                Call call = new Call(0);
+                calls.add(call);
+                if (first.dispatchCall(call) == DispatchOutcome.ASSIGNED)
+                    assigned++;
+            }
+            assertTrue(assigned >= 1);
+
+            awaitEnd(calls);
+            assertEquals(40, completed(first.getDispatcher()) + completed(second.getDispatcher()));
+            assertEquals(40 - assigned, first.getOffered());
+            assertTrue(second.getTaken() > 0);
+        }
+    }
+}